@@ -0,0 +1,163 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * The services wired by hand, without Spring, against an in-process MiniDFSCluster ("minidfs") or the local
+ * file system ("local"). Every benchmark works below {@link #getRoot()}. The metadata cache is off unless asked
+ * for, so metadata benchmarks measure NameNode round trips instead of cache hits.
+ */
+class BenchmarkEnvironment implements Closeable {
+
+    static final String MINIDFS = "minidfs";
+    static final String LOCAL = "local";
+
+    private final Path workDirectory;
+    private final MiniDFSCluster cluster;
+    private final FileSystem fs;
+    private final String root;
+
+    final HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+    final HadoopMetrics metrics;
+    final HadoopHDFSService hdfs;
+    final HadoopPythonService python;
+    final HadoopZeroCopyService zeroCopyService;
+
+    private final HadoopReadHandleService readHandleService;
+    private final HadoopSharedMemoryService sharedMemoryService;
+    private final HadoopWalkService walkService;
+    private final HadoopHedgedReadService hedgedReadService;
+    private final HadoopTransferService transferService;
+    private final HadoopBulkTransferService bulkTransferService;
+    private final HadoopBatchReadService batchReadService;
+    private final HadoopDatasetService datasetService;
+    private final HadoopJobService jobService;
+    private final HadoopStatService statService;
+    private final HadoopListingService listingService;
+    private final HadoopCompressionService compressionService;
+    private final HadoopWriteService writeService;
+    private final HadoopPackService packService;
+    private final HadoopImageService imageService;
+    private final HadoopSyncService syncService;
+    private final HadoopTableService tableService;
+
+    BenchmarkEnvironment(String backend) throws IOException {
+        this(backend, false);
+    }
+
+    BenchmarkEnvironment(String backend, boolean metadataCache) throws IOException {
+        workDirectory = Files.createTempDirectory("hdfs-lmdc-jmh");
+        Configuration conf = new Configuration();
+        if (MINIDFS.equals(backend)) {
+            conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, workDirectory.resolve("minidfs").toString());
+            cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+            cluster.waitActive();
+            fs = cluster.getFileSystem();
+            root = "/bench";
+        } else if (LOCAL.equals(backend)) {
+            cluster = null;
+            fs = FileSystem.getLocal(conf);
+            root = workDirectory.resolve("fs").toString();
+        } else {
+            throw new IllegalArgumentException("Backend desconhecido: " + backend);
+        }
+        fs.mkdirs(new org.apache.hadoop.fs.Path(root));
+
+        configuration.getHdfs().setDisable(true);
+        configuration.getMetadataCache().setEnabled(metadataCache);
+        metrics = new HadoopMetrics(configuration);
+        hdfs = new HadoopHDFSService(configuration, metrics);
+        hdfs.setFs(fs);
+        compressionService = new HadoopCompressionService(configuration);
+        readHandleService = new HadoopReadHandleService(hdfs, compressionService, configuration);
+        sharedMemoryService = new HadoopSharedMemoryService(hdfs, configuration);
+        walkService = new HadoopWalkService(hdfs, configuration);
+        hedgedReadService = new HadoopHedgedReadService(hdfs, configuration);
+        zeroCopyService = new HadoopZeroCopyService(hdfs, configuration);
+        transferService = new HadoopTransferService(hdfs, hedgedReadService, zeroCopyService, configuration);
+        bulkTransferService = new HadoopBulkTransferService(hdfs, transferService, configuration);
+        batchReadService = new HadoopBatchReadService(hdfs, configuration);
+        datasetService = new HadoopDatasetService(hdfs, zeroCopyService, configuration);
+        HadoopReadCacheService readCacheService = new HadoopReadCacheService(hdfs, transferService, hedgedReadService, zeroCopyService, configuration);
+        HadoopAdmissionControl admission = new HadoopAdmissionControl(configuration);
+        jobService = new HadoopJobService(hdfs, transferService, bulkTransferService, batchReadService, zeroCopyService,
+                admission, configuration);
+        statService = new HadoopStatService(hdfs, configuration);
+        listingService = new HadoopListingService(hdfs, configuration);
+        writeService = new HadoopWriteService(hdfs, compressionService, configuration);
+        packService = new HadoopPackService(hdfs, configuration);
+        imageService = new HadoopImageService(hdfs, configuration);
+        syncService = new HadoopSyncService(hdfs, bulkTransferService, configuration);
+        tableService = new HadoopTableService(hdfs, configuration);
+        python = new HadoopPythonService(hdfs, readHandleService, sharedMemoryService, walkService, transferService,
+                bulkTransferService, batchReadService, datasetService, readCacheService, jobService, statService,
+                listingService, writeService, packService, imageService, compressionService, hedgedReadService,
+                syncService, admission, tableService, zeroCopyService, metrics);
+    }
+
+    String getRoot() {
+        return root;
+    }
+
+    Path getWorkDirectory() {
+        return workDirectory;
+    }
+
+    /**
+     * Write a file of random bytes to hdfs.
+     *
+     * @return the full hdfs path of the file
+     */
+    String createFile(String directory, String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        org.apache.hadoop.fs.Path path = new org.apache.hadoop.fs.Path(directory, name);
+        try (var output = fs.create(path, true)) {
+            output.write(content);
+        }
+        return path.toUri().getPath();
+    }
+
+    /**
+     * Write a local file of random bytes in the work directory.
+     */
+    Path createLocalFile(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(workDirectory.resolve(name), content);
+    }
+
+    @Override
+    public void close() throws IOException {
+        readHandleService.onDestroy();
+        sharedMemoryService.onDestroy();
+        walkService.onDestroy();
+        transferService.onDestroy();
+        bulkTransferService.onDestroy();
+        batchReadService.onDestroy();
+        datasetService.onDestroy();
+        jobService.onDestroy();
+        statService.onDestroy();
+        listingService.onDestroy();
+        writeService.onDestroy();
+        packService.onDestroy();
+        imageService.onDestroy();
+        hedgedReadService.onDestroy();
+        syncService.onDestroy();
+        tableService.onDestroy();
+        fs.close();
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        FileUtils.deleteQuietly(workDirectory.toFile());
+    }
+}
@@ -0,0 +1,63 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listings of directories with several fan-outs, through {@link HadoopHDFSService} and through the gateway.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HdfsDirectoryBenchmark {
+
+    @Param({BenchmarkEnvironment.MINIDFS, BenchmarkEnvironment.LOCAL})
+    public String backend;
+
+    @Param({"10", "1000", "10000"})
+    public int fanOut;
+
+    private BenchmarkEnvironment environment;
+    private String directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment(backend);
+        directory = environment.getRoot() + "/dir-" + fanOut;
+        for (int i = 0; i < fanOut; i++) {
+            environment.createFile(directory, "file-" + i, 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public FileStatus[] showDirectory() throws IOException {
+        return environment.hdfs.showDirectory(directory);
+    }
+
+    @Benchmark
+    public String[] gatewayLs() {
+        return environment.python.ls(directory);
+    }
+
+    @Benchmark
+    public byte[] gatewayLsDetailed() throws IOException {
+        return environment.python.lsDetailed(directory).getPackedColumns();
+    }
+}
@@ -0,0 +1,119 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes of single files of several sizes, through {@link HadoopHDFSService} and through the
+ * gateway methods of {@link HadoopPythonService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HdfsFileBenchmark {
+
+    @Param({BenchmarkEnvironment.MINIDFS, BenchmarkEnvironment.LOCAL})
+    public String backend;
+
+    //Com o cache ligado, existsPath mede acertos do cache a partir da segunda chamada
+    @Param({"false", "true"})
+    public boolean metadataCache;
+
+    @Param({"4096", "1048576", "67108864"})
+    public int fileSize;
+
+    private BenchmarkEnvironment environment;
+    private String directory;
+    private String existing;
+    private String missing;
+    private String localFile;
+    private String downloadTarget;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment(backend, metadataCache);
+        directory = environment.getRoot() + "/files";
+        existing = environment.createFile(directory, "existing.bin", fileSize);
+        missing = directory + "/missing.bin";
+        localFile = environment.createLocalFile("upload.bin", fileSize).toString();
+        downloadTarget = environment.getWorkDirectory().resolve("download.bin").toString();
+        content = Files.readAllBytes(Paths.get(localFile));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public long readFile() throws IOException {
+        try (FSDataInputStream input = environment.hdfs.readFile(existing)) {
+            return IOUtils.copyLarge(input, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+    }
+
+    @Benchmark
+    public byte[] readAllBytesZeroCopy() throws IOException {
+        return environment.zeroCopyService.readAllBytes(existing, HadoopTransferService.NO_PROGRESS);
+    }
+
+    @Benchmark
+    public void writeFile() throws IOException {
+        try (InputStream input = Files.newInputStream(Paths.get(localFile))) {
+            environment.hdfs.writeFile(input, directory, "written.bin", false);
+        }
+    }
+
+    @Benchmark
+    public boolean existsPath() throws IOException {
+        return environment.hdfs.existsPath(existing);
+    }
+
+    @Benchmark
+    public boolean existsPathMissing() throws IOException {
+        return environment.hdfs.existsPath(missing);
+    }
+
+    @Benchmark
+    public byte[] gatewayReadAllBytes() {
+        return environment.python.readAllBytes(existing);
+    }
+
+    @Benchmark
+    public byte[] gatewayReadAllBytesHedged() throws IOException {
+        return environment.python.readAllBytesHedged(existing, 0);
+    }
+
+    @Benchmark
+    public boolean gatewayUpload() {
+        return environment.python.upload(localFile, directory);
+    }
+
+    @Benchmark
+    public long gatewayWriteBytes() throws IOException, HadoopException {
+        return environment.python.writeBytes(directory + "/bytes.bin", content, true);
+    }
+
+    @Benchmark
+    public boolean gatewayDownload() {
+        return environment.python.download(existing, downloadTarget);
+    }
+}
@@ -0,0 +1,98 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import py4j.GatewayServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end calls through a real {@link GatewayServer}: the commands are written on the socket in the py4j
+ * text protocol, exactly as the python client sends them, so the numbers include the protocol encoding (base64
+ * for byte arrays) and the socket round trip on top of the service itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Py4jRoundTripBenchmark {
+
+    @Param({BenchmarkEnvironment.MINIDFS, BenchmarkEnvironment.LOCAL})
+    public String backend;
+
+    //Com o cache ligado, existsPath mede acertos do cache a partir da segunda chamada
+    @Param({"false", "true"})
+    public boolean metadataCache;
+
+    @Param({"4096", "1048576"})
+    public int fileSize;
+
+    private BenchmarkEnvironment environment;
+    private GatewayServer gatewayServer;
+    private Socket socket;
+    private BufferedWriter writer;
+    private BufferedReader reader;
+    private String existing;
+    private String directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment(backend, metadataCache);
+        directory = environment.getRoot() + "/py4j";
+        existing = environment.createFile(directory, "existing.bin", fileSize);
+        gatewayServer = new GatewayServer(environment.python, 0);
+        gatewayServer.start();
+        socket = new Socket(InetAddress.getLoopbackAddress(), gatewayServer.getListeningPort());
+        socket.setTcpNoDelay(true);
+        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        socket.close();
+        gatewayServer.shutdown();
+        environment.close();
+    }
+
+    @Benchmark
+    public String existsPath() throws IOException {
+        return call("existsPath", existing);
+    }
+
+    @Benchmark
+    public String ls() throws IOException {
+        return call("ls", directory);
+    }
+
+    @Benchmark
+    public String readAllBytes() throws IOException {
+        return call("readAllBytes", existing);
+    }
+
+    private String call(String method, String argument) throws IOException {
+        // c = call, t = entry point, s = string argument, e = end of command
+        writer.write("c\nt\n" + method + "\ns" + argument + "\ne\n");
+        writer.flush();
+        String answer = reader.readLine();
+        if (answer == null || !answer.startsWith("!y")) {
+            throw new IOException("Resposta inesperada do gateway para " + method + ": " + answer);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,217 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Admission control of the gateway calls. py4j runs every call on its own thread, so without a limit a burst of
+ * python workers runs any number of operations at once. Each call enters one lane: metadata, data (reads and
+ * writes of content held in memory by the call) or bulk transfers, each with its own number of concurrent calls, so
+ * downloads can't starve the metadata calls. Calls over the limit wait in a queue up to a timeout; when the
+ * queue of the lane is full they are rejected at once. Calls that hold content in memory also reserve its size
+ * in a byte budget shared by all lanes. Refused calls throw {@link HadoopOverloadedException}.
+ */
+@Service
+public class HadoopAdmissionControl {
+
+    /**
+     * Reservation callback of services called outside the gateway, where there's no permit to reserve on.
+     */
+    static final LongConsumer NO_RESERVATION = bytes -> {
+    };
+
+    private static final int PERMIT_BYTES = 1024;
+    private static final long MAX_WAIT_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    public enum Lane {
+        METADATA, DATA, BULK
+    }
+
+    private final HadoopConfigurationProperties.HadoopAdmissionConfigurationProperties admissionConfiguration;
+    private final LaneState[] lanes = new LaneState[Lane.values().length];
+    private final int maxBytePermits;
+    private final Semaphore bytes;
+    private final AtomicInteger waitingBytes = new AtomicInteger();
+    private final LongAdder byteTimeouts = new LongAdder();
+
+    public HadoopAdmissionControl(HadoopConfigurationProperties hadoopConfiguration) {
+        this.admissionConfiguration = hadoopConfiguration.getAdmission();
+        lanes[Lane.METADATA.ordinal()] = new LaneState(Lane.METADATA, admissionConfiguration.getMetadataConcurrency());
+        lanes[Lane.DATA.ordinal()] = new LaneState(Lane.DATA, admissionConfiguration.getDataConcurrency());
+        lanes[Lane.BULK.ordinal()] = new LaneState(Lane.BULK, admissionConfiguration.getBulkConcurrency());
+        this.maxBytePermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, admissionConfiguration.getMaxInFlightBytes() / PERMIT_BYTES));
+        this.bytes = new Semaphore(maxBytePermits, true);
+    }
+
+    /**
+     * Enter a lane, waiting for a free slot when the lane is busy.
+     *
+     * @param lane the lane of the operation
+     * @return the permit, to be closed when the operation finishes
+     * @throws HadoopOverloadedException if the queue of the lane is full or the wait times out
+     */
+    public Permit enter(Lane lane) {
+        if (!admissionConfiguration.isEnabled()) {
+            return new Permit(null);
+        }
+        LaneState state = lanes[lane.ordinal()];
+        if (state.slots.tryAcquire()) {
+            state.admitted(0);
+            return new Permit(state);
+        }
+        if (state.waiting.incrementAndGet() > admissionConfiguration.getMaxQueued()) {
+            state.waiting.decrementAndGet();
+            state.rejected.increment();
+            throw new HadoopOverloadedException("Servidor sobrecarregado: fila de " + lane + " cheia ("
+                    + admissionConfiguration.getMaxQueued() + " chamadas esperando)");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!state.slots.tryAcquire(admissionConfiguration.getQueueTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                state.timeouts.increment();
+                throw new HadoopOverloadedException("Servidor sobrecarregado: chamada de " + lane + " esperou mais de "
+                        + admissionConfiguration.getQueueTimeoutMillis() + " ms na fila");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HadoopOverloadedException("Chamada de " + lane + " interrompida na fila");
+        } finally {
+            state.waiting.decrementAndGet();
+        }
+        state.admitted(System.nanoTime() - start);
+        return new Permit(state);
+    }
+
+    public boolean isEnabled() {
+        return admissionConfiguration.isEnabled();
+    }
+
+    /**
+     * The state of each lane and of the byte budget; wait times in microseconds.
+     */
+    public Map<String, Map<String, Number>> stats() {
+        Map<String, Map<String, Number>> stats = new LinkedHashMap<>();
+        for (LaneState state : lanes) {
+            stats.put(state.lane.name().toLowerCase(), state.snapshot());
+        }
+        Map<String, Number> budget = new LinkedHashMap<>();
+        budget.put("limit_bytes", (long) maxBytePermits * PERMIT_BYTES);
+        budget.put("in_flight_bytes", (long) (maxBytePermits - bytes.availablePermits()) * PERMIT_BYTES);
+        budget.put("queued", waitingBytes.get());
+        budget.put("timeouts", byteTimeouts.sum());
+        stats.put("bytes", budget);
+        return stats;
+    }
+
+    /**
+     * A slot in a lane and the bytes reserved by the operation.
+     */
+    public class Permit implements AutoCloseable {
+        private final LaneState state;
+        private int bytePermits;
+        private boolean closed;
+
+        private Permit(LaneState state) {
+            this.state = state;
+        }
+
+        /**
+         * Reserve bytes of the budget for the content the operation holds in memory, waiting up to the queue
+         * timeout. An operation larger than the whole budget reserves all of it, so it runs alone instead of
+         * never running.
+         *
+         * @param size the number of bytes
+         * @throws HadoopOverloadedException if the budget isn't freed in time
+         */
+        public void reserve(long size) {
+            if (state == null || size <= 0) {
+                return;
+            }
+            int permits = (int) Math.min(maxBytePermits - bytePermits, (size + PERMIT_BYTES - 1) / PERMIT_BYTES);
+            if (permits <= 0 || bytes.tryAcquire(permits)) {
+                bytePermits += permits;
+                return;
+            }
+            waitingBytes.incrementAndGet();
+            try {
+                if (!bytes.tryAcquire(permits, admissionConfiguration.getQueueTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                    byteTimeouts.increment();
+                    throw new HadoopOverloadedException("Servidor sobrecarregado: " + size + " bytes não couberam no limite de "
+                            + (long) maxBytePermits * PERMIT_BYTES + " bytes em trânsito em " + admissionConfiguration.getQueueTimeoutMillis() + " ms");
+                }
+                bytePermits += permits;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HadoopOverloadedException("Chamada de " + state.lane + " interrompida na fila de bytes");
+            } finally {
+                waitingBytes.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (state == null || closed) {
+                return;
+            }
+            closed = true;
+            if (bytePermits > 0) {
+                bytes.release(bytePermits);
+            }
+            state.active.decrementAndGet();
+            state.slots.release();
+        }
+    }
+
+    private static class LaneState {
+        private final Lane lane;
+        private final int limit;
+        private final Semaphore slots;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final Histogram wait = new ConcurrentHistogram(MAX_WAIT_MICROS, 2);
+
+        private LaneState(Lane lane, int limit) {
+            this.lane = lane;
+            this.limit = limit;
+            this.slots = new Semaphore(limit, true);
+        }
+
+        private void admitted(long waitNanos) {
+            admitted.increment();
+            active.incrementAndGet();
+            if (waitNanos > 0) {
+                queued.increment();
+                wait.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(waitNanos), MAX_WAIT_MICROS));
+            }
+        }
+
+        private Map<String, Number> snapshot() {
+            Histogram copy = wait.copy();
+            Map<String, Number> values = new LinkedHashMap<>();
+            values.put("limit", limit);
+            values.put("active", active.get());
+            values.put("queued", waiting.get());
+            values.put("admitted", admitted.sum());
+            values.put("admitted_after_wait", queued.sum());
+            values.put("rejected", rejected.sum());
+            values.put("timeouts", timeouts.sum());
+            values.put("wait_mean_us", copy.getMean());
+            values.put("wait_p99_us", copy.getValueAtPercentile(99));
+            values.put("wait_max_us", copy.getMaxValue());
+            return values;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads of many files in a single gateway call. The sizes are resolved first so that every file is read
+ * concurrently straight into its slice of one contiguous array. Missing or unreadable files are flagged in
+ * the index of the {@link HadoopPackedBuffer} instead of failing the whole batch.
+ */
+@Log4j2
+@Service
+public class HadoopBatchReadService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopReadConfigurationProperties readConfiguration;
+    private final ExecutorService executor;
+
+    public HadoopBatchReadService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.readConfiguration = hadoopConfiguration.getRead();
+        this.executor = Executors.newFixedThreadPool(readConfiguration.getBatchParallelism());
+    }
+
+    /**
+     * Read several hdfs files into one buffer.
+     *
+     * @param paths the hdfs paths of the files
+     * @return the packed contents and the index of each file, in the order of paths
+     */
+    public HadoopPackedBuffer readMany(String[] paths) {
+        return readMany(paths, HadoopTransferService.NO_PROGRESS);
+    }
+
+    /**
+     * Read several hdfs files into one buffer.
+     *
+     * @param paths    the hdfs paths of the files
+     * @param progress receives the bytes of each file as soon as it's read
+     * @return the packed contents and the index of each file, in the order of paths
+     */
+    public HadoopPackedBuffer readMany(String[] paths, LongConsumer progress) {
+        return readMany(paths, progress, HadoopAdmissionControl.NO_RESERVATION);
+    }
+
+    /**
+     * Read several hdfs files into one buffer.
+     *
+     * @param paths    the hdfs paths of the files
+     * @param progress receives the bytes of each file as soon as it's read
+     * @param reserve  receives the size of the buffer once the sizes are resolved, before it's allocated
+     * @return the packed contents and the index of each file, in the order of paths
+     */
+    public HadoopPackedBuffer readMany(String[] paths, LongConsumer progress, LongConsumer reserve) {
+        int count = paths.length;
+        byte[] status = new byte[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+
+        List<Future<FileStatus>> infos = new ArrayList<>(count);
+        for (String path : paths) {
+            infos.add(executor.submit(() -> hadoopHDFSService.fileInfoUncached(path)));
+        }
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            try {
+                FileStatus info = infos.get(i).get();
+                long length = info.isFile() ? info.getLen() : -1;
+                if (length < 0) {
+                    status[i] = HadoopPackedBuffer.ERROR;
+                } else if (total + length > readConfiguration.getMaxBatchBytes()) {
+                    status[i] = HadoopPackedBuffer.TOO_LARGE;
+                } else {
+                    offsets[i] = (int) total;
+                    lengths[i] = (int) length;
+                    total += length;
+                }
+            } catch (ExecutionException e) {
+                status[i] = e.getCause() instanceof FileNotFoundException ? HadoopPackedBuffer.MISSING : HadoopPackedBuffer.ERROR;
+                log.debug("readMany: {} não pode ser lido: {}", paths[i], e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status[i] = HadoopPackedBuffer.ERROR;
+            }
+        }
+
+        reserve.accept(total);
+        byte[] data = new byte[(int) total];
+        List<Future<Integer>> reads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (status[i] != HadoopPackedBuffer.OK || lengths[i] == 0) {
+                reads.add(null);
+                continue;
+            }
+            String path = paths[i];
+            int offset = offsets[i];
+            int length = lengths[i];
+            reads.add(executor.submit((Callable<Integer>) () -> {
+                try (FSDataInputStream input = hadoopHDFSService.readFile(path)) {
+                    int read = readInto(input, data, offset, length);
+                    progress.accept(read);
+                    return read;
+                }
+            }));
+        }
+        for (int i = 0; i < count; i++) {
+            Future<Integer> read = reads.get(i);
+            if (read == null) {
+                continue;
+            }
+            try {
+                // O arquivo pode ter diminuído entre o fileInfo e a leitura
+                lengths[i] = read.get();
+            } catch (ExecutionException e) {
+                status[i] = e.getCause() instanceof FileNotFoundException ? HadoopPackedBuffer.MISSING : HadoopPackedBuffer.ERROR;
+                lengths[i] = 0;
+                log.error("readMany: falha ao ler {}: {}", paths[i], e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status[i] = HadoopPackedBuffer.ERROR;
+                lengths[i] = 0;
+            }
+        }
+        return new HadoopPackedBuffer(paths, data, offsets, lengths, status);
+    }
+
+    private static int readInto(FSDataInputStream input, byte[] data, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = input.read(data, offset + read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+}
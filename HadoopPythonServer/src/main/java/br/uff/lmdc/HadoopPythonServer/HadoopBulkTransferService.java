@@ -0,0 +1,253 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import lombok.val;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Uploads and downloads of many files in a single gateway call. The transfers run on a bounded
+ * work-stealing pool; the sum of the sizes of the files being transferred is capped so that memory stays
+ * bounded, and directories are created in a single pass before the transfers start.
+ */
+@Log4j2
+@Service
+public class HadoopBulkTransferService {
+
+    private static final int PERMIT_BYTES = 1024;
+
+    @FunctionalInterface
+    interface FileTransfer {
+        long transfer(int index) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface FileSize {
+        long size(int index) throws IOException;
+    }
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopTransferService hadoopTransferService;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxPermits;
+
+    public HadoopBulkTransferService(HadoopHDFSService hadoopHDFSService, HadoopTransferService hadoopTransferService,
+                                     HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopTransferService = hadoopTransferService;
+        val transferConfiguration = hadoopConfiguration.getTransfer();
+        this.executor = Executors.newWorkStealingPool(transferConfiguration.getBulkParallelism());
+        this.maxPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, transferConfiguration.getMaxInFlightBytes() / PERMIT_BYTES));
+        this.inFlight = new Semaphore(maxPermits, true);
+    }
+
+    /**
+     * Upload local files to hdfs.
+     *
+     * @param localPaths the local files
+     * @param hdfsPaths  the full hdfs destination of each file, replaced if it exists
+     * @return the report of the transfers
+     * @throws IOException if the destination directories can't be created
+     */
+    public HadoopTransferReport uploadMany(String[] localPaths, String[] hdfsPaths) throws IOException {
+        return uploadMany(localPaths, hdfsPaths, HadoopTransferService.NO_PROGRESS);
+    }
+
+    private HadoopTransferReport uploadMany(String[] localPaths, String[] hdfsPaths, LongConsumer progress) throws IOException {
+        checkPairs(localPaths, hdfsPaths);
+        Set<String> parents = new LinkedHashSet<>();
+        for (String hdfsPath : hdfsPaths) {
+            parents.add(HadoopPaths.parent(hdfsPath));
+        }
+        hadoopHDFSService.makeDirectories(parents);
+        return run(new HadoopTransferReport(localPaths, hdfsPaths), progress,
+                i -> new File(localPaths[i]).length(),
+                i -> {
+                    String hdfsPath = hdfsPaths[i];
+                    return hadoopTransferService.upload(localPaths[i], HadoopPaths.parent(hdfsPath), hdfsPath.substring(hdfsPath.lastIndexOf('/') + 1));
+                });
+    }
+
+    /**
+     * Download hdfs files to the local file system.
+     *
+     * @param hdfsPaths  the hdfs files
+     * @param localPaths the local destination of each file, replaced if it exists
+     * @return the report of the transfers
+     * @throws IOException if the destination directories can't be created
+     */
+    public HadoopTransferReport downloadMany(String[] hdfsPaths, String[] localPaths) throws IOException {
+        return downloadMany(hdfsPaths, localPaths, i -> hadoopHDFSService.fileInfo(hdfsPaths[i]).getLen(), HadoopTransferService.NO_PROGRESS);
+    }
+
+    private HadoopTransferReport downloadMany(String[] hdfsPaths, String[] localPaths, FileSize sizes, LongConsumer progress) throws IOException {
+        checkPairs(hdfsPaths, localPaths);
+        Set<Path> parents = new LinkedHashSet<>();
+        for (String localPath : localPaths) {
+            Path parent = Paths.get(localPath).toAbsolutePath().getParent();
+            if (parent != null) {
+                parents.add(parent);
+            }
+        }
+        for (Path parent : parents) {
+            Files.createDirectories(parent);
+        }
+        return run(new HadoopTransferReport(hdfsPaths, localPaths), progress, sizes,
+                i -> hadoopTransferService.download(hdfsPaths[i], localPaths[i]));
+    }
+
+    /**
+     * Upload every file below a local directory, keeping the relative paths.
+     *
+     * @param localDir the local directory
+     * @param hdfsDir  the hdfs destination directory
+     * @return the report of the transfers
+     * @throws IOException if the local directory can't be walked
+     */
+    public HadoopTransferReport uploadDirectory(String localDir, String hdfsDir) throws IOException {
+        return uploadDirectory(localDir, hdfsDir, HadoopTransferService.NO_PROGRESS);
+    }
+
+    /**
+     * Upload every file below a local directory, keeping the relative paths.
+     *
+     * @param localDir the local directory
+     * @param hdfsDir  the hdfs destination directory
+     * @param progress receives the bytes of each file as soon as it's uploaded
+     * @return the report of the transfers
+     * @throws IOException if the local directory can't be walked
+     */
+    public HadoopTransferReport uploadDirectory(String localDir, String hdfsDir, LongConsumer progress) throws IOException {
+        Path root = Paths.get(localDir);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        String[] localPaths = new String[files.size()];
+        String[] hdfsPaths = new String[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            localPaths[i] = file.toString();
+            hdfsPaths[i] = HadoopPaths.join(hdfsDir, root.relativize(file).toString().replace(File.separatorChar, '/'));
+        }
+        return uploadMany(localPaths, hdfsPaths, progress);
+    }
+
+    /**
+     * Download every file below a hdfs directory, keeping the relative paths.
+     *
+     * @param hdfsDir  the hdfs directory
+     * @param localDir the local destination directory
+     * @return the report of the transfers
+     * @throws IOException if the hdfs directory can't be listed
+     */
+    public HadoopTransferReport downloadDirectory(String hdfsDir, String localDir) throws IOException {
+        return downloadDirectory(hdfsDir, localDir, HadoopTransferService.NO_PROGRESS);
+    }
+
+    /**
+     * Download every file below a hdfs directory, keeping the relative paths.
+     *
+     * @param hdfsDir  the hdfs directory
+     * @param localDir the local destination directory
+     * @param progress receives the bytes of each file as soon as it's downloaded
+     * @return the report of the transfers
+     * @throws IOException if the hdfs directory can't be listed
+     */
+    public HadoopTransferReport downloadDirectory(String hdfsDir, String localDir, LongConsumer progress) throws IOException {
+        String root = hadoopHDFSService.qualifiedPath(hdfsDir);
+        List<String> hdfsPaths = new ArrayList<>();
+        List<String> localPaths = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        RemoteIterator<LocatedFileStatus> files = hadoopHDFSService.listFilesRecursive(hdfsDir);
+        while (files.hasNext()) {
+            LocatedFileStatus file = files.next();
+            String path = file.getPath().toUri().getPath();
+            String relative = HadoopPaths.relativize(root, path);
+            if (relative == null) {
+                continue;
+            }
+            hdfsPaths.add(path);
+            localPaths.add(Paths.get(localDir, relative.split("/")).toString());
+            sizes.add(file.getLen());
+        }
+        return downloadMany(hdfsPaths.toArray(new String[0]), localPaths.toArray(new String[0]), sizes::get, progress);
+    }
+
+    private HadoopTransferReport run(HadoopTransferReport report, LongConsumer progress, FileSize sizes, FileTransfer transfer) {
+        long start = System.currentTimeMillis();
+        int count = report.getFileCount();
+        List<Future<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> transferOne(report, index, progress, sizes, transfer)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Falha inesperada na transferência em lote", e.getCause());
+        }
+        report.finish(System.currentTimeMillis() - start);
+        log.info("Transferência em lote: {}", report);
+        return report;
+    }
+
+    private void transferOne(HadoopTransferReport report, int index, LongConsumer progress, FileSize sizes, FileTransfer transfer) {
+        int permits = 0;
+        try {
+            long size = sizes.size(index);
+            permits = (int) Math.min(maxPermits, Math.max(1, (size + PERMIT_BYTES - 1) / PERMIT_BYTES));
+            inFlight.acquire(permits);
+            try {
+                long bytes = transfer.transfer(index);
+                report.succeeded(index, bytes);
+                progress.accept(bytes);
+            } finally {
+                inFlight.release(permits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.failed(index, e);
+        } catch (Exception e) {
+            log.error("Falha ao transferir {} -> {}: {}", report.getSources()[index], report.getTargets()[index], e.getMessage());
+            report.failed(index, e);
+        }
+    }
+
+    private static void checkPairs(String[] sources, String[] targets) {
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException("As listas de origem e destino devem ter o mesmo tamanho: " + sources.length + " != " + targets.length);
+        }
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+}
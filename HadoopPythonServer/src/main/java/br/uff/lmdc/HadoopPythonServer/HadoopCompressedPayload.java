@@ -0,0 +1,28 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+
+/**
+ * Content sent through the gateway with the codec actually used, which is "none" when the content was
+ * found not to be worth compressing. Content sent in pieces has last set on its final piece and length counts the
+ * uncompressed bytes consumed so far.
+ */
+@Getter
+public class HadoopCompressedPayload {
+
+    String codec;
+    byte[] data;
+    long length;
+    boolean last;
+
+    public HadoopCompressedPayload(String codec, byte[] data, long length) {
+        this(codec, data, length, true);
+    }
+
+    public HadoopCompressedPayload(String codec, byte[] data, long length, boolean last) {
+        this.codec = codec;
+        this.data = data;
+        this.length = length;
+        this.last = last;
+    }
+}
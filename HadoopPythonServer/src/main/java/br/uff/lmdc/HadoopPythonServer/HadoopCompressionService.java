@@ -0,0 +1,284 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of the content that crosses the gateway, negotiated per call: the client names the codec it can
+ * decode and the reply says which one was used. LZ4 uses the standard frame format and deflate the zlib format,
+ * both readable by the python standard modules (lz4.frame and zlib). The content always goes through the codec
+ * streams in chunks, and whole files are handed out as a {@link CompressedStream} in pieces, so the compressed
+ * output is never collected whole. Content that is small, has the extension of a compressed format or whose first
+ * chunk looks random (high entropy) is sent as is.
+ */
+@Log4j2
+@Service
+public class HadoopCompressionService {
+
+    public static final String NONE = "none";
+    public static final String LZ4 = "lz4";
+    public static final String DEFLATE = "deflate";
+    private static final String[] CODECS = {LZ4, DEFLATE};
+
+    private final HadoopConfigurationProperties.HadoopCompressionConfigurationProperties compressionConfiguration;
+    private final Set<String> skipExtensions;
+
+    public HadoopCompressionService(HadoopConfigurationProperties hadoopConfiguration) {
+        this.compressionConfiguration = hadoopConfiguration.getCompression();
+        this.skipExtensions = compressionConfiguration.getSkipExtensions().stream().map(String::toLowerCase).collect(Collectors.toSet());
+    }
+
+    public String[] codecs() {
+        return CODECS.clone();
+    }
+
+    /**
+     * Read a stream to its end, compressing it into a single array. Meant for content that is already bounded in
+     * memory, like a chunk; whole files go through {@link #stream(InputStream, String, String)}.
+     *
+     * @param input the content
+     * @param name  the file name, used to skip compressed formats; may be null
+     * @param codec the codec requested by the client
+     * @return the content, compressed with codec or as is
+     * @throws IOException if the stream can't be read or the codec is unknown
+     */
+    public HadoopCompressedPayload compress(InputStream input, String name, String codec) throws IOException {
+        try (CompressedStream stream = stream(input, name, codec)) {
+            byte[] data = stream.read(Integer.MAX_VALUE - 8);
+            if (!NONE.equals(stream.codec)) {
+                log.debug("compress: {} {} -> {} bytes ({})", name, stream.length, data.length, stream.codec);
+            }
+            return new HadoopCompressedPayload(stream.codec, data, stream.length, true);
+        }
+    }
+
+    /**
+     * Compress a stream in pieces. The codec is chosen from the first chunk, as in
+     * {@link #compress(InputStream, String, String)}; the pieces together form a single lz4 frame or zlib stream.
+     *
+     * @param input the content, closed with the returned stream
+     * @param name  the file name, used to skip compressed formats; may be null
+     * @param codec the codec requested by the client
+     * @return the compressed stream
+     * @throws IOException if the stream can't be read or the codec is unknown
+     */
+    public CompressedStream stream(InputStream input, String name, String codec) throws IOException {
+        String requested = check(codec);
+        byte[] sample = new byte[compressionConfiguration.getChunkSize()];
+        int sampled = fill(input, sample);
+        String used = NONE.equals(requested) || sampled < compressionConfiguration.getMinSize()
+                || skipped(name) || entropy(sample, sampled) > compressionConfiguration.getMaxEntropy() ? NONE : requested;
+        return new CompressedStream(input, used, sample, sampled);
+    }
+
+    public HadoopCompressedPayload compress(byte[] content, String name, String codec) throws IOException {
+        return compress(new ByteArrayInputStream(content), name, codec);
+    }
+
+    /**
+     * A stream decoding content compressed by the client.
+     */
+    public InputStream decompress(byte[] data, String codec) throws IOException {
+        InputStream input = new ByteArrayInputStream(data);
+        switch (check(codec)) {
+            case LZ4:
+                return new LZ4FrameInputStream(input);
+            case DEFLATE:
+                return new InflaterInputStream(input, new Inflater(), compressionConfiguration.getChunkSize()) {
+                    @Override
+                    public void close() throws IOException {
+                        // O Inflater passado no construtor não é liberado pelo close da classe
+                        try {
+                            super.close();
+                        } finally {
+                            inf.end();
+                        }
+                    }
+                };
+            default:
+                return input;
+        }
+    }
+
+    /**
+     * Copy a decoded stream to an output in chunks.
+     *
+     * @return the number of decoded bytes
+     */
+    public long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[compressionConfiguration.getChunkSize()];
+        long copied = 0;
+        int n;
+        while ((n = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, n);
+            copied += n;
+        }
+        return copied;
+    }
+
+    /**
+     * Content compressed on demand: each {@link #next(int)} pumps the input through the encoder only until the
+     * requested amount of compressed bytes is ready, so memory stays bounded by the piece size plus one chunk.
+     */
+    public class CompressedStream implements Closeable {
+        private final InputStream input;
+        private final String codec;
+        private final PendingOutput pending = new PendingOutput();
+        private final OutputStream encoder;
+        private final byte[] buffer;
+        private long length;
+        private boolean finished;
+
+        private CompressedStream(InputStream input, String codec, byte[] sample, int sampled) throws IOException {
+            this.input = input;
+            this.codec = codec;
+            this.buffer = sample;
+            this.encoder = encoder(pending, codec);
+            encoder.write(sample, 0, sampled);
+            length = sampled;
+            if (sampled < sample.length) {
+                // A amostra já chegou ao fim do conteúdo
+                finish();
+            }
+        }
+
+        /**
+         * The next compressed piece.
+         *
+         * @param maxBytes the maximum size of the piece
+         * @return the piece, with last set once the content is over; empty only for an empty content
+         */
+        public synchronized HadoopCompressedPayload next(int maxBytes) throws IOException {
+            byte[] piece = read(maxBytes);
+            return new HadoopCompressedPayload(codec, piece, length, finished && pending.size() == 0);
+        }
+
+        private byte[] read(int maxBytes) throws IOException {
+            while (pending.size() < maxBytes && !finished) {
+                int n = input.read(buffer);
+                if (n < 0) {
+                    finish();
+                } else {
+                    encoder.write(buffer, 0, n);
+                    length += n;
+                }
+            }
+            return pending.take(maxBytes);
+        }
+
+        private void finish() throws IOException {
+            finished = true;
+            // Escreve o final do frame/stream em pending e libera o Deflater
+            encoder.close();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                if (!finished) {
+                    finish();
+                }
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * The compressed bytes not handed out yet; taken from the head as the pieces are read.
+     */
+    private static class PendingOutput extends ByteArrayOutputStream {
+        private byte[] take(int maxBytes) {
+            int n = Math.min(maxBytes, count);
+            byte[] taken = Arrays.copyOf(buf, n);
+            System.arraycopy(buf, n, buf, 0, count - n);
+            count -= n;
+            return taken;
+        }
+    }
+
+    private OutputStream encoder(OutputStream output, String codec) throws IOException {
+        switch (codec) {
+            case LZ4:
+                return new LZ4FrameOutputStream(output);
+            case DEFLATE:
+                return new DeflaterOutputStream(output, new Deflater(compressionConfiguration.getDeflateLevel()), compressionConfiguration.getChunkSize()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            def.end();
+                        }
+                    }
+                };
+            default:
+                return output;
+        }
+    }
+
+    private static String check(String codec) throws IOException {
+        String normalized = codec == null || codec.isEmpty() ? NONE : codec.toLowerCase();
+        if (!normalized.equals(NONE) && !normalized.equals(LZ4) && !normalized.equals(DEFLATE)) {
+            throw new IOException("Compressão não suportada: " + codec);
+        }
+        return normalized;
+    }
+
+    private boolean skipped(String name) {
+        if (name == null) {
+            return false;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && skipExtensions.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    private static int fill(InputStream input, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int n = input.read(buffer, read, buffer.length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    /**
+     * Shannon entropy of the bytes, in bits per byte: close to 8 for compressed or encrypted content.
+     */
+    static double entropy(byte[] data, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++) {
+            counts[data[i] & 0xff]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
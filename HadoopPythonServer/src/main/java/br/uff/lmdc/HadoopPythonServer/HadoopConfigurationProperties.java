@@ -6,6 +6,11 @@ import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.stereotype.Component;
+import py4j.GatewayServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 @Component
 @ConfigurationProperties("hadoop")
@@ -15,6 +20,111 @@ public class HadoopConfigurationProperties {
   @NestedConfigurationProperty
   HadoopHDFSConfigurationProperties hdfs = new HadoopHDFSConfigurationProperties();
 
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopReadConfigurationProperties read = new HadoopReadConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopSharedMemoryConfigurationProperties sharedMemory = new HadoopSharedMemoryConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopMetadataCacheConfigurationProperties metadataCache = new HadoopMetadataCacheConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopWalkConfigurationProperties walk = new HadoopWalkConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopTransferConfigurationProperties transfer = new HadoopTransferConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopDatasetConfigurationProperties dataset = new HadoopDatasetConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopReadCacheConfigurationProperties cache = new HadoopReadCacheConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopMetricsConfigurationProperties metrics = new HadoopMetricsConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopJobConfigurationProperties job = new HadoopJobConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopGatewayConfigurationProperties gateway = new HadoopGatewayConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopStatConfigurationProperties stat = new HadoopStatConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopListingConfigurationProperties listing = new HadoopListingConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopWriteConfigurationProperties write = new HadoopWriteConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopPackConfigurationProperties pack = new HadoopPackConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopImageConfigurationProperties image = new HadoopImageConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopCompressionConfigurationProperties compression = new HadoopCompressionConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopHedgeConfigurationProperties hedge = new HadoopHedgeConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopSyncConfigurationProperties sync = new HadoopSyncConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopAdmissionConfigurationProperties admission = new HadoopAdmissionConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopTableConfigurationProperties table = new HadoopTableConfigurationProperties();
+
+  @Getter
+  @Setter
+  @NestedConfigurationProperty
+  HadoopZeroCopyConfigurationProperties zeroCopy = new HadoopZeroCopyConfigurationProperties();
+
   @Getter
   @Setter
   @ToString
@@ -41,4 +151,274 @@ public class HadoopConfigurationProperties {
 
   }
 
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopReadConfigurationProperties {
+    //Tamanho padrão de cada chunk devolvido pelo readChunk
+    private int chunkSize = 4 * 1024 * 1024;
+    //Maior chunk/range aceito em uma única chamada
+    private int maxChunkSize = 64 * 1024 * 1024;
+    //Handles sem uso por mais tempo que isso são fechados
+    private long handleIdleTimeoutMillis = 5 * 60 * 1000;
+    private int maxOpenHandles = 1024;
+    //Arquivos lidos ao mesmo tempo pelo readMany
+    private int batchParallelism = 16;
+    //Tamanho máximo do buffer devolvido pelo readMany
+    private int maxBatchBytes = 256 * 1024 * 1024;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopSharedMemoryConfigurationProperties {
+    //Só funciona quando o python roda na mesma máquina que o servidor
+    private boolean enabled = false;
+    private String directory = "/dev/shm";
+    //Segmentos não liberados pelo cliente são removidos após esse tempo
+    private long segmentTimeoutMillis = 60 * 1000;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopMetadataCacheConfigurationProperties {
+    private boolean enabled = true;
+    //Alterações feitas por outros clientes do HDFS aparecem depois desse tempo
+    private long ttlMillis = 5 * 1000;
+    private int maxEntries = 10000;
+    //Listagens com mais entradas que isso não entram no cache, para não expulsar as entradas úteis
+    private int maxListingEntries = 1000;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopWalkConfigurationProperties {
+    //Quantidade de diretórios listados em paralelo
+    private int parallelism = 8;
+    //Quantidade de diretórios devolvidos por página
+    private int pageSize = 256;
+    private long cursorIdleTimeoutMillis = 5 * 60 * 1000;
+    private int maxOpenCursors = 256;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopTransferConfigurationProperties {
+    private boolean parallelDownload = true;
+    //Arquivos menores que isso são baixados sequencialmente
+    private long parallelThreshold = 64L * 1024 * 1024;
+    //Tamanho de cada parte; 0 usa os blocos do HDFS como partes
+    private long partSize = 0;
+    //Partes baixadas ao mesmo tempo, somando todos os downloads
+    private int concurrency = 4;
+    private int bufferSize = 1024 * 1024;
+    //Arquivos transferidos ao mesmo tempo pelas operações em lote
+    private int bulkParallelism = 8;
+    //Soma máxima do tamanho dos arquivos em transferência nas operações em lote
+    private long maxInFlightBytes = 512L * 1024 * 1024;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopDatasetConfigurationProperties {
+    //Arquivos mantidos carregados à frente do cliente quando ele não informa
+    private int defaultPrefetch = 32;
+    private int maxPrefetch = 1024;
+    //Bytes carregados à frente por sessão; a leitura antecipada para ao atingir o limite
+    private long maxPrefetchBytes = 256L * 1024 * 1024;
+    //Threads de leitura antecipada compartilhadas por todas as sessões
+    private int parallelism = 8;
+    private long sessionIdleTimeoutMillis = 10 * 60 * 1000;
+    private int maxSessions = 64;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopReadCacheConfigurationProperties {
+    private boolean enabled = false;
+    //Arquivos até esse tamanho ficam em memória, os maiores em disco
+    private long memoryMaxFileSize = 1024 * 1024;
+    private long memoryMaxBytes = 256L * 1024 * 1024;
+    //Os arquivos ficam no subdiretório hdfs-read-cache, o único de que o cache apaga arquivos
+    private String diskDirectory = System.getProperty("java.io.tmpdir") + "/hdfs-lmdc-cache";
+    private long diskMaxBytes = 10L * 1024 * 1024 * 1024;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopMetricsConfigurationProperties {
+    //Porta do endpoint /metrics (formato Prometheus); 0 desativa
+    private int httpPort = 0;
+    private String httpHost = "127.0.0.1";
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopJobConfigurationProperties {
+    //Jobs executados ao mesmo tempo; os demais esperam na fila
+    private int parallelism = 8;
+    //Jobs na fila, em execução ou com resultado ainda não consultado
+    private int maxJobs = 1000;
+    //Tempo que o resultado de um job terminado fica disponível
+    private long resultTimeoutMillis = 10 * 60 * 1000;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopGatewayConfigurationProperties {
+    //Um listener do py4j por porta, para vários processos python locais
+    private List<Integer> ports = new ArrayList<>(List.of(GatewayServer.DEFAULT_PORT));
+    private String address = "127.0.0.1";
+    //0 = sem timeout; o python mantém a conexão aberta entre as chamadas
+    private int connectTimeoutMillis = 0;
+    private int readTimeoutMillis = 0;
+    private boolean tcpNoDelay = true;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopStatConfigurationProperties {
+    //Consultas de metadados feitas em paralelo pelo statMany
+    private int parallelism = 16;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopListingConfigurationProperties {
+    //Entradas por página quando o cliente não informa
+    private int pageSize = 1000;
+    private int maxPageSize = 100000;
+    private long cursorIdleTimeoutMillis = 5 * 60 * 1000;
+    private int maxOpenCursors = 256;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopWriteConfigurationProperties {
+    //Buffer de cada sessão de escrita; os chunks pequenos do python são juntados antes de ir ao HDFS
+    private int bufferSize = 1024 * 1024;
+    //hflush periódico: os dados ficam visíveis para leitores e a salvo de falhas do servidor
+    private long hflushIntervalMillis = 5 * 1000;
+    private long hflushBytes = 64L * 1024 * 1024;
+    private long sessionIdleTimeoutMillis = 10 * 60 * 1000;
+    private int maxOpenSessions = 256;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopPackConfigurationProperties {
+    //Containers com o índice em memória e o arquivo de dados aberto para leituras posicionais
+    private int maxCachedContainers = 64;
+    private long sessionIdleTimeoutMillis = 10 * 60 * 1000;
+    private int maxOpenSessions = 64;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopImageConfigurationProperties {
+    //Decodificação e redimensionamento usam CPU: por padrão uma thread por núcleo
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private float jpegQuality = 0.9f;
+    //Imagens maiores que isso (em pixels) são rejeitadas para não estourar o heap
+    private long maxSourcePixels = 100L * 1000 * 1000;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopCompressionConfigurationProperties {
+    //Conteúdos menores que isso vão sem compressão
+    private int minSize = 4 * 1024;
+    //Entropia (bits por byte) da amostra inicial acima da qual o conteúdo é considerado já comprimido
+    private double maxEntropy = 7.5;
+    private int chunkSize = 64 * 1024;
+    private int deflateLevel = 1;
+    //Extensões de formatos já comprimidos, nunca recomprimidos
+    private List<String> skipExtensions = new ArrayList<>(Arrays.asList(
+        "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "avi", "mkv", "zip", "gz", "bz2", "xz", "zst", "lz4",
+        "snappy", "7z", "rar", "parquet", "orc", "avro"));
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopHedgeConfigurationProperties {
+    //Leituras com uma segunda tentativa especulativa quando a primeira passa do limiar (readAllBytes e download)
+    private boolean enabled = false;
+    private long thresholdMillis = 100;
+    //Prazo padrão de cada leitura; 0 desativa
+    private long deadlineMillis = 60 * 1000;
+    //Cada range é lido (e, se preciso, repetido) separadamente
+    private int rangeSize = 4 * 1024 * 1024;
+    private int parallelism = 32;
+    //Pool das leituras especulativas do próprio cliente do HDFS (dfs.client.hedged.read.*), usadas nos preads
+    private int clientThreadPoolSize = 16;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopSyncConfigurationProperties {
+    //Arquivos comparados ao mesmo tempo (metadados, manifesto e checksums); as transferências usam o bulkParallelism
+    private int parallelism = 16;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopAdmissionConfigurationProperties {
+    private boolean enabled = true;
+    //Chamadas executadas ao mesmo tempo em cada fila: metadados, leituras/escritas em memória e transferências em lote
+    private int metadataConcurrency = 64;
+    private int dataConcurrency = 32;
+    private int bulkConcurrency = 8;
+    //Chamadas esperando em cada fila; acima disso são rejeitadas na hora
+    private int maxQueued = 256;
+    private long queueTimeoutMillis = 30 * 1000;
+    //Soma máxima dos conteúdos em memória nas chamadas em andamento
+    private long maxInFlightBytes = Runtime.getRuntime().maxMemory() / 4;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopTableConfigurationProperties {
+    //Linhas por lote quando o cliente não informa
+    private int batchSize = 64 * 1024;
+    private int maxBatchSize = 1024 * 1024;
+    //Um lote termina antes quando os valores lidos passam desse tamanho
+    private int maxBatchBytes = 64 * 1024 * 1024;
+    private long cursorIdleTimeoutMillis = 10 * 60 * 1000;
+    private int maxOpenCursors = 64;
+  }
+
+  @Getter
+  @Setter
+  @ToString
+  public static class HadoopZeroCopyConfigurationProperties {
+    //Leituras de arquivos inteiros e downloads sequenciais em ByteBuffers do pool em vez de streams
+    private boolean enabled = true;
+    private int bufferSize = 1024 * 1024;
+    //Buffers diretos guardados para reuso; os devolvidos além desse número são liberados pelo GC
+    private int maxPooledBuffers = 16;
+    //Leitura direta dos blocos locais pelo socket do datanode; só quando o servidor roda junto de um datanode
+    private boolean shortCircuit = false;
+    private String domainSocketPath = "/var/lib/hadoop-hdfs/dn_socket";
+    //Sem verificar os checksums, os blocos locais podem ser mapeados em memória sem cópia (mesmo sem cache do HDFS)
+    private boolean skipChecksums = false;
+  }
+
 }
@@ -0,0 +1,292 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Dataset sessions: the client registers the ordered list of files of an epoch and the server keeps the next
+ * files already read on a background pool. Each session holds at most prefetch files loaded or being loaded and
+ * stops reading ahead once the loaded files reach maxPrefetchBytes, so the ring is the back-pressure in files
+ * and in memory; {@link #next(String, int)} hands out the files in order. A session has at most parallelism
+ * reads in flight and each finished read refills the ring, so the budget is exceeded by those reads at most.
+ */
+@Log4j2
+@Service
+public class HadoopDatasetService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopZeroCopyService hadoopZeroCopyService;
+    private final HadoopConfigurationProperties.HadoopDatasetConfigurationProperties datasetConfiguration;
+    private final HadoopConfigurationProperties.HadoopReadConfigurationProperties readConfiguration;
+    private final HadoopHandleRegistry<DatasetSession> sessions;
+    private final ExecutorService executor;
+
+    public HadoopDatasetService(HadoopHDFSService hadoopHDFSService, HadoopZeroCopyService hadoopZeroCopyService,
+                                HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopZeroCopyService = hadoopZeroCopyService;
+        this.datasetConfiguration = hadoopConfiguration.getDataset();
+        this.readConfiguration = hadoopConfiguration.getRead();
+        this.sessions = new HadoopHandleRegistry<>("dataset", datasetConfiguration.getSessionIdleTimeoutMillis(), datasetConfiguration.getMaxSessions());
+        this.executor = Executors.newFixedThreadPool(datasetConfiguration.getParallelism());
+    }
+
+    /**
+     * Register the files of an epoch and start prefetching them.
+     *
+     * @param paths    the hdfs paths, in the order they will be consumed
+     * @param shuffle  whether to shuffle the paths
+     * @param seed     the seed of the shuffle, so that epochs can be reproduced
+     * @param prefetch how many files to keep loaded ahead; 0 or less uses the configured default
+     * @return the session id
+     * @throws HadoopException if too many sessions are open
+     */
+    public String open(String[] paths, boolean shuffle, long seed, int prefetch) throws HadoopException {
+        List<String> order = new ArrayList<>(Arrays.asList(paths));
+        if (shuffle) {
+            Collections.shuffle(order, new Random(seed));
+        }
+        int capacity = prefetch <= 0 ? datasetConfiguration.getDefaultPrefetch() : Math.min(prefetch, datasetConfiguration.getMaxPrefetch());
+        DatasetSession session = new DatasetSession(order.toArray(new String[0]), capacity);
+        synchronized (session) {
+            fill(session);
+        }
+        return sessions.register(session);
+    }
+
+    /**
+     * Return the next files of a session, waiting only for the first of them if it isn't loaded yet.
+     *
+     * @param sessionId the session id
+     * @param maxItems  the maximum number of files returned
+     * @return the files; empty once every file of the session was returned
+     * @throws HadoopException if the session does not exist
+     */
+    public HadoopPackedBuffer next(String sessionId, int maxItems) throws HadoopException {
+        return next(sessionId, maxItems, HadoopAdmissionControl.NO_RESERVATION);
+    }
+
+    /**
+     * Return the next files of a session.
+     *
+     * @param sessionId the session id
+     * @param maxItems  the maximum number of files returned
+     * @param reserve   receives the size of the files taken from the prefetch ring, before they are packed into one buffer
+     * @return the files; empty once every file of the session was returned
+     * @throws HadoopException if the session does not exist
+     */
+    public HadoopPackedBuffer next(String sessionId, int maxItems, LongConsumer reserve) throws HadoopException {
+        DatasetSession session = sessions.get(sessionId);
+        List<Prefetch> taken = new ArrayList<>();
+        synchronized (session) {
+            long total = 0;
+            while (taken.size() < Math.max(1, maxItems) && !session.ring.isEmpty() && total < readConfiguration.getMaxBatchBytes()) {
+                Prefetch head = session.ring.peek();
+                boolean loaded = head.content.isDone();
+                if (!loaded) {
+                    if (!taken.isEmpty()) {
+                        break;
+                    }
+                    session.stalls++;
+                } else {
+                    session.hits++;
+                }
+                session.ring.poll();
+                head.taken = true;
+                session.loadedBytes -= Math.max(head.length, 0);
+                taken.add(head);
+                if (!loaded) {
+                    // A leitura é esperada fora do lock, para não bloquear o close
+                    break;
+                }
+                total += Math.max(head.length, 0);
+            }
+            fill(session);
+        }
+
+        List<byte[]> contents = new ArrayList<>(taken.size());
+        List<Byte> status = new ArrayList<>(taken.size());
+        long start = System.nanoTime();
+        for (Prefetch prefetch : taken) {
+            byte[] content = null;
+            byte code = HadoopPackedBuffer.OK;
+            try {
+                content = prefetch.content.get();
+            } catch (ExecutionException e) {
+                code = e.getCause() instanceof FileNotFoundException ? HadoopPackedBuffer.MISSING : HadoopPackedBuffer.ERROR;
+                log.error("Dataset: falha ao ler {}: {}", prefetch.path, e.getCause().getMessage());
+            } catch (CancellationException e) {
+                code = HadoopPackedBuffer.ERROR;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                code = HadoopPackedBuffer.ERROR;
+            }
+            contents.add(content);
+            status.add(code);
+        }
+        long waited = System.nanoTime() - start;
+        synchronized (session) {
+            session.stallNanos += waited;
+            session.delivered += taken.size();
+        }
+        // A primeira leitura pode ainda não ter terminado ao sair do lock: o total só é conhecido depois da espera
+        reserve.accept(contents.stream().mapToLong(content -> content == null ? 0 : content.length).sum());
+        List<String> paths = new ArrayList<>(taken.size());
+        taken.forEach(prefetch -> paths.add(prefetch.path));
+        return pack(paths, contents, status);
+    }
+
+    /**
+     * Prefetch statistics of a session.
+     *
+     * @param sessionId the session id
+     * @return hits (file already loaded when requested), stalls, time waited and progress
+     * @throws HadoopException if the session does not exist
+     */
+    public Map<String, Long> stats(String sessionId) throws HadoopException {
+        DatasetSession session = sessions.get(sessionId);
+        Map<String, Long> stats = new LinkedHashMap<>();
+        synchronized (session) {
+            stats.put("total", (long) session.order.length);
+            stats.put("delivered", session.delivered);
+            stats.put("prefetched", (long) session.ring.size());
+            stats.put("prefetchedBytes", session.loadedBytes);
+            stats.put("hits", session.hits);
+            stats.put("stalls", session.stalls);
+            stats.put("stallMillis", session.stallNanos / 1_000_000);
+        }
+        return stats;
+    }
+
+    public boolean close(String sessionId) {
+        return sessions.release(sessionId);
+    }
+
+    /**
+     * Start reading the next files of a session while the ring has room, both in files and in bytes. Called with
+     * the lock of the session held.
+     */
+    private void fill(DatasetSession session) {
+        while (session.ring.size() < session.capacity && session.submitted < session.order.length
+                && session.loading < datasetConfiguration.getParallelism()
+                && session.loadedBytes < datasetConfiguration.getMaxPrefetchBytes()) {
+            Prefetch prefetch = new Prefetch(session.order[session.submitted++]);
+            prefetch.content = executor.submit(() -> load(session, prefetch));
+            session.loading++;
+            session.ring.add(prefetch);
+        }
+    }
+
+    private byte[] load(DatasetSession session, Prefetch prefetch) throws IOException {
+        byte[] content = null;
+        try {
+            if (hadoopZeroCopyService.isEnabled()) {
+                content = hadoopZeroCopyService.readAllBytes(prefetch.path, HadoopTransferService.NO_PROGRESS);
+            } else {
+                try (InputStream input = hadoopHDFSService.readFile(prefetch.path)) {
+                    content = IOUtils.toByteArray(input);
+                }
+            }
+            return content;
+        } finally {
+            synchronized (session) {
+                session.loading--;
+                if (content != null && !prefetch.taken) {
+                    prefetch.length = content.length;
+                    session.loadedBytes += content.length;
+                }
+                fill(session);
+            }
+        }
+    }
+
+    private static HadoopPackedBuffer pack(List<String> paths, List<byte[]> contents, List<Byte> status) {
+        int count = paths.size();
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        byte[] codes = new byte[count];
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            byte[] content = contents.get(i);
+            offsets[i] = data.size();
+            lengths[i] = content == null ? 0 : content.length;
+            codes[i] = status.get(i);
+            if (content != null) {
+                data.write(content, 0, content.length);
+            }
+        }
+        return new HadoopPackedBuffer(paths.toArray(new String[0]), data.toByteArray(), offsets, lengths, codes);
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleSessions() {
+        sessions.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        sessions.releaseAll();
+        executor.shutdownNow();
+    }
+
+    private static class Prefetch {
+        private final String path;
+        private Future<byte[]> content;
+        //-1 até a leitura terminar; só conta em loadedBytes enquanto está no ring
+        private long length = -1;
+        private boolean taken;
+
+        private Prefetch(String path) {
+            this.path = path;
+        }
+    }
+
+    private static class DatasetSession implements Closeable {
+        private final String[] order;
+        private final int capacity;
+        private final Deque<Prefetch> ring = new ArrayDeque<>();
+        private int submitted;
+        private int loading;
+        private long loadedBytes;
+        private long delivered;
+        private long hits;
+        private long stalls;
+        private long stallNanos;
+
+        private DatasetSession(String[] order, int capacity) {
+            this.order = order;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized void close() {
+            ring.forEach(p -> p.content.cancel(true));
+            ring.clear();
+            submitted = order.length;
+        }
+    }
+}
@@ -2,8 +2,11 @@ package br.uff.lmdc.HadoopPythonServer;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.hadoop.fs.FileStatus;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 @Getter
 @Setter
@@ -17,6 +20,25 @@ public class HadoopDirInfo {
         this.path = path;
     }
 
+    /**
+     * Build the info of a directory from its listing, splitting the entries into files and folders.
+     */
+    public static HadoopDirInfo of(String path, FileStatus[] statuses) {
+        List<String> files = new ArrayList<>();
+        List<String> folders = new ArrayList<>();
+        for (FileStatus file : statuses) {
+            if (file.isFile()) {
+                files.add(file.getPath().getName());
+            } else {
+                folders.add(file.getPath().getName());
+            }
+        }
+        HadoopDirInfo result = new HadoopDirInfo(path);
+        result.setFiles(files.toArray(new String[0]));
+        result.setFolders(folders.toArray(new String[0]));
+        return result;
+    }
+
     @Override
     public String toString() {
         return "HadoopDirInfo{" +
@@ -0,0 +1,118 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import py4j.GatewayServer;
+
+import javax.annotation.PreDestroy;
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The py4j listeners of the {@link HadoopPythonService}, one per configured port. Python clients keep their
+ * connections open between calls, so the sockets are tuned for many small request/response round trips.
+ * py4j serves each connection on its own thread; there is no worker pool to size on this side.
+ */
+@Log4j2
+@Component
+public class HadoopGatewayServers {
+
+    private final HadoopPythonService hadoopPythonService;
+    private final HadoopConfigurationProperties.HadoopGatewayConfigurationProperties gatewayConfiguration;
+    private final List<GatewayServer> servers = new ArrayList<>();
+
+    public HadoopGatewayServers(HadoopPythonService hadoopPythonService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopPythonService = hadoopPythonService;
+        this.gatewayConfiguration = hadoopConfiguration.getGateway();
+    }
+
+    /**
+     * Start a listener on each configured port.
+     *
+     * @throws IOException if the address can't be resolved
+     */
+    public synchronized void start() throws IOException {
+        InetAddress address = InetAddress.getByName(gatewayConfiguration.getAddress());
+        for (int port : gatewayConfiguration.getPorts()) {
+            GatewayServer server = new GatewayServer.GatewayServerBuilder(hadoopPythonService)
+                    .javaAddress(address)
+                    .javaPort(port)
+                    .connectTimeout(gatewayConfiguration.getConnectTimeoutMillis())
+                    .readTimeout(gatewayConfiguration.getReadTimeoutMillis())
+                    .serverSocketFactory(new TunedServerSocketFactory(gatewayConfiguration.isTcpNoDelay()))
+                    .build();
+            server.start();
+            servers.add(server);
+            log.info("GatewayServer ouvindo em {}:{}", address.getHostAddress(), server.getListeningPort());
+        }
+    }
+
+    /**
+     * The ports the started listeners are bound to, which differ from the configured ones when those are 0.
+     */
+    synchronized List<Integer> listeningPorts() {
+        List<Integer> ports = new ArrayList<>(servers.size());
+        servers.forEach(server -> ports.add(server.getListeningPort()));
+        return ports;
+    }
+
+    @PreDestroy
+    synchronized void onDestroy() {
+        servers.forEach(GatewayServer::shutdown);
+        servers.clear();
+    }
+
+    /**
+     * Server sockets whose accepted connections have TCP_NODELAY set, since a Python call is a small
+     * request waiting for its answer and must not be delayed by Nagle's algorithm.
+     */
+    static class TunedServerSocketFactory extends ServerSocketFactory {
+        private final boolean tcpNoDelay;
+
+        TunedServerSocketFactory(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+        }
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new TunedServerSocket();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return createServerSocket(port, 50, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            return createServerSocket(port, backlog, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            ServerSocket socket = new TunedServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(address, port), backlog);
+            return socket;
+        }
+
+        private class TunedServerSocket extends ServerSocket {
+            private TunedServerSocket() throws IOException {
+                super();
+            }
+
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = super.accept();
+                socket.setTcpNoDelay(tcpNoDelay);
+                return socket;
+            }
+        }
+    }
+}
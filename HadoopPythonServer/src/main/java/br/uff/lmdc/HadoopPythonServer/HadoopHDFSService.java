@@ -1,28 +1,42 @@
 package br.uff.lmdc.HadoopPythonServer;
 
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import lombok.val;
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.security.PrivilegedExceptionAction;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -40,14 +54,22 @@ public class HadoopHDFSService {
 
   private UserGroupInformation ugi;
   private HadoopConfigurationProperties hadoopConfiguration;
+  private final HadoopMetadataCache metadataCache;
+  private final HadoopMetrics metrics;
 
-  public HadoopHDFSService(HadoopConfigurationProperties hadoopConfiguration) {
+  public HadoopHDFSService(HadoopConfigurationProperties hadoopConfiguration, HadoopMetrics metrics) {
     this.hadoopConfiguration = hadoopConfiguration;
+    this.metrics = metrics;
+    val cacheConfiguration = hadoopConfiguration.getMetadataCache();
+    this.metadataCache = new HadoopMetadataCache(cacheConfiguration.isEnabled(), cacheConfiguration.getTtlMillis(), cacheConfiguration.getMaxEntries());
   }
 
   private Configuration currentConfiguration;
   @Getter
+  @Setter(AccessLevel.PACKAGE)
   private FileSystem fs;
+  //Cliente só para o getFileChecksum, criado no primeiro uso com dfs.checksum.combine.mode=COMPOSITE_CRC
+  private FileSystem checksumFs;
 
   @PostConstruct
   public void onInit() throws IOException, InterruptedException {
@@ -59,12 +81,29 @@ public class HadoopHDFSService {
       }
       //desabilitar essa configuracao trás o erro de block missing
       currentConfiguration.set("dfs.client.use.datanode.hostname", this.hadoopConfiguration.getHdfs().getForceUseDataNodeHostname().toString());
+      val hedge = this.hadoopConfiguration.getHedge();
+      if (hedge.isEnabled()) {
+        currentConfiguration.setInt("dfs.client.hedged.read.threadpool.size", hedge.getClientThreadPoolSize());
+        currentConfiguration.setLong("dfs.client.hedged.read.threshold.millis", hedge.getThresholdMillis());
+      }
+      val zeroCopy = this.hadoopConfiguration.getZeroCopy();
+      if (zeroCopy.isShortCircuit()) {
+        currentConfiguration.setBoolean("dfs.client.read.shortcircuit", true);
+        currentConfiguration.set("dfs.domain.socket.path", zeroCopy.getDomainSocketPath());
+      }
       fs = configurationToFS(this.currentConfiguration);
       log.info("Hadoop getCanonicalServiceName" +  fs.getCanonicalServiceName());
       log.info("Hadoop getUri" +  fs.getUri());
     }
   }
 
+  @PreDestroy
+  void onDestroy() throws IOException {
+    if (checksumFs != null) {
+      checksumFs.close();
+    }
+  }
+
   /**
    * 10 Min
    * Baseado em https://github.com/apache/nifi/blob/master/nifi-nar-bundles/nifi-extension-utils/nifi-hadoop-utils/src/main/java/org/apache/nifi/hadoop/KerberosTicketRenewer.java
@@ -138,12 +177,73 @@ public class HadoopHDFSService {
     return conf;
   }
 
+  /**
+   * Return the status of a path through the metadata cache.
+   *
+   * @param path the hdfs path
+   * @return the FileStatus
+   * @throws FileNotFoundException if the path doesn't exist
+   * @throws IOException
+   */
+  FileStatus getCachedFileStatus(Path path) throws IOException {
+    return metadataCache.get(cacheKey(path), () -> fs.getFileStatus(path));
+  }
+
+  private boolean exists(Path path) throws IOException {
+    try {
+      getCachedFileStatus(path);
+      return true;
+    } catch (FileNotFoundException e) {
+      return false;
+    }
+  }
+
+  private String cacheKey(Path path) {
+    return fs.makeQualified(path).toString();
+  }
+
+  /**
+   * Drop the cached status of a path and of its ancestors, which may have been created along with it.
+   */
+  private void invalidateCreated(Path path) {
+    for (Path p = path; p != null; p = p.getParent()) {
+      metadataCache.invalidate(cacheKey(p));
+    }
+  }
+
+  /**
+   * Drop the cached status of a file written outside of {@link #writeFile}, e.g. through a stream that stays open.
+   *
+   * @param filePath the hdfs path of the file
+   */
+  void invalidateMetadata(String filePath) {
+    metadataCache.invalidate(cacheKey(new Path(filePath)));
+  }
+
+  /**
+   * Hit/miss counters of the metadata cache.
+   *
+   * @return the counters by name
+   */
+  public Map<String, Long> metadataCacheStats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("hits", metadataCache.getHits());
+    stats.put("misses", metadataCache.getMisses());
+    stats.put("evictions", metadataCache.getEvictions());
+    stats.put("size", (long) metadataCache.size());
+    return stats;
+  }
+
   public boolean isFile(String path) throws IOException {
-    return fs.getFileStatus(new Path(path)).isFile();
+    try (val op = metrics.start("hdfs.isFile")) {
+      return op.ok(getCachedFileStatus(new Path(path)).isFile());
+    }
   }
 
     public boolean isDirectory(String path) throws IOException {
-        return fs.getFileStatus(new Path(path)).isDirectory();
+        try (val op = metrics.start("hdfs.isDirectory")) {
+            return op.ok(getCachedFileStatus(new Path(path)).isDirectory());
+        }
     }
 
     /**
@@ -155,8 +255,89 @@ public class HadoopHDFSService {
    */
   public FileStatus[] showDirectory(String path) throws IOException {
     log.debug("showDirectory() called for {}", path);
-    FileStatus[] fileStatus = fs.listStatus(new Path(path));
-    return fileStatus;
+    try (val op = metrics.start("hdfs.showDirectory")) {
+      long invalidations = metadataCache.invalidationCount();
+      FileStatus[] fileStatus = fs.listStatus(new Path(path));
+      Map<String, FileStatus> listed = new LinkedHashMap<>();
+      for (FileStatus status : fileStatus) {
+        listed.put(cacheKey(status.getPath()), status);
+      }
+      metadataCache.putListed(listed, invalidations, hadoopConfiguration.getMetadataCache().getMaxListingEntries());
+      return op.ok(fileStatus);
+    }
+  }
+
+  /**
+   * Return an iterator over the entries of a hdfs directory, fetched from the NameNode in batches, so the
+   * directory is never held in memory as a whole.
+   *
+   * @param path the hdfs path.
+   * @return The entries of the directory.
+   * @throws IOException
+   */
+  public RemoteIterator<FileStatus> listStatusIterator(String path) throws IOException {
+    log.debug("listStatusIterator() called for {}", path);
+    try (val op = metrics.start("hdfs.listStatusIterator")) {
+      return op.ok(fs.listStatusIterator(new Path(path)));
+    }
+  }
+
+  /**
+   * Return the paths matching a glob pattern, only listing the directories the pattern can match.
+   *
+   * @param pattern the hdfs glob pattern, e.g. /data/202?/part-*
+   * @return The matching entries; empty if there is none.
+   * @throws IOException
+   */
+  public FileStatus[] globStatus(String pattern) throws IOException {
+    log.debug("globStatus() called for {}", pattern);
+    try (val op = metrics.start("hdfs.globStatus")) {
+      FileStatus[] matches = fs.globStatus(new Path(pattern));
+      return op.ok(matches == null ? new FileStatus[0] : matches);
+    }
+  }
+
+  /**
+   * Return an iterator over every file below a hdfs path, fetched from the NameNode in batches.
+   *
+   * @param path the hdfs path.
+   * @return The files, without directories.
+   * @throws IOException
+   */
+  public RemoteIterator<LocatedFileStatus> listFilesRecursive(String path) throws IOException {
+    log.debug("listFilesRecursive() called for {}", path);
+    try (val op = metrics.start("hdfs.listFilesRecursive")) {
+      return op.ok(fs.listFiles(new Path(path), true));
+    }
+  }
+
+  /**
+   * Return the path part of a hdfs path once qualified against the file system, without scheme and authority.
+   *
+   * @param path the hdfs path.
+   * @return the path, e.g. /user/data
+   */
+  public String qualifiedPath(String path) {
+    return fs.makeQualified(new Path(path)).toUri().getPath();
+  }
+
+  /**
+   * Create several directories at once. Directories that are ancestors of others in the collection
+   * are skipped, since creating the deepest ones creates them too.
+   *
+   * @param paths the hdfs paths of the directories
+   * @throws IOException
+   */
+  public void makeDirectories(Collection<String> paths) throws IOException {
+    log.debug("makeDirectories() called for {} paths", paths.size());
+    try (val op = metrics.start("hdfs.makeDirectories")) {
+      for (String leaf : HadoopPaths.leaves(paths)) {
+        Path path = new Path(leaf);
+        fs.mkdirs(path);
+        invalidateCreated(path);
+      }
+      op.ok();
+    }
   }
 
   /**
@@ -167,10 +348,12 @@ public class HadoopHDFSService {
    * @throws IOException
    */
   public boolean existsPath(String pathStr) throws IOException {
-    Path path = new Path(pathStr);
-    boolean result = fs.exists(path);
-    log.debug("existsPath() called for '{}' Returned '{}'", pathStr, result);
-    return result;
+    try (val op = metrics.start("hdfs.existsPath")) {
+      Path path = new Path(pathStr);
+      boolean result = exists(path);
+      log.debug("existsPath() called for '{}' Returned '{}'", pathStr, result);
+      return op.ok(result);
+    }
   }
 
   public boolean mkdir(java.nio.file.Path path) throws IOException, HadoopException {
@@ -188,14 +371,17 @@ public class HadoopHDFSService {
    */
   public boolean makeDirectory(String name, String path) throws IOException, HadoopException {
     log.debug("makeDirectory() called. Path='{}'; Name='{}'", path, name);
-    Path newDirectoryName = new Path(new Path(path), name);
-    if (!fs.exists(newDirectoryName)) {
-      fs.mkdirs(newDirectoryName);
-      log.debug("Diretório {} foi criado em {} ", name, path);
-      return true;
-    } else {
-      log.debug("Diretório não foi criado; ele já existe: {}/{}", path, name);
-      return false;
+    try (val op = metrics.start("hdfs.makeDirectory")) {
+      Path newDirectoryName = new Path(new Path(path), name);
+      if (!exists(newDirectoryName)) {
+        fs.mkdirs(newDirectoryName);
+        invalidateCreated(newDirectoryName);
+        log.debug("Diretório {} foi criado em {} ", name, path);
+        return op.ok(true);
+      } else {
+        log.debug("Diretório não foi criado; ele já existe: {}/{}", path, name);
+        return op.ok(false);
+      }
     }
   }
 
@@ -209,9 +395,13 @@ public class HadoopHDFSService {
    * @throws IOException
    */
   public void writeFile(InputStream sourceData, String outputPath, String fileName, boolean append) throws IOException {
-    try (FSDataOutputStream outputStream = getOutputStreamForWrite(outputPath, fileName, append)) {
-      IOUtils.copy(sourceData, outputStream.getWrappedStream());
+    try (val op = metrics.start("hdfs.writeFile");
+         FSDataOutputStream outputStream = getOutputStreamForWrite(outputPath, fileName, append)) {
+      op.bytesIn(IOUtils.copyLarge(sourceData, outputStream.getWrappedStream()));
       log.debug("Arquivo {} escrito em {} ", fileName, outputPath);
+      op.ok();
+    } finally {
+      metadataCache.invalidate(cacheKey(new Path(outputPath, fileName)));
     }
   }
 
@@ -225,27 +415,103 @@ public class HadoopHDFSService {
    * @throws IOException
    */
   public FSDataOutputStream getOutputStreamForWrite(String outputPath, String fileName, boolean append) throws IOException {
+    return getOutputStreamForWrite(outputPath, fileName, true, append);
+  }
+
+  /**
+   * Return a OutputStream for a path on hdfs to write files to. The existence of the file is decided by the
+   * NameNode in the create or append call itself, never by a (possibly cached) lookup beforehand.
+   *
+   * @param outputPath the destination hdfs path.
+   * @param fileName   the name of the file
+   * @param overwrite  whether to replace the file if it exists; when false the create fails with
+   *                   FileAlreadyExistsException
+   * @param append     whether to append to the file, in case it exists.
+   * @return the OutputStream
+   * @throws IOException
+   */
+  public FSDataOutputStream getOutputStreamForWrite(String outputPath, String fileName, boolean overwrite, boolean append) throws IOException {
     log.debug("writeFile() called.");
     Path hdfswritepath = new Path(outputPath, fileName);
-    if (fs.exists(hdfswritepath)) {
+    try (val op = metrics.start("hdfs.getOutputStreamForWrite")) {
       if (append) {
-        return fs.append(hdfswritepath);
+        try {
+          return op.ok(fs.append(hdfswritepath));
+        } catch (FileNotFoundException e) {
+          log.debug("Arquivo {} não existe; será criado", hdfswritepath);
+        }
       }
+      return op.ok(fs.create(hdfswritepath, overwrite));
+    } finally {
+      invalidateCreated(hdfswritepath);
     }
-    return fs.create(hdfswritepath, true);
   }
 
   /**
-   * Return an inputStream for a file by a path from hdfs.
+   * Return an inputStream for a file by a path from hdfs. The stream supports positioned reads. Only opening
+   * the file is measured (hdfs.open); the reads are measured by the callers that consume the stream.
    *
    * @param filePath the path of the hdfs file
    * @return the inputStream
    * @throws IOException
    */
-  public InputStream readFile(String filePath) throws IOException {
+  public FSDataInputStream readFile(String filePath) throws IOException {
     log.debug("readFile() called.");
     Path hdfsreadpath = new Path(filePath);
-    return fs.open(hdfsreadpath);
+    try (val op = metrics.start("hdfs.open")) {
+      return op.ok(fs.open(hdfsreadpath));
+    }
+  }
+
+  /**
+   * Return the locations of the blocks of a file.
+   *
+   * @param status the FileStatus of the hdfs file
+   * @return the BlockLocations, ordered by offset
+   * @throws IOException
+   */
+  public BlockLocation[] getFileBlockLocations(FileStatus status) throws IOException {
+    log.debug("getFileBlockLocations() called for {}", status.getPath());
+    try (val op = metrics.start("hdfs.getFileBlockLocations")) {
+      return op.ok(fs.getFileBlockLocations(status, 0, status.getLen()));
+    }
+  }
+
+  /**
+   * Return the checksum of a file. It's computed with dfs.checksum.combine.mode=COMPOSITE_CRC, set only on a copy
+   * of the configuration used by this call, so it's the CRC of the whole content, independent of the block size,
+   * and can be compared with a local file.
+   *
+   * @param filePath the path of the hdfs file
+   * @return the checksum, null if the file system does not provide one
+   * @throws IOException
+   */
+  public FileChecksum getFileChecksum(String filePath) throws IOException {
+    log.debug("getFileChecksum() called for {}", filePath);
+    try (val op = metrics.start("hdfs.getFileChecksum")) {
+      return op.ok(checksumFileSystem().getFileChecksum(new Path(filePath)));
+    }
+  }
+
+  /**
+   * The combine mode is read by the DFSClient when it's created, so the checksums need their own client.
+   */
+  private synchronized FileSystem checksumFileSystem() throws IOException {
+    if (currentConfiguration == null) {
+      // File system definido diretamente (testes e benchmarks)
+      return fs;
+    }
+    if (checksumFs == null) {
+      Configuration checksumConfiguration = new Configuration(currentConfiguration);
+      checksumConfiguration.set("dfs.checksum.combine.mode", "COMPOSITE_CRC");
+      try {
+        checksumFs = ugi.doAs((PrivilegedExceptionAction<FileSystem>) () -> FileSystem.newInstance(checksumConfiguration));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrompido ao criar o cliente de checksums");
+      }
+    }
+    return checksumFs;
   }
 
   public boolean deleteFile(java.nio.file.Path filePath, boolean isRecursive) throws IOException, HadoopException {
@@ -264,20 +530,24 @@ public class HadoopHDFSService {
   public boolean deleteFile(String filePath, boolean isRecursive) throws IOException, HadoopException {
     log.debug("deleteFile() called.");
     Path path = new Path(filePath);
-    if (fs.exists(path)) {
-      if (fs.delete(path, isRecursive)) {
-        log.debug("Arquivo deletado.");
-        return true;
+    try (val op = metrics.start("hdfs.deleteFile")) {
+      if (exists(path)) {
+        boolean deleted = fs.delete(path, isRecursive);
+        metadataCache.invalidateTree(cacheKey(path));
+        if (deleted) {
+          log.debug("Arquivo deletado.");
+          return op.ok(true);
+        }
+        log.debug("Houve um problema para remover o arquivo.");
+        return op.ok(false);
+      } else {
+        log.debug("Não foi possível remover {}. O arquivo não existe.", filePath);
+        String aux[] = new String[1];
+        aux[0] = filePath;
+//        String msg = messageSource.getMessage("FileNotEx", aux, LocaleContextHolder.getLocale());
+//        throw new HadoopException(msg, new FileNotFoundException(msg));
+        throw new HadoopException("O arquivo '" + filePath + "' não existe", new FileNotFoundException("O arquivo '" + filePath + "' não existe."));
       }
-      log.debug("Houve um problema para remover o arquivo.");
-      return false;
-    } else {
-      log.debug("Não foi possível remover {}. O arquivo não existe.", filePath);
-      String aux[] = new String[1];
-      aux[0] = filePath;
-//      String msg = messageSource.getMessage("FileNotEx", aux, LocaleContextHolder.getLocale());
-//      throw new HadoopException(msg, new FileNotFoundException(msg));
-      throw new HadoopException("O arquivo '" + filePath + "' não existe", new FileNotFoundException("O arquivo '" + filePath + "' não existe."));
     }
   }
 
@@ -294,20 +564,55 @@ public class HadoopHDFSService {
     log.debug("moveFile() chamado. De {} para {}.", src, dst);
     Path srcPath = new Path(src);
     Path dstPath = new Path(dst);
-    if (fs.exists(srcPath)) {
-      if (fs.rename(srcPath, dstPath)) {
-        log.debug("Arquivo '{}' renomeado para '{}'", src, dst);
-        return true;
+    try (val op = metrics.start("hdfs.moveFile")) {
+      if (exists(srcPath)) {
+        boolean renamed = fs.rename(srcPath, dstPath);
+        metadataCache.invalidateTree(cacheKey(srcPath));
+        metadataCache.invalidateTree(cacheKey(dstPath));
+        invalidateCreated(dstPath);
+        if (renamed) {
+          log.debug("Arquivo '{}' renomeado para '{}'", src, dst);
+          return op.ok(true);
+        }
+        log.debug("Houve um problema para mover o arquivo.");
+        return op.ok(false);
+      } else {
+        log.debug("Não foi possível renomear {}. O arquivo/diretório não existe", src);
+        String aux[] = new String[1];
+          aux[0] = src;
+//        String msg = messageSource.getMessage("FileNotEx", aux, LocaleContextHolder.getLocale());
+          val msg = "Não foi possível renomear " + src + ". O arquivo/diretório não existe";
+          throw new HadoopException("Não foi possível renomear " + src + ". O arquivo/diretório não existe", new FileNotFoundException(msg));
       }
-      log.debug("Houve um problema para mover o arquivo.");
-      return false;
-    } else {
-      log.debug("Não foi possível renomear {}. O arquivo/diretório não existe", src);
-      String aux[] = new String[1];
-        aux[0] = src;
-//      String msg = messageSource.getMessage("FileNotEx", aux, LocaleContextHolder.getLocale());
-        val msg = "Não foi possível renomear " + src + ". O arquivo/diretório não existe";
-        throw new HadoopException("Não foi possível renomear " + src + ". O arquivo/diretório não existe", new FileNotFoundException(msg));
+    }
+  }
+
+  /**
+   * Rename a file over another one, replacing it if it exists. On hdfs the replacement is a single NameNode
+   * operation (rename with OVERWRITE), so readers see either the old or the new file; other file systems delete
+   * the destination first.
+   *
+   * @param src the file to rename
+   * @param dst the destination, replaced if it exists
+   * @throws IOException
+   */
+  public void replaceFile(String src, String dst) throws IOException {
+    log.debug("replaceFile() chamado. De {} para {}.", src, dst);
+    Path srcPath = new Path(src);
+    Path dstPath = new Path(dst);
+    try (val op = metrics.start("hdfs.replaceFile")) {
+      if (fs instanceof DistributedFileSystem) {
+        ((DistributedFileSystem) fs).rename(srcPath, dstPath, Options.Rename.OVERWRITE);
+      } else {
+        fs.delete(dstPath, false);
+        if (!fs.rename(srcPath, dstPath)) {
+          throw new IOException("Não foi possível renomear " + src + " para " + dst);
+        }
+      }
+      op.ok();
+    } finally {
+      metadataCache.invalidate(cacheKey(srcPath));
+      invalidateCreated(dstPath);
     }
   }
 
@@ -320,9 +625,29 @@ public class HadoopHDFSService {
    */
   public FileStatus fileInfo(String filePath) throws IOException {
     log.debug("fileInfo() chamado para {}", filePath);
-    Path path = new Path(filePath);
-    FileStatus fileStatus = fs.getFileStatus(path);
-    return fileStatus;
+    try (val op = metrics.start("hdfs.fileInfo")) {
+      Path path = new Path(filePath);
+      FileStatus fileStatus = getCachedFileStatus(path);
+      return op.ok(fileStatus);
+    }
+  }
+
+  /**
+   * Return the current {@link FileStatus} of a path from the NameNode, bypassing the metadata cache. Used by
+   * reads that size buffers or key caches by the length and modification time, which must not come from a
+   * status cached before another client changed the file.
+   *
+   * @param filePath the hdfs path
+   * @return FileStatus
+   * @throws FileNotFoundException if the path doesn't exist
+   * @throws IOException
+   */
+  public FileStatus fileInfoUncached(String filePath) throws IOException {
+    log.debug("fileInfoUncached() chamado para {}", filePath);
+    try (val op = metrics.start("hdfs.fileInfoUncached")) {
+      Path path = new Path(filePath);
+      return op.ok(metadataCache.refresh(cacheKey(path), () -> fs.getFileStatus(path)));
+    }
   }
 
   /**
@@ -334,8 +659,10 @@ public class HadoopHDFSService {
    * @throws IOException If not possible to write  the Extended Attribute
    */
   public void setExtendedAttributes(String filePath, String name, byte[] data) throws IOException {
-    try {
+    try (val op = metrics.start("hdfs.setExtendedAttributes")) {
       fs.setXAttr(new Path(filePath), name, data);
+      metadataCache.invalidate(cacheKey(new Path(filePath)));
+      op.ok();
     } catch (IOException e) {
       log.error("Não foi possível gravar o atributo estendido: '" + name + "'.", e);
       throw e;
@@ -355,8 +682,8 @@ public class HadoopHDFSService {
    * @throws IOException If not possible to read the Extended Attribute
    */
   public byte[] getExtendedAttribute(String filePath, String name) throws IOException {
-    try {
-      return fs.getXAttr(new Path(filePath), name);
+    try (val op = metrics.start("hdfs.getExtendedAttribute")) {
+      return op.ok(fs.getXAttr(new Path(filePath), name));
     } catch (IOException e) {
       log.debug("Não foi possível resgatar o atributo estendido '" + name + "'. O caminho ou nome não existe", e);
       if (e.getMessage().startsWith("At least one of the attributes provided was not found.")) {
@@ -372,8 +699,10 @@ public class HadoopHDFSService {
   }
 
   public void removeExtendedAttribute(String path, String name) throws IOException {
-    try {
+    try (val op = metrics.start("hdfs.removeExtendedAttribute")) {
       fs.removeXAttr(new Path(path), name);
+      metadataCache.invalidate(cacheKey(new Path(path)));
+      op.ok();
     } catch (IOException e) {
       log.error("Não foi possível remover o atributo estendido:'" + name + "'", e);
       throw e;
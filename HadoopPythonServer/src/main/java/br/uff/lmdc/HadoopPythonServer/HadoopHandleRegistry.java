@@ -0,0 +1,119 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of server side resources (streams, cursors, sessions) referenced from Python by an id.
+ * Python clients may die or forget to close what they opened, so every entry that stays idle for
+ * longer than the configured timeout is closed by {@link #expireIdle()}.
+ *
+ * @param <T> the kind of resource kept in the registry
+ */
+@Log4j2
+public class HadoopHandleRegistry<T extends Closeable> {
+
+    @Getter
+    private final String kind;
+    private final long idleTimeoutMillis;
+    private final int maxHandles;
+    private final Map<String, Entry<T>> handles = new ConcurrentHashMap<>();
+
+    public HadoopHandleRegistry(String kind, long idleTimeoutMillis, int maxHandles) {
+        this.kind = kind;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxHandles = maxHandles;
+    }
+
+    /**
+     * Register a resource and return the id used to reach it later.
+     *
+     * @param resource the resource, closed by the registry when released or expired.
+     * @return the handle id
+     * @throws HadoopException if the registry is full; the resource is closed in that case.
+     */
+    public String register(T resource) throws HadoopException {
+        if (handles.size() >= maxHandles) {
+            IOUtils.closeQuietly(resource);
+            throw new HadoopException("Limite de " + maxHandles + " handles '" + kind + "' abertos atingido");
+        }
+        String id = UUID.randomUUID().toString();
+        handles.put(id, new Entry<>(resource));
+        log.debug("Handle {} '{}' registrado", kind, id);
+        return id;
+    }
+
+    /**
+     * Return the resource of a handle, marking it as used.
+     *
+     * @param id the handle id
+     * @return the resource
+     * @throws HadoopException if the handle does not exist or has expired.
+     */
+    public T get(String id) throws HadoopException {
+        Entry<T> entry = id == null ? null : handles.get(id);
+        if (entry == null) {
+            throw new HadoopException("Handle " + kind + " '" + id + "' não existe ou expirou");
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.resource;
+    }
+
+    /**
+     * Close and remove a handle.
+     *
+     * @param id the handle id
+     * @return true if the handle existed
+     */
+    public boolean release(String id) {
+        Entry<T> entry = id == null ? null : handles.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        IOUtils.closeQuietly(entry.resource);
+        return true;
+    }
+
+    /**
+     * Close every handle idle for longer than the timeout.
+     *
+     * @return the number of handles closed
+     */
+    public int expireIdle() {
+        long limit = System.currentTimeMillis() - idleTimeoutMillis;
+        int expired = 0;
+        for (Map.Entry<String, Entry<T>> e : handles.entrySet()) {
+            if (e.getValue().lastAccess < limit && handles.remove(e.getKey(), e.getValue())) {
+                IOUtils.closeQuietly(e.getValue().resource);
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.info("{} handles '{}' ociosos foram fechados", expired, kind);
+        }
+        return expired;
+    }
+
+    public int size() {
+        return handles.size();
+    }
+
+    public void releaseAll() {
+        handles.keySet().forEach(this::release);
+    }
+
+    private static class Entry<T> {
+        private final T resource;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Entry(T resource) {
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.hdfs.DFSHedgedReadMetrics;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads with a bounded tail latency. Files are read in ranges; when a range takes longer than the configured
+ * threshold a second read of the same range is started on another stream, which fetches the block locations
+ * again and may be served by another replica, and whichever answers first is used. Every read also has a
+ * deadline. The HDFS client hedges its own positioned reads as well (dfs.client.hedged.read.*, set in
+ * {@link HadoopHDFSService#onInit()}); this covers the cases it doesn't, such as a slow NameNode or a
+ * datanode that is slow only for us.
+ */
+@Log4j2
+@Service
+public class HadoopHedgedReadService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopHedgeConfigurationProperties hedgeConfiguration;
+    private final ExecutorService executor;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder ranges = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder recoveredErrors = new LongAdder();
+    private final LongAdder deadlinesExceeded = new LongAdder();
+
+    public HadoopHedgedReadService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hedgeConfiguration = hadoopConfiguration.getHedge();
+        this.executor = Executors.newFixedThreadPool(hedgeConfiguration.getParallelism());
+    }
+
+    public boolean isEnabled() {
+        return hedgeConfiguration.isEnabled();
+    }
+
+    /**
+     * Read a whole file.
+     *
+     * @param hdfsPath       the hdfs path of the file
+     * @param deadlineMillis the time limit of the read; 0 or less uses the configured deadline
+     * @return the contents
+     * @throws IOException if the file can't be read or the deadline passes
+     */
+    public byte[] readAllBytes(String hdfsPath, long deadlineMillis) throws IOException {
+        FileStatus status = hadoopHDFSService.fileInfoUncached(hdfsPath);
+        if (status.getLen() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Arquivo " + hdfsPath + " muito grande para ser lido em memória");
+        }
+        byte[] content = new byte[(int) status.getLen()];
+        try (Request request = new Request(hdfsPath, deadlineMillis)) {
+            for (long offset = 0; offset < content.length; offset += hedgeConfiguration.getRangeSize()) {
+                int length = (int) Math.min(hedgeConfiguration.getRangeSize(), content.length - offset);
+                System.arraycopy(request.read(offset, length), 0, content, (int) offset, length);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Download a file to a local file.
+     *
+     * @param progress receives the number of bytes of each range written
+     * @return the number of bytes downloaded
+     * @see #readAllBytes(String, long)
+     */
+    public long download(String hdfsPath, String localPath, long deadlineMillis, LongConsumer progress) throws IOException {
+        FileStatus status = hadoopHDFSService.fileInfoUncached(hdfsPath);
+        try (Request request = new Request(hdfsPath, deadlineMillis);
+             OutputStream output = new FileOutputStream(localPath)) {
+            for (long offset = 0; offset < status.getLen(); offset += hedgeConfiguration.getRangeSize()) {
+                int length = (int) Math.min(hedgeConfiguration.getRangeSize(), status.getLen() - offset);
+                output.write(request.read(offset, length));
+                progress.accept(length);
+            }
+        }
+        return status.getLen();
+    }
+
+    /**
+     * The counters of the hedged reads, to tune the threshold: a high hedges/ranges ratio with few wins
+     * means the threshold is too low.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("reads", reads.sum());
+        stats.put("ranges", ranges.sum());
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("recoveredErrors", recoveredErrors.sum());
+        stats.put("deadlinesExceeded", deadlinesExceeded.sum());
+        if (hadoopHDFSService.getFs() instanceof DistributedFileSystem) {
+            DFSHedgedReadMetrics client = ((DistributedFileSystem) hadoopHDFSService.getFs()).getHedgedReadMetrics();
+            stats.put("clientHedges", client.getHedgedReadOps());
+            stats.put("clientHedgeWins", client.getHedgedReadWins());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One read: the primary stream, the stream of the hedges (opened on the first hedge) and the deadline.
+     */
+    private class Request implements Closeable {
+        private final String path;
+        private final long deadline;
+        private final FSDataInputStream primary;
+        private volatile FSDataInputStream secondary;
+
+        private Request(String path, long deadlineMillis) throws IOException {
+            long timeout = deadlineMillis > 0 ? deadlineMillis : hedgeConfiguration.getDeadlineMillis();
+            this.path = path;
+            this.deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+            this.primary = hadoopHDFSService.readFile(path);
+            reads.increment();
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            ranges.increment();
+            ExecutorCompletionService<byte[]> attempts = new ExecutorCompletionService<>(executor);
+            CountDownLatch started = new CountDownLatch(1);
+            Future<byte[]> first = attempts.submit(() -> {
+                started.countDown();
+                return pread(primary, offset, length);
+            });
+            Future<byte[]> second = null;
+            try {
+                // O limiar conta a partir do início da leitura: o tempo na fila do pool não é lentidão da réplica
+                if (!started.await(remaining(), TimeUnit.MILLISECONDS)) {
+                    deadlinesExceeded.increment();
+                    throw new IOException("Prazo esgotado aguardando a leitura de " + path + " no offset " + offset);
+                }
+                Future<byte[]> done = attempts.poll(Math.min(hedgeConfiguration.getThresholdMillis(), remaining()), TimeUnit.MILLISECONDS);
+                if (done == null && remaining() > 0) {
+                    hedges.increment();
+                    log.debug("Leitura de {} no offset {} passou de {} ms, repetindo", path, offset, hedgeConfiguration.getThresholdMillis());
+                    second = attempts.submit(() -> pread(secondary(), offset, length));
+                }
+                int pending = second == null ? 1 : 2;
+                boolean primaryFailed = false;
+                while (true) {
+                    if (done == null) {
+                        done = attempts.poll(remaining(), TimeUnit.MILLISECONDS);
+                        if (done == null) {
+                            deadlinesExceeded.increment();
+                            throw new IOException("Prazo esgotado na leitura de " + path + " no offset " + offset);
+                        }
+                    }
+                    pending--;
+                    try {
+                        byte[] result = done.get();
+                        if (done == second) {
+                            (primaryFailed ? recoveredErrors : hedgeWins).increment();
+                        }
+                        return result;
+                    } catch (ExecutionException e) {
+                        primaryFailed |= done == first;
+                        done = null;
+                        if (second == null && remaining() > 0) {
+                            log.debug("Leitura de {} no offset {} falhou, repetindo: {}", path, offset, e.getCause().getMessage());
+                            second = attempts.submit(() -> pread(secondary(), offset, length));
+                            pending++;
+                        } else if (pending == 0) {
+                            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Leitura de " + path + " interrompida");
+            } finally {
+                // A tentativa que perdeu é abandonada
+                first.cancel(true);
+                if (second != null) {
+                    second.cancel(true);
+                }
+            }
+        }
+
+        private long remaining() {
+            return Math.max(0, deadline - System.currentTimeMillis());
+        }
+
+        private FSDataInputStream secondary() throws IOException {
+            if (secondary == null) {
+                synchronized (this) {
+                    if (secondary == null) {
+                        secondary = hadoopHDFSService.readFile(path);
+                    }
+                }
+            }
+            return secondary;
+        }
+
+        private byte[] pread(FSDataInputStream input, long offset, int length) throws IOException {
+            byte[] buffer = new byte[length];
+            input.readFully(offset, buffer, 0, length);
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            IOUtils.closeQuietly(primary);
+            IOUtils.closeQuietly(secondary);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Images decoded and resized here, so only the thumbnail crosses the gateway instead of the original file.
+ * Large JPEGs are subsampled while decoding, which skips most of the decode work when the target is much
+ * smaller than the source. The result is either re-encoded (jpeg or png) or returned as raw RGB pixels,
+ * row by row, 3 bytes per pixel.
+ */
+@Log4j2
+@Service
+public class HadoopImageService {
+
+    public static final String RAW = "raw";
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopImageConfigurationProperties imageConfiguration;
+    private final ExecutorService executor;
+
+    public HadoopImageService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.imageConfiguration = hadoopConfiguration.getImage();
+        this.executor = Executors.newFixedThreadPool(imageConfiguration.getParallelism());
+        // Sem o cache em disco do ImageIO, que cria um arquivo temporário por imagem lida
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * Read, resize and encode an image.
+     *
+     * @param path   the hdfs path of the image
+     * @param width  the target width; 0 or less keeps the aspect ratio from height (or the original size)
+     * @param height the target height; 0 or less keeps the aspect ratio from width (or the original size)
+     * @param format "jpeg", "png" or "raw" for RGB pixels; raw requires both width and height
+     * @return the encoded image or its pixels
+     * @throws IOException if the image can't be read or decoded, or the format is not supported
+     */
+    public byte[] readImage(String path, int width, int height, String format) throws IOException {
+        return readImage(path, width, height, format, HadoopAdmissionControl.NO_RESERVATION);
+    }
+
+    /**
+     * Read, resize and encode an image.
+     *
+     * @param reserve receives the size of the result as soon as it's known: before decoding for raw pixels and once
+     *                the image is encoded for the other formats
+     * @see #readImage(String, int, int, String)
+     */
+    public byte[] readImage(String path, int width, int height, String format, LongConsumer reserve) throws IOException {
+        String normalized = normalize(format);
+        if (RAW.equals(normalized) && (width <= 0 || height <= 0)) {
+            throw new IOException("O formato raw precisa da largura e da altura");
+        }
+        if (RAW.equals(normalized)) {
+            reserve.accept((long) width * height * 3);
+            return toRgb(resize(decode(path, width, height), width, height));
+        }
+        byte[] encoded = encode(resize(decode(path, width, height), width, height), normalized);
+        reserve.accept(encoded.length);
+        return encoded;
+    }
+
+    /**
+     * Read several images in parallel into one buffer. Missing or undecodable images are flagged in the
+     * index of the buffer instead of failing the whole batch.
+     */
+    public HadoopPackedBuffer readImages(String[] paths, int width, int height, String format) throws IOException {
+        return readImages(paths, width, height, format, HadoopAdmissionControl.NO_RESERVATION);
+    }
+
+    /**
+     * Read several images in parallel into one buffer.
+     *
+     * @param reserve receives the size of the buffer as soon as it's known: before decoding for raw pixels, whose
+     *                size follows from width and height, and once the images are encoded for the other formats
+     */
+    public HadoopPackedBuffer readImages(String[] paths, int width, int height, String format, LongConsumer reserve) throws IOException {
+        String normalized = normalize(format);
+        if (RAW.equals(normalized) && (width <= 0 || height <= 0)) {
+            throw new IOException("O formato raw precisa da largura e da altura");
+        }
+        boolean raw = RAW.equals(normalized);
+        if (raw) {
+            reserve.accept((long) paths.length * width * height * 3);
+        }
+        List<Future<byte[]>> images = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            images.add(executor.submit(() -> readImage(path, width, height, normalized)));
+        }
+        int count = paths.length;
+        byte[] status = new byte[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        byte[][] contents = new byte[count][];
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            try {
+                contents[i] = images.get(i).get();
+                if (total + contents[i].length > Integer.MAX_VALUE - 8) {
+                    status[i] = HadoopPackedBuffer.TOO_LARGE;
+                    contents[i] = null;
+                } else {
+                    offsets[i] = (int) total;
+                    lengths[i] = contents[i].length;
+                    total += contents[i].length;
+                }
+            } catch (ExecutionException e) {
+                status[i] = e.getCause() instanceof FileNotFoundException ? HadoopPackedBuffer.MISSING : HadoopPackedBuffer.ERROR;
+                log.error("readImages: falha ao ler {}: {}", paths[i], e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status[i] = HadoopPackedBuffer.ERROR;
+            }
+        }
+        if (!raw) {
+            reserve.accept(total);
+        }
+        byte[] data = new byte[(int) total];
+        for (int i = 0; i < count; i++) {
+            if (contents[i] != null) {
+                System.arraycopy(contents[i], 0, data, offsets[i], lengths[i]);
+            }
+        }
+        return new HadoopPackedBuffer(paths, data, offsets, lengths, status);
+    }
+
+    private static String normalize(String format) throws IOException {
+        String normalized = format == null || format.isEmpty() ? "jpeg" : format.toLowerCase();
+        if (normalized.equals("jpg")) {
+            normalized = "jpeg";
+        }
+        if (!normalized.equals(RAW) && !normalized.equals("jpeg") && !normalized.equals("png")) {
+            throw new IOException("Formato de imagem não suportado: " + format);
+        }
+        return normalized;
+    }
+
+    private BufferedImage decode(String path, int width, int height) throws IOException {
+        try (FSDataInputStream input = hadoopHDFSService.readFile(path);
+             ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("Formato de imagem desconhecido: " + path);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > imageConfiguration.getMaxSourcePixels()) {
+                    throw new IOException("Imagem " + path + " muito grande: " + sourceWidth + "x" + sourceHeight);
+                }
+                int[] target = targetSize(sourceWidth, sourceHeight, width, height);
+                // Mantém pelo menos o dobro do tamanho final, para o redimensionamento ainda suavizar a imagem
+                int step = Math.max(1, Math.min(sourceWidth / (2 * target[0]), sourceHeight / (2 * target[1])));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static int[] targetSize(int sourceWidth, int sourceHeight, int width, int height) {
+        if (width <= 0 && height <= 0) {
+            return new int[]{sourceWidth, sourceHeight};
+        }
+        if (width <= 0) {
+            return new int[]{Math.max(1, (int) Math.round((double) sourceWidth * height / sourceHeight)), height};
+        }
+        if (height <= 0) {
+            return new int[]{width, Math.max(1, (int) Math.round((double) sourceHeight * width / sourceWidth))};
+        }
+        return new int[]{width, height};
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        int[] target = targetSize(source.getWidth(), source.getHeight(), width, height);
+        BufferedImage resized = new BufferedImage(target[0], target[1], BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, target[0], target[1], null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static byte[] toRgb(BufferedImage image) {
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i += 3) {
+            byte blue = pixels[i];
+            pixels[i] = pixels[i + 2];
+            pixels[i + 2] = blue;
+        }
+        return pixels;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(image.getWidth() * image.getHeight());
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && format.equals("jpeg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(imageConfiguration.getJpegQuality());
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+}
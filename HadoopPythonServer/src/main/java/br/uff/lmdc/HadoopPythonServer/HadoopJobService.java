@@ -0,0 +1,333 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import br.uff.lmdc.HadoopPythonServer.HadoopAdmissionControl.Lane;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Asynchronous operations: each submit method queues the operation on a bounded pool and returns a job id
+ * right away, so a single gateway can keep several transfers in flight. The job is then polled, awaited or
+ * cancelled by id; its result stays available until it is released or for the configured timeout after it
+ * finished. A job enters the admission lane of the equivalent synchronous call when it starts running, and reserves
+ * the bytes it holds in memory on that permit, so jobs are limited together with the gateway calls.
+ */
+@Log4j2
+@Service
+public class HadoopJobService {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    @FunctionalInterface
+    interface JobTask {
+        /**
+         * @param progress receives the bytes transferred
+         * @param reserve  reserves bytes of the admission budget for the content the job holds in memory
+         */
+        Object run(LongConsumer progress, LongConsumer reserve) throws Exception;
+    }
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopTransferService hadoopTransferService;
+    private final HadoopBulkTransferService hadoopBulkTransferService;
+    private final HadoopBatchReadService hadoopBatchReadService;
+    private final HadoopZeroCopyService hadoopZeroCopyService;
+    private final HadoopAdmissionControl admission;
+    private final HadoopConfigurationProperties.HadoopJobConfigurationProperties jobConfiguration;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    //Vagas ocupadas por jobs registrados; reservada antes do put para que o limite valha com chamadas concorrentes
+    private final AtomicInteger registered = new AtomicInteger();
+    private final ExecutorService executor;
+
+    public HadoopJobService(HadoopHDFSService hadoopHDFSService, HadoopTransferService hadoopTransferService,
+                            HadoopBulkTransferService hadoopBulkTransferService, HadoopBatchReadService hadoopBatchReadService,
+                            HadoopZeroCopyService hadoopZeroCopyService, HadoopAdmissionControl admission,
+                            HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopTransferService = hadoopTransferService;
+        this.hadoopBulkTransferService = hadoopBulkTransferService;
+        this.hadoopBatchReadService = hadoopBatchReadService;
+        this.hadoopZeroCopyService = hadoopZeroCopyService;
+        this.admission = admission;
+        this.jobConfiguration = hadoopConfiguration.getJob();
+        this.executor = Executors.newFixedThreadPool(jobConfiguration.getParallelism());
+    }
+
+    /**
+     * Upload a local file to a hdfs directory in the background; the result is the number of bytes uploaded.
+     */
+    public String submitUpload(String localPath, String hdfsDir) throws HadoopException {
+        File file = new File(localPath);
+        return submit("upload", file.length(), Lane.BULK, (progress, reserve) -> hadoopTransferService.upload(localPath, hdfsDir, file.getName(), progress));
+    }
+
+    /**
+     * Download a hdfs file in the background; the result is the number of bytes downloaded.
+     */
+    public String submitDownload(String hdfsPath, String localPath) throws IOException, HadoopException {
+        return submit("download", hadoopHDFSService.fileInfo(hdfsPath).getLen(), Lane.BULK, (progress, reserve) -> hadoopTransferService.download(hdfsPath, localPath, progress));
+    }
+
+    /**
+     * Read a whole hdfs file in the background; the result is the content.
+     */
+    public String submitRead(String hdfsPath) throws IOException, HadoopException {
+        long length = hadoopHDFSService.fileInfo(hdfsPath).getLen();
+        return submit("read", length, Lane.DATA, (progress, reserve) -> {
+            reserve.accept(length);
+            if (hadoopZeroCopyService.isEnabled()) {
+                return hadoopZeroCopyService.readAllBytes(hdfsPath, progress);
+            }
+            try (InputStream input = HadoopTransferService.withProgress(hadoopHDFSService.readFile(hdfsPath), progress)) {
+                return IOUtils.toByteArray(input);
+            }
+        });
+    }
+
+    /**
+     * Read several hdfs files in the background; the result is a {@link HadoopPackedBuffer}.
+     */
+    public String submitReadMany(String[] paths) throws HadoopException {
+        return submit("readMany", -1, Lane.DATA, (progress, reserve) -> hadoopBatchReadService.readMany(paths, progress, reserve));
+    }
+
+    /**
+     * Upload a local directory in the background; the result is a {@link HadoopTransferReport}.
+     */
+    public String submitUploadDirectory(String localDir, String hdfsDir) throws HadoopException {
+        return submit("uploadDirectory", -1, Lane.BULK, (progress, reserve) -> hadoopBulkTransferService.uploadDirectory(localDir, hdfsDir, progress));
+    }
+
+    /**
+     * Download a hdfs directory in the background; the result is a {@link HadoopTransferReport}.
+     */
+    public String submitDownloadDirectory(String hdfsDir, String localDir) throws HadoopException {
+        return submit("downloadDirectory", -1, Lane.BULK, (progress, reserve) -> hadoopBulkTransferService.downloadDirectory(hdfsDir, localDir, progress));
+    }
+
+    /**
+     * Queue a job.
+     *
+     * @param kind  the kind of operation, for logs and stats
+     * @param total the expected number of bytes, -1 if unknown
+     * @param lane  the admission lane the job enters when it starts; a job refused by the admission control fails
+     * @param task  the operation
+     * @return the job id
+     * @throws HadoopException if too many jobs are queued, running or waiting for their result to be read
+     */
+    String submit(String kind, long total, Lane lane, JobTask task) throws HadoopException {
+        if (registered.incrementAndGet() > jobConfiguration.getMaxJobs()) {
+            registered.decrementAndGet();
+            throw new HadoopException("Limite de " + jobConfiguration.getMaxJobs() + " jobs atingido");
+        }
+        String id = UUID.randomUUID().toString();
+        Job job = new Job(kind, total);
+        jobs.put(id, job);
+        job.execution = executor.submit(() -> {
+            if (job.done.isDone()) {
+                return;
+            }
+            // Pendente enquanto espera a vaga na raia, como uma chamada síncrona na fila
+            try (HadoopAdmissionControl.Permit permit = admission.enter(lane)) {
+                job.startedAt = System.currentTimeMillis();
+                job.done.complete(task.run(job.transferred::addAndGet, permit::reserve));
+            } catch (Throwable e) {
+                log.error("Job {} '{}' falhou: {}", kind, id, e.getMessage());
+                job.done.completeExceptionally(e);
+            }
+        });
+        log.debug("Job {} '{}' submetido", kind, id);
+        return id;
+    }
+
+    /**
+     * The state of a job: PENDING, RUNNING, DONE, FAILED or CANCELLED.
+     */
+    public String status(String jobId) throws HadoopException {
+        return get(jobId).status();
+    }
+
+    /**
+     * Wait for a job to finish.
+     *
+     * @param jobId         the job id
+     * @param timeoutMillis the maximum time to wait; 0 or less waits until the job finishes
+     * @return whether the job finished
+     * @throws HadoopException if the job does not exist
+     */
+    public boolean await(String jobId, long timeoutMillis) throws HadoopException {
+        Job job = get(jobId);
+        try {
+            if (timeoutMillis > 0) {
+                job.done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                job.done.get();
+            }
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            // Terminou com erro, consultado por result()
+        }
+        return true;
+    }
+
+    /**
+     * The result of a finished job.
+     *
+     * @param jobId the job id
+     * @return the result of the operation
+     * @throws HadoopException if the job does not exist, has not finished, failed or was cancelled
+     */
+    public Object result(String jobId) throws HadoopException {
+        Job job = get(jobId);
+        if (!job.done.isDone()) {
+            throw new HadoopException("Job '" + jobId + "' ainda não terminou");
+        }
+        try {
+            return job.done.get();
+        } catch (CancellationException e) {
+            throw new HadoopException("Job '" + jobId + "' foi cancelado");
+        } catch (ExecutionException e) {
+            throw new HadoopException("Job '" + jobId + "' falhou: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HadoopException(e);
+        }
+    }
+
+    /**
+     * Bytes transferred so far, the expected total (-1 if unknown) and the time elapsed.
+     */
+    public Map<String, Long> progress(String jobId) throws HadoopException {
+        Job job = get(jobId);
+        Map<String, Long> progress = new LinkedHashMap<>();
+        progress.put("transferred", job.transferred.get());
+        progress.put("total", job.total);
+        long start = job.startedAt == 0 ? job.submittedAt : job.startedAt;
+        long end = job.finishedAt == 0 ? System.currentTimeMillis() : job.finishedAt;
+        progress.put("elapsedMillis", job.startedAt == 0 ? 0 : end - start);
+        return progress;
+    }
+
+    /**
+     * Cancel a job, interrupting it if it's running.
+     *
+     * @return whether the job was cancelled; false if it had already finished or does not exist
+     */
+    public boolean cancel(String jobId) {
+        Job job = jobId == null ? null : jobs.get(jobId);
+        if (job == null || !job.done.cancel(false)) {
+            return false;
+        }
+        if (job.execution != null) {
+            job.execution.cancel(true);
+        }
+        log.debug("Job {} '{}' cancelado", job.kind, jobId);
+        return true;
+    }
+
+    /**
+     * Forget a job, cancelling it if it has not finished.
+     */
+    public boolean release(String jobId) {
+        cancel(jobId);
+        if (jobId == null || jobs.remove(jobId) == null) {
+            return false;
+        }
+        registered.decrementAndGet();
+        return true;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (String state : new String[]{PENDING, RUNNING, DONE, FAILED, CANCELLED}) {
+            stats.put(state, 0L);
+        }
+        jobs.values().forEach(job -> stats.merge(job.status(), 1L, Long::sum));
+        return stats;
+    }
+
+    private Job get(String jobId) throws HadoopException {
+        Job job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) {
+            throw new HadoopException("Job '" + jobId + "' não existe ou expirou");
+        }
+        return job;
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireFinishedJobs() {
+        long limit = System.currentTimeMillis() - jobConfiguration.getResultTimeoutMillis();
+        for (Map.Entry<String, Job> entry : jobs.entrySet()) {
+            long finishedAt = entry.getValue().finishedAt;
+            // Só quem remove a entrada desconta do limite: um release concorrente pode ter chegado antes
+            if (finishedAt != 0 && finishedAt < limit && jobs.remove(entry.getKey(), entry.getValue())) {
+                log.info("Resultado do job {} '{}' expirado", entry.getValue().kind, entry.getKey());
+                registered.decrementAndGet();
+            }
+        }
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+
+    private static class Job {
+        private final String kind;
+        private final long total;
+        private final long submittedAt = System.currentTimeMillis();
+        private final AtomicLong transferred = new AtomicLong();
+        private final CompletableFuture<Object> done = new CompletableFuture<>();
+        private volatile Future<?> execution;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        private Job(String kind, long total) {
+            this.kind = kind;
+            this.total = total;
+            done.whenComplete((result, error) -> finishedAt = System.currentTimeMillis());
+        }
+
+        private String status() {
+            if (done.isCancelled()) {
+                return CANCELLED;
+            }
+            if (done.isCompletedExceptionally()) {
+                return FAILED;
+            }
+            if (done.isDone()) {
+                return DONE;
+            }
+            return startedAt == 0 ? PENDING : RUNNING;
+        }
+    }
+}
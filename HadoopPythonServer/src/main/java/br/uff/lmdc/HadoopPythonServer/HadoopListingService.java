@@ -0,0 +1,192 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import com.google.re2j.PatternSyntaxException;
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.GlobPattern;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Paginated listings of directories of any size. The NameNode is read through an iterator kept in a
+ * server side cursor, so only the current page is ever held in memory. The same cursors serve {@link #find},
+ * whose filters are evaluated here so only the matches cross the gateway.
+ */
+@Log4j2
+@Service
+public class HadoopListingService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopListingConfigurationProperties listingConfiguration;
+    private final HadoopHandleRegistry<ListingCursor> cursors;
+
+    public HadoopListingService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.listingConfiguration = hadoopConfiguration.getListing();
+        this.cursors = new HadoopHandleRegistry<>("listing", listingConfiguration.getCursorIdleTimeoutMillis(), listingConfiguration.getMaxOpenCursors());
+    }
+
+    /**
+     * Start a listing.
+     *
+     * @param path      the hdfs directory
+     * @param recursive whether to list every file below the directory (files only) instead of its entries
+     * @return the cursor id used in {@link #next(String, int)}
+     * @throws IOException     if the directory can't be listed
+     * @throws HadoopException if too many cursors are open
+     */
+    public String open(String path, boolean recursive) throws IOException, HadoopException {
+        log.debug("open() called for {} recursive={}", path, recursive);
+        String root = hadoopHDFSService.qualifiedPath(path);
+        RemoteIterator<? extends FileStatus> entries = recursive ? hadoopHDFSService.listFilesRecursive(path) : hadoopHDFSService.listStatusIterator(path);
+        return cursors.register(new ListingCursor(root, recursive, entries, status -> true, -1));
+    }
+
+    /**
+     * Start a search for files below a directory; the matches are read with {@link #next(String, int)}.
+     * A pattern with a '/' is matched against the path relative to root with globStatus, which only lists the
+     * directories the pattern can reach; any other pattern is matched against the file names of the whole tree.
+     *
+     * @param root          the hdfs directory
+     * @param globPattern   the hadoop glob pattern (*, ?, [abc], {a,b}); null or empty matches every file
+     * @param minSize       the minimum size in bytes; negative for no minimum
+     * @param maxSize       the maximum size in bytes; negative for no maximum
+     * @param modifiedAfter only files modified after this time, in epoch milliseconds; 0 or less for any time
+     * @param limit         the maximum number of matches; 0 or less for no limit
+     * @return the cursor id
+     * @throws IOException     if the directory can't be listed or the pattern is invalid
+     * @throws HadoopException if too many cursors are open
+     */
+    public String find(String root, String globPattern, long minSize, long maxSize, long modifiedAfter, long limit) throws IOException, HadoopException {
+        log.debug("find() called for {} pattern={} size=[{}, {}] modifiedAfter={} limit={}", root, globPattern, minSize, maxSize, modifiedAfter, limit);
+        String qualifiedRoot = hadoopHDFSService.qualifiedPath(root);
+        Predicate<FileStatus> filter = status -> status.isFile()
+                && (minSize < 0 || status.getLen() >= minSize)
+                && (maxSize < 0 || status.getLen() <= maxSize)
+                && (modifiedAfter <= 0 || status.getModificationTime() > modifiedAfter);
+        RemoteIterator<? extends FileStatus> entries;
+        if (globPattern == null || globPattern.isEmpty()) {
+            entries = hadoopHDFSService.listFilesRecursive(root);
+        } else if (globPattern.contains("/")) {
+            entries = iterate(hadoopHDFSService.globStatus(HadoopPaths.join(qualifiedRoot, globPattern.replaceFirst("^/+", ""))));
+        } else {
+            GlobPattern names = compile(globPattern);
+            entries = hadoopHDFSService.listFilesRecursive(root);
+            filter = filter.and(status -> names.matches(status.getPath().getName()));
+        }
+        return cursors.register(new ListingCursor(qualifiedRoot, true, entries, filter, limit <= 0 ? -1 : limit));
+    }
+
+    /**
+     * Return the next page of a listing. The cursor is released once an empty page is returned.
+     *
+     * @param cursorId the cursor returned by {@link #open(String, boolean)}
+     * @param maxItems the maximum number of entries; 0 or less uses the configured page size
+     * @return the entries; names are relative to the listed directory. Empty once the listing is over
+     * @throws IOException     if the NameNode can't be read
+     * @throws HadoopException if the cursor does not exist
+     */
+    public HadoopStatBatch next(String cursorId, int maxItems) throws IOException, HadoopException {
+        ListingCursor cursor = cursors.get(cursorId);
+        int pageSize = maxItems <= 0 ? listingConfiguration.getPageSize() : Math.min(maxItems, listingConfiguration.getMaxPageSize());
+        List<FileStatus> page = new ArrayList<>(Math.min(pageSize, 1024));
+        synchronized (cursor) {
+            while (page.size() < pageSize && cursor.remaining != 0 && cursor.entries.hasNext()) {
+                FileStatus status = cursor.entries.next();
+                if (cursor.filter.test(status)) {
+                    page.add(status);
+                    cursor.remaining--;
+                }
+            }
+        }
+        if (page.isEmpty()) {
+            cursors.release(cursorId);
+        }
+        HadoopStatBatch batch = new HadoopStatBatch(page.size());
+        String[] names = new String[page.size()];
+        for (int i = 0; i < page.size(); i++) {
+            FileStatus status = page.get(i);
+            batch.set(i, status);
+            names[i] = cursor.recursive ? relativeName(cursor.root, status) : status.getPath().getName();
+        }
+        batch.setNames(names);
+        return batch;
+    }
+
+    private static GlobPattern compile(String globPattern) throws IOException {
+        try {
+            return new GlobPattern(globPattern);
+        } catch (IllegalArgumentException | PatternSyntaxException e) {
+            // O GlobPattern repassa os erros do re2j, que não são IllegalArgumentException
+            throw new IOException("Padrão inválido: " + globPattern, e);
+        }
+    }
+
+    private static RemoteIterator<FileStatus> iterate(FileStatus[] statuses) {
+        Iterator<FileStatus> iterator = Arrays.asList(statuses).iterator();
+        return new RemoteIterator<FileStatus>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public FileStatus next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    private static String relativeName(String root, FileStatus status) {
+        String path = status.getPath().toUri().getPath();
+        String relative = HadoopPaths.relativize(root, path);
+        return relative == null ? path : relative;
+    }
+
+    public boolean close(String cursorId) {
+        return cursors.release(cursorId);
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleCursors() {
+        cursors.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        cursors.releaseAll();
+    }
+
+    private static class ListingCursor implements Closeable {
+        private final String root;
+        private final boolean recursive;
+        private final RemoteIterator<? extends FileStatus> entries;
+        private final Predicate<FileStatus> filter;
+        //Negativo quando não há limite
+        private long remaining;
+
+        private ListingCursor(String root, boolean recursive, RemoteIterator<? extends FileStatus> entries,
+                              Predicate<FileStatus> filter, long remaining) {
+            this.root = root;
+            this.recursive = recursive;
+            this.entries = entries;
+            this.filter = filter;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public void close() {
+            // Os iteradores do HDFS não seguram recursos entre as páginas pedidas ao NameNode
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FileStatus;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of {@link FileStatus} by qualified hdfs path, including negative (not found) entries.
+ * Entries expire after a TTL and the least recently used ones are evicted when the cache is full.
+ * Changes made through {@link HadoopHDFSService} invalidate the affected entries; changes made by other
+ * clients become visible once the TTL expires, so callers that need the current length or modification
+ * time use {@link #refresh(String, StatusLoader)}.
+ * <p>
+ * Loads run outside of the lock. A load registers a token for its key and only stores its result if the
+ * token is still there, so an invalidation that happens while the NameNode call is in flight isn't
+ * overwritten by the status read before it.
+ */
+public class HadoopMetadataCache {
+
+    @FunctionalInterface
+    public interface StatusLoader {
+        FileStatus load() throws IOException;
+    }
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    //Carga em andamento por chave; removida pela invalidação para descartar o resultado antigo
+    private final Map<String, Object> loading = new HashMap<>();
+    //Incrementado a cada invalidação, para descartar listagens feitas antes dela
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HadoopMetadataCache(boolean enabled, long ttlMillis, int maxEntries) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached status of a path, loading it on a miss.
+     *
+     * @param key    the qualified path
+     * @param loader the call to the NameNode
+     * @return the status
+     * @throws FileNotFoundException if the path does not exist, cached or not
+     * @throws IOException
+     */
+    public FileStatus get(String key, StatusLoader loader) throws IOException {
+        if (!enabled) {
+            return loader.load();
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            if (entry.status == null) {
+                throw new FileNotFoundException("File does not exist: " + key);
+            }
+            return entry.status;
+        }
+        misses.increment();
+        return load(key, loader);
+    }
+
+    /**
+     * Load the status of a path from the NameNode, ignoring the cached one, and store it.
+     *
+     * @param key    the qualified path
+     * @param loader the call to the NameNode
+     * @return the current status
+     * @throws FileNotFoundException if the path does not exist
+     * @throws IOException
+     */
+    public FileStatus refresh(String key, StatusLoader loader) throws IOException {
+        if (!enabled) {
+            return loader.load();
+        }
+        return load(key, loader);
+    }
+
+    private FileStatus load(String key, StatusLoader loader) throws IOException {
+        Object token = new Object();
+        synchronized (entries) {
+            loading.put(key, token);
+        }
+        try {
+            FileStatus status = loader.load();
+            store(key, token, status);
+            return status;
+        } catch (FileNotFoundException e) {
+            store(key, token, null);
+            throw e;
+        } finally {
+            synchronized (entries) {
+                loading.remove(key, token);
+            }
+        }
+    }
+
+    private void store(String key, Object token, FileStatus status) {
+        synchronized (entries) {
+            if (loading.get(key) == token) {
+                entries.put(key, new Entry(status, System.currentTimeMillis() + ttlMillis));
+            }
+        }
+    }
+
+    /**
+     * The current invalidation count, taken before a listing so {@link #putListed} can tell whether the
+     * listing may be older than an invalidation.
+     */
+    public long invalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Store the statuses returned by a directory listing, unless something was invalidated since the listing
+     * started or the listing has more than maxEntries entries, which would evict the rest of the cache.
+     *
+     * @param statuses   the statuses by qualified path
+     * @param since      the {@link #invalidationCount()} taken before the listing
+     * @param maxEntries the largest listing to store
+     */
+    public void putListed(Map<String, FileStatus> statuses, long since, int maxEntries) {
+        if (!enabled || statuses.size() > maxEntries) {
+            return;
+        }
+        synchronized (entries) {
+            if (invalidations.get() != since) {
+                return;
+            }
+            long expiresAt = System.currentTimeMillis() + ttlMillis;
+            statuses.forEach((key, status) -> entries.put(key, new Entry(status, expiresAt)));
+        }
+    }
+
+    public void invalidate(String key) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(key);
+            loading.remove(key);
+        }
+    }
+
+    /**
+     * Remove a path and everything below it.
+     *
+     * @param key the qualified path
+     */
+    public void invalidateTree(String key) {
+        String prefix = key.endsWith("/") ? key : key + "/";
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+            loading.keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.clear();
+            loading.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        private final FileStatus status;
+        private final long expiresAt;
+
+        private Entry(FileStatus status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
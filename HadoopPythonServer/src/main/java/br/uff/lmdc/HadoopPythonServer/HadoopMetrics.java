@@ -0,0 +1,183 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low overhead counters of every gateway and hdfs operation: calls, errors, bytes in/out, operations in
+ * flight and a latency histogram. The values are exposed by the metrics() gateway method, over JMX when
+ * spring.jmx.enabled is set and, when hadoop.metrics.http-port is set, as Prometheus text on a local port.
+ */
+@Log4j2
+@Service
+@ManagedResource(objectName = "br.uff.lmdc:type=HadoopMetrics")
+public class HadoopMetrics {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final HadoopConfigurationProperties.HadoopMetricsConfigurationProperties metricsConfiguration;
+    private HttpServer httpServer;
+
+    public HadoopMetrics(HadoopConfigurationProperties hadoopConfiguration) {
+        this.metricsConfiguration = hadoopConfiguration.getMetrics();
+    }
+
+    @PostConstruct
+    void onInit() throws IOException {
+        if (metricsConfiguration.getHttpPort() > 0) {
+            httpServer = HttpServer.create(new InetSocketAddress(metricsConfiguration.getHttpHost(), metricsConfiguration.getHttpPort()), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = prometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            });
+            httpServer.start();
+            log.info("Métricas disponíveis em http://{}:{}/metrics", metricsConfiguration.getHttpHost(), metricsConfiguration.getHttpPort());
+        }
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+    /**
+     * Start measuring an operation. The operation counts as an error unless {@link Operation#ok()} is called
+     * before it is closed, so exceptions are counted without extra catch blocks.
+     *
+     * @param name the operation name, e.g. gateway.readAllBytes
+     * @return the operation, to be closed when it finishes
+     */
+    public Operation start(String name) {
+        OperationStats stats = operations.computeIfAbsent(name, n -> new OperationStats());
+        stats.inFlight.incrementAndGet();
+        return new Operation(stats);
+    }
+
+    /**
+     * Snapshot of the counters of every operation; latencies in microseconds.
+     *
+     * @return the counters by operation name
+     */
+    public Map<String, Map<String, Number>> snapshot() {
+        Map<String, Map<String, Number>> snapshot = new TreeMap<>();
+        operations.forEach((name, stats) -> snapshot.put(name, stats.snapshot()));
+        return snapshot;
+    }
+
+    @ManagedOperation(description = "Métricas das operações no formato texto do Prometheus")
+    public String prometheus() {
+        StringBuilder text = new StringBuilder();
+        snapshot().forEach((name, values) -> values.forEach((metric, value) ->
+                text.append("hdfs_lmdc_").append(metric).append("{op=\"").append(name).append("\"} ").append(value).append('\n')));
+        return text.toString();
+    }
+
+    @ManagedOperation(description = "Zera as métricas")
+    public void reset() {
+        operations.clear();
+    }
+
+    public static class Operation implements AutoCloseable {
+        private final OperationStats stats;
+        private final long startNanos = System.nanoTime();
+        private boolean ok;
+
+        private Operation(OperationStats stats) {
+            this.stats = stats;
+        }
+
+        public void ok() {
+            this.ok = true;
+        }
+
+        public <T> T ok(T result) {
+            this.ok = true;
+            return result;
+        }
+
+        /**
+         * Mark a boolean operation as finished without errors; a false result (e.g. nothing deleted) is counted
+         * apart in false_results instead of as an error.
+         */
+        public boolean ok(boolean result) {
+            this.ok = true;
+            if (!result) {
+                stats.falseResults.increment();
+            }
+            return result;
+        }
+
+        public void bytesIn(long bytes) {
+            stats.bytesIn.add(bytes);
+        }
+
+        public void bytesOut(long bytes) {
+            stats.bytesOut.add(bytes);
+        }
+
+        @Override
+        public void close() {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            stats.latency.recordValue(Math.min(Math.max(micros, 0), MAX_LATENCY_MICROS));
+            stats.calls.increment();
+            if (!ok) {
+                stats.errors.increment();
+            }
+            stats.inFlight.decrementAndGet();
+        }
+    }
+
+    private static class OperationStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder falseResults = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 2);
+
+        private Map<String, Number> snapshot() {
+            Histogram copy = latency.copy();
+            Map<String, Number> values = new LinkedHashMap<>();
+            values.put("calls", calls.sum());
+            values.put("errors", errors.sum());
+            values.put("false_results", falseResults.sum());
+            values.put("in_flight", inFlight.get());
+            values.put("bytes_in", bytesIn.sum());
+            values.put("bytes_out", bytesOut.sum());
+            values.put("latency_mean_us", copy.getMean());
+            values.put("latency_p50_us", copy.getValueAtPercentile(50));
+            values.put("latency_p90_us", copy.getValueAtPercentile(90));
+            values.put("latency_p99_us", copy.getValueAtPercentile(99));
+            values.put("latency_p999_us", copy.getValueAtPercentile(99.9));
+            values.put("latency_max_us", copy.getMaxValue());
+            return values;
+        }
+    }
+}
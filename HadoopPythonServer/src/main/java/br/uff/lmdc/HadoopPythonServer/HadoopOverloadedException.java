@@ -0,0 +1,13 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+/**
+ * The gateway refused a call because the lane of the operation or the byte budget is saturated. It is unchecked
+ * so it reaches the python client (as a Py4JJavaError) from any gateway method, whatever that method declares;
+ * the client may retry later.
+ */
+public class HadoopOverloadedException extends RuntimeException {
+
+    public HadoopOverloadedException(String s) {
+        super(s);
+    }
+}
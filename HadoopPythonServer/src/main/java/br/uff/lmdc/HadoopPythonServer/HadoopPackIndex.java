@@ -0,0 +1,116 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index of a pack container: the name of its data file and, for every member, its name, offset and length in
+ * the data file and the CRC32 of its content. On disk it's a magic number, the data file name length (int) and name
+ * (UTF-8), followed by one record per member, in the order they were added: name length (int), name (UTF-8),
+ * offset (long), length (int) and crc (int).
+ */
+public class HadoopPackIndex {
+
+    public static final String SUFFIX = ".idx";
+    private static final int MAGIC = 0x48504b32; // HPK2
+
+    private final String dataName;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Member> members = new HashMap<>();
+
+    /**
+     * @param dataName the name of the data file, in the directory of the index
+     */
+    HadoopPackIndex(String dataName) {
+        this.dataName = dataName;
+    }
+
+    public static class Member {
+        final long offset;
+        final int length;
+        final int crc;
+
+        Member(long offset, int length, int crc) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * Add a member, replacing a previous member with the same name.
+     */
+    void add(String name, long offset, int length, int crc) {
+        if (members.put(name, new Member(offset, length, crc)) == null) {
+            names.add(name);
+        }
+    }
+
+    Member get(String name) {
+        return members.get(name);
+    }
+
+    public String getDataName() {
+        return dataName;
+    }
+
+    public String[] getNames() {
+        return names.toArray(new String[0]);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    void write(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(MAGIC);
+        writeString(data, dataName);
+        for (String name : names) {
+            Member member = members.get(name);
+            writeString(data, name);
+            data.writeLong(member.offset);
+            data.writeInt(member.length);
+            data.writeInt(member.crc);
+        }
+        data.flush();
+    }
+
+    static HadoopPackIndex read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Índice de pack inválido");
+        }
+        HadoopPackIndex index = new HadoopPackIndex(readString(data, data.readInt()));
+        while (true) {
+            int nameLength;
+            try {
+                nameLength = data.readInt();
+            } catch (EOFException e) {
+                return index;
+            }
+            index.add(readString(data, nameLength), data.readLong(), data.readInt(), data.readInt());
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
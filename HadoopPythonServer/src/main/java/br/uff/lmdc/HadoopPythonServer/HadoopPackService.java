@@ -0,0 +1,452 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Pack containers: many small payloads appended to one large hdfs file, with a separate compact index
+ * ({@link HadoopPackIndex}, written at the container path with the .idx suffix once the container is complete), so
+ * that a dataset of millions of small files costs the NameNode two files. The index of the most used containers is
+ * kept in memory with their data file open, so reading members costs one getFileInfo of the index and a positioned
+ * read per member. Containers are immutable: the data of each version is written under a unique name recorded in its
+ * index, so publishing a version is the single rename of its index over the previous one, and a lookup whose index
+ * changed length or modification time reopens the container. The data of the replaced version is removed once the
+ * readers of this server release it; readers in other processes reopen the container on their next lookup.
+ */
+@Log4j2
+@Service
+public class HadoopPackService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopPackConfigurationProperties packConfiguration;
+    private final HadoopHandleRegistry<PackWriter> writers;
+    private final LinkedHashMap<String, OpenContainer> containers = new LinkedHashMap<>(16, 0.75f, true);
+
+    public HadoopPackService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.packConfiguration = hadoopConfiguration.getPack();
+        this.writers = new HadoopHandleRegistry<>("pack", packConfiguration.getSessionIdleTimeoutMillis(), packConfiguration.getMaxOpenSessions());
+    }
+
+    /**
+     * Start writing a container; the members are added with {@link #add(String, String, byte[])}.
+     *
+     * @param containerPath the hdfs path of the container; a previous container stays readable until this one is
+     *                      closed and replaces it
+     * @return the session id
+     * @throws IOException
+     * @throws HadoopException if too many sessions are open
+     */
+    public String open(String containerPath) throws IOException, HadoopException {
+        log.debug("open() called for {}", containerPath);
+        return writers.register(new PackWriter(containerPath));
+    }
+
+    /**
+     * Append a member to a container being written.
+     *
+     * @return the number of members added so far
+     */
+    public int add(String sessionId, String name, byte[] content) throws IOException, HadoopException {
+        PackWriter writer = writers.get(sessionId);
+        synchronized (writer) {
+            writer.add(name, content, content.length);
+            return writer.index.size();
+        }
+    }
+
+    /**
+     * Complete a container, writing its index.
+     *
+     * @return the number of members of the container
+     */
+    public int close(String sessionId) throws IOException, HadoopException {
+        PackWriter writer = writers.get(sessionId);
+        try {
+            synchronized (writer) {
+                writer.finish();
+                return writer.index.size();
+            }
+        } finally {
+            writers.release(sessionId);
+        }
+    }
+
+    /**
+     * Pack every file below a local directory into a new container, the members named by their relative paths.
+     *
+     * @return the number of members of the container
+     */
+    public int packDirectory(String localDir, String containerPath) throws IOException {
+        Path root = Paths.get(localDir);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        PackWriter writer = new PackWriter(containerPath);
+        try {
+            for (Path file : files) {
+                byte[] content = Files.readAllBytes(file);
+                writer.add(root.relativize(file).toString().replace(File.separatorChar, '/'), content, content.length);
+            }
+            writer.finish();
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+        log.info("Pack {} criado com {} arquivos de {}", containerPath, files.size(), localDir);
+        return files.size();
+    }
+
+    /**
+     * The names of the members of a container, in the order they were added.
+     */
+    public String[] list(String containerPath) throws IOException {
+        try (OpenContainer container = container(containerPath)) {
+            return container.index.getNames();
+        }
+    }
+
+    /**
+     * Read a member of a container.
+     *
+     * @throws IOException if the member does not exist or its checksum does not match
+     */
+    public byte[] read(String containerPath, String name) throws IOException {
+        return read(containerPath, name, HadoopAdmissionControl.NO_RESERVATION);
+    }
+
+    /**
+     * Read a member of a container.
+     *
+     * @param reserve receives the size of the member, from the index, before it's read
+     * @throws IOException if the member does not exist or its checksum does not match
+     */
+    public byte[] read(String containerPath, String name, LongConsumer reserve) throws IOException {
+        try (OpenContainer container = container(containerPath)) {
+            HadoopPackIndex.Member member = container.index.get(name);
+            if (member == null) {
+                throw new FileNotFoundException(name + " não existe no pack " + containerPath);
+            }
+            reserve.accept(member.length);
+            byte[] content = new byte[member.length];
+            container.read(member, content, 0);
+            return content;
+        }
+    }
+
+    /**
+     * Read several members of a container into one buffer. Missing or corrupt members are flagged in the
+     * index of the buffer instead of failing the whole batch.
+     */
+    public HadoopPackedBuffer readMany(String containerPath, String[] names) throws IOException {
+        return readMany(containerPath, names, HadoopAdmissionControl.NO_RESERVATION);
+    }
+
+    /**
+     * Read several members of a container into one buffer.
+     *
+     * @param reserve receives the total size of the members found in the index, before they are read
+     */
+    public HadoopPackedBuffer readMany(String containerPath, String[] names, LongConsumer reserve) throws IOException {
+        try (OpenContainer container = container(containerPath)) {
+            return readMany(container, containerPath, names, reserve);
+        }
+    }
+
+    private static HadoopPackedBuffer readMany(OpenContainer container, String containerPath, String[] names, LongConsumer reserve) {
+        int count = names.length;
+        byte[] status = new byte[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        HadoopPackIndex.Member[] members = new HadoopPackIndex.Member[count];
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            members[i] = container.index.get(names[i]);
+            if (members[i] == null) {
+                status[i] = HadoopPackedBuffer.MISSING;
+            } else if (total + members[i].length > Integer.MAX_VALUE - 8) {
+                status[i] = HadoopPackedBuffer.TOO_LARGE;
+            } else {
+                offsets[i] = (int) total;
+                lengths[i] = members[i].length;
+                total += members[i].length;
+            }
+        }
+        reserve.accept(total);
+        byte[] data = new byte[(int) total];
+        for (int i = 0; i < count; i++) {
+            if (status[i] != HadoopPackedBuffer.OK) {
+                continue;
+            }
+            try {
+                container.read(members[i], data, offsets[i]);
+            } catch (IOException e) {
+                status[i] = HadoopPackedBuffer.ERROR;
+                lengths[i] = 0;
+                log.error("Pack {}: falha ao ler {}: {}", containerPath, names[i], e.getMessage());
+            }
+        }
+        return new HadoopPackedBuffer(names, data, offsets, lengths, status);
+    }
+
+    private FSDataOutputStream create(String hdfsPath) throws IOException {
+        String name = hdfsPath.substring(hdfsPath.lastIndexOf('/') + 1);
+        return hadoopHDFSService.getOutputStreamForWrite(HadoopPaths.parent(hdfsPath), name, false);
+    }
+
+    private static String dataPath(String containerPath, String dataName) {
+        return HadoopPaths.join(HadoopPaths.parent(containerPath), dataName);
+    }
+
+    /**
+     * The index of the published version of a container, or null if there is none.
+     */
+    private HadoopPackIndex readIndex(String containerPath) throws IOException {
+        try (InputStream input = hadoopHDFSService.readFile(containerPath + HadoopPackIndex.SUFFIX)) {
+            return HadoopPackIndex.read(input);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The open container, with a reference taken for the caller, who must close it when done; the data file is only
+     * closed once the container was evicted or replaced and every reader released it.
+     */
+    private OpenContainer container(String containerPath) throws IOException {
+        String key = hadoopHDFSService.qualifiedPath(containerPath);
+        // Sem cache: o índice pode ter sido substituído por outro processo
+        FileStatus indexStatus = hadoopHDFSService.fileInfoUncached(containerPath + HadoopPackIndex.SUFFIX);
+        synchronized (containers) {
+            OpenContainer container = containers.get(key);
+            if (container != null && container.matches(indexStatus)) {
+                container.retain();
+                return container;
+            }
+        }
+        HadoopPackIndex index;
+        FSDataInputStream data;
+        while (true) {
+            try (InputStream input = hadoopHDFSService.readFile(containerPath + HadoopPackIndex.SUFFIX)) {
+                index = HadoopPackIndex.read(input);
+            }
+            String dataPath = dataPath(containerPath, index.getDataName());
+            try {
+                data = hadoopHDFSService.readFile(dataPath);
+                break;
+            } catch (FileNotFoundException e) {
+                // Uma nova versão foi publicada entre a leitura do índice e a abertura dos dados
+                FileStatus current = hadoopHDFSService.fileInfoUncached(containerPath + HadoopPackIndex.SUFFIX);
+                if (current.getLen() == indexStatus.getLen() && current.getModificationTime() == indexStatus.getModificationTime()) {
+                    throw e;
+                }
+                indexStatus = current;
+            }
+        }
+        OpenContainer loaded = new OpenContainer(index, dataPath(containerPath, index.getDataName()), data, indexStatus);
+        synchronized (containers) {
+            OpenContainer previous = containers.get(key);
+            if (previous != null && previous.matches(indexStatus)) {
+                previous.retain();
+                IOUtils.closeQuietly(loaded);
+                return previous;
+            }
+            if (previous != null) {
+                log.debug("Pack {} foi substituído; reabrindo", containerPath);
+                IOUtils.closeQuietly(previous);
+            }
+            containers.put(key, loaded);
+            loaded.retain();
+            Iterator<OpenContainer> eldest = containers.values().iterator();
+            while (containers.size() > packConfiguration.getMaxCachedContainers() && eldest.hasNext()) {
+                OpenContainer evicted = eldest.next();
+                eldest.remove();
+                IOUtils.closeQuietly(evicted);
+            }
+        }
+        log.debug("Índice do pack {} carregado: {} arquivos", containerPath, index.size());
+        return loaded;
+    }
+
+    /**
+     * Drop the cached version of a container that was just replaced and remove the data file of the replaced
+     * version, at once or, if it's open here, when its last reader releases it.
+     */
+    private void retire(String containerPath, String replacedDataPath) {
+        synchronized (containers) {
+            OpenContainer cached = containers.remove(hadoopHDFSService.qualifiedPath(containerPath));
+            if (cached != null && cached.dataPath.equals(replacedDataPath)) {
+                cached.obsolete = true;
+                IOUtils.closeQuietly(cached);
+                return;
+            }
+            IOUtils.closeQuietly(cached);
+        }
+        if (replacedDataPath != null) {
+            deleteQuietly(replacedDataPath);
+        }
+    }
+
+    private void deleteQuietly(String path) {
+        try {
+            hadoopHDFSService.deleteFile(path, false);
+        } catch (IOException | HadoopException e) {
+            log.debug("Arquivo {} do pack não removido: {}", path, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleSessions() {
+        writers.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        writers.releaseAll();
+        synchronized (containers) {
+            containers.values().forEach(IOUtils::closeQuietly);
+            containers.clear();
+        }
+    }
+
+    private class OpenContainer implements Closeable {
+        private final HadoopPackIndex index;
+        private final String dataPath;
+        private final FSDataInputStream data;
+        private final long indexLength;
+        private final long indexModificationTime;
+        //Uma referência do cache mais uma por leitura em andamento
+        private int references = 1;
+        //Substituído por uma nova versão deste servidor: os dados são removidos com a última referência
+        private volatile boolean obsolete;
+
+        private OpenContainer(HadoopPackIndex index, String dataPath, FSDataInputStream data, FileStatus indexStatus) {
+            this.index = index;
+            this.dataPath = dataPath;
+            this.data = data;
+            this.indexLength = indexStatus.getLen();
+            this.indexModificationTime = indexStatus.getModificationTime();
+        }
+
+        private boolean matches(FileStatus indexStatus) {
+            return indexStatus.getLen() == indexLength && indexStatus.getModificationTime() == indexModificationTime;
+        }
+
+        private synchronized void retain() {
+            references++;
+        }
+
+        private void read(HadoopPackIndex.Member member, byte[] buffer, int offset) throws IOException {
+            // Leituras posicionais não mexem na posição do stream e podem ser feitas em paralelo
+            data.readFully(member.offset, buffer, offset, member.length);
+            CRC32 crc = new CRC32();
+            crc.update(buffer, offset, member.length);
+            if ((int) crc.getValue() != member.crc) {
+                throw new IOException("Checksum inválido no offset " + member.offset);
+            }
+        }
+
+        /**
+         * Release a reference; the data file is closed with the last one, and removed if it was replaced.
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (--references > 0) {
+                    return;
+                }
+            }
+            try {
+                data.close();
+            } finally {
+                if (obsolete) {
+                    deleteQuietly(dataPath);
+                }
+            }
+        }
+    }
+
+    private class PackWriter implements Closeable {
+        private final String containerPath;
+        //Os dados de cada versão têm nome próprio; só o índice, que aponta para eles, é renomeado no finish
+        private final String dataPath;
+        private final String temporaryIndexPath;
+        private final BufferedOutputStream buffered;
+        private final HadoopPackIndex index;
+        private long position;
+        private boolean finished;
+
+        private PackWriter(String containerPath) throws IOException {
+            String version = UUID.randomUUID().toString();
+            this.containerPath = containerPath;
+            this.index = new HadoopPackIndex(containerPath.substring(containerPath.lastIndexOf('/') + 1) + ".data-" + version);
+            this.dataPath = dataPath(containerPath, index.getDataName());
+            this.temporaryIndexPath = containerPath + HadoopPackIndex.SUFFIX + ".tmp-" + version;
+            this.buffered = new BufferedOutputStream(create(dataPath), 1024 * 1024);
+        }
+
+        private void add(String name, byte[] content, int length) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, length);
+            buffered.write(content, 0, length);
+            index.add(name, position, length, (int) crc.getValue());
+            position += length;
+        }
+
+        private void finish() throws IOException {
+            buffered.close();
+            try (FSDataOutputStream indexOutput = create(temporaryIndexPath)) {
+                index.write(new BufferedOutputStream(indexOutput));
+            }
+            HadoopPackIndex replaced = null;
+            try {
+                replaced = readIndex(containerPath);
+            } catch (IOException e) {
+                // Um índice ilegível não impede a nova versão; só os dados dele ficam para trás
+                log.warn("Índice anterior do pack {} ilegível: {}", containerPath, e.getMessage());
+            }
+            // A única renomeação: quem abrir o índice novo já encontra os dados completos
+            hadoopHDFSService.replaceFile(temporaryIndexPath, containerPath + HadoopPackIndex.SUFFIX);
+            finished = true;
+            retire(containerPath, replaced == null ? null : dataPath(containerPath, replaced.getDataName()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                // O container anterior, se houver, continua valendo
+                log.warn("Pack {} não foi concluído", containerPath);
+                try {
+                    buffered.close();
+                } finally {
+                    deleteQuietly(dataPath);
+                    deleteQuietly(temporaryIndexPath);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The contents of several files packed in a single contiguous array, with an index of the offset,
+ * length and status of each file.
+ */
+@Getter
+public class HadoopPackedBuffer {
+
+    public static final byte OK = 0;
+    public static final byte MISSING = 1;
+    public static final byte ERROR = 2;
+    /**
+     * The file didn't fit in the size limit of the batch and must be requested again.
+     */
+    public static final byte TOO_LARGE = 3;
+
+    String[] paths;
+    byte[] data;
+    int[] offsets;
+    int[] lengths;
+    byte[] status;
+
+    public HadoopPackedBuffer(String[] paths, byte[] data, int[] offsets, int[] lengths, byte[] status) {
+        this.paths = paths;
+        this.data = data;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.status = status;
+    }
+
+    /**
+     * The index as a single array, since py4j transfers byte arrays in one piece but other arrays element by element:
+     * the offsets and the lengths as little endian int32 followed by the status bytes.
+     */
+    public byte[] getPackedIndex() {
+        ByteBuffer index = ByteBuffer.allocate(paths.length * 9).order(ByteOrder.LITTLE_ENDIAN);
+        for (int offset : offsets) {
+            index.putInt(offset);
+        }
+        for (int length : lengths) {
+            index.putInt(length);
+        }
+        index.put(status);
+        return index.array();
+    }
+}
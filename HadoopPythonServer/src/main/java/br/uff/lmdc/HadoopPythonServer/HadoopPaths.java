@@ -0,0 +1,49 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Helpers for the slash separated paths exchanged with the python client.
+ */
+public final class HadoopPaths {
+
+    private HadoopPaths() {
+    }
+
+    public static String join(String parent, String name) {
+        return parent.endsWith("/") ? parent + name : parent + "/" + name;
+    }
+
+    public static String parent(String path) {
+        int index = path.lastIndexOf('/');
+        return index <= 0 ? "/" : path.substring(0, index);
+    }
+
+    /**
+     * Return the path of child relative to root, or null if child is not below root.
+     */
+    public static String relativize(String root, String child) {
+        String prefix = root.endsWith("/") ? root : root + "/";
+        return child.startsWith(prefix) ? child.substring(prefix.length()) : null;
+    }
+
+    /**
+     * Return the paths that are not ancestors of any other path of the collection.
+     */
+    public static Set<String> leaves(Collection<String> paths) {
+        Set<String> leaves = new LinkedHashSet<>();
+        for (String path : paths) {
+            leaves.add(path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+        }
+        for (String path : leaves.toArray(new String[0])) {
+            String ancestor = path;
+            while (ancestor.length() > 1) {
+                ancestor = parent(ancestor);
+                leaves.remove(ancestor);
+            }
+        }
+        return leaves;
+    }
+}
@@ -5,18 +5,17 @@ import lombok.val;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import py4j.GatewayServer;
+
+import java.io.IOException;
 
 @Log4j2
 @EnableScheduling
 @SpringBootApplication
 public class HadoopPythonServerApplication {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         val ctx = SpringApplication.run(HadoopPythonServerApplication.class, args);
-        val service = ctx.getBean(HadoopPythonService.class);
-        GatewayServer gatewayServer = new GatewayServer(service);
-        gatewayServer.start();
+        ctx.getBean(HadoopGatewayServers.class).start();
         log.info("GatewayServer started");
     }
 
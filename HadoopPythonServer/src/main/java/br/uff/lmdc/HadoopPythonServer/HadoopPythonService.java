@@ -1,77 +1,578 @@
 package br.uff.lmdc.HadoopPythonServer;
 
+import br.uff.lmdc.HadoopPythonServer.HadoopAdmissionControl.Lane;
 import lombok.extern.log4j.Log4j2;
 import lombok.val;
-import org.apache.commons.io.IOUtils;
-import org.apache.hadoop.fs.FileStatus;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Map;
 
 @Log4j2
 @Service
 public class HadoopPythonService {
 
     private HadoopHDFSService hadoopHDFSService;
+    private HadoopReadHandleService hadoopReadHandleService;
+    private HadoopSharedMemoryService hadoopSharedMemoryService;
+    private HadoopWalkService hadoopWalkService;
+    private HadoopTransferService hadoopTransferService;
+    private HadoopBulkTransferService hadoopBulkTransferService;
+    private HadoopBatchReadService hadoopBatchReadService;
+    private HadoopDatasetService hadoopDatasetService;
+    private HadoopReadCacheService hadoopReadCacheService;
+    private HadoopJobService hadoopJobService;
+    private HadoopStatService hadoopStatService;
+    private HadoopListingService hadoopListingService;
+    private HadoopWriteService hadoopWriteService;
+    private HadoopPackService hadoopPackService;
+    private HadoopImageService hadoopImageService;
+    private HadoopCompressionService hadoopCompressionService;
+    private HadoopHedgedReadService hadoopHedgedReadService;
+    private HadoopSyncService hadoopSyncService;
+    private HadoopAdmissionControl admission;
+    private HadoopTableService hadoopTableService;
+    private HadoopZeroCopyService hadoopZeroCopyService;
+    private HadoopMetrics metrics;
 
-    public HadoopPythonService(HadoopHDFSService hadoopHDFSService) {
+    public HadoopPythonService(HadoopHDFSService hadoopHDFSService, HadoopReadHandleService hadoopReadHandleService,
+                               HadoopSharedMemoryService hadoopSharedMemoryService, HadoopWalkService hadoopWalkService,
+                               HadoopTransferService hadoopTransferService, HadoopBulkTransferService hadoopBulkTransferService,
+                               HadoopBatchReadService hadoopBatchReadService, HadoopDatasetService hadoopDatasetService,
+                               HadoopReadCacheService hadoopReadCacheService, HadoopJobService hadoopJobService,
+                               HadoopStatService hadoopStatService, HadoopListingService hadoopListingService,
+                               HadoopWriteService hadoopWriteService, HadoopPackService hadoopPackService,
+                               HadoopImageService hadoopImageService, HadoopCompressionService hadoopCompressionService,
+                               HadoopHedgedReadService hadoopHedgedReadService, HadoopSyncService hadoopSyncService,
+                               HadoopAdmissionControl admission, HadoopTableService hadoopTableService,
+                               HadoopZeroCopyService hadoopZeroCopyService, HadoopMetrics metrics) {
         this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopReadHandleService = hadoopReadHandleService;
+        this.hadoopSharedMemoryService = hadoopSharedMemoryService;
+        this.hadoopWalkService = hadoopWalkService;
+        this.hadoopTransferService = hadoopTransferService;
+        this.hadoopBulkTransferService = hadoopBulkTransferService;
+        this.hadoopBatchReadService = hadoopBatchReadService;
+        this.hadoopDatasetService = hadoopDatasetService;
+        this.hadoopReadCacheService = hadoopReadCacheService;
+        this.hadoopJobService = hadoopJobService;
+        this.hadoopStatService = hadoopStatService;
+        this.hadoopListingService = hadoopListingService;
+        this.hadoopWriteService = hadoopWriteService;
+        this.hadoopPackService = hadoopPackService;
+        this.hadoopImageService = hadoopImageService;
+        this.hadoopCompressionService = hadoopCompressionService;
+        this.hadoopHedgedReadService = hadoopHedgedReadService;
+        this.hadoopSyncService = hadoopSyncService;
+        this.admission = admission;
+        this.hadoopTableService = hadoopTableService;
+        this.hadoopZeroCopyService = hadoopZeroCopyService;
+        this.metrics = metrics;
     }
 
     public boolean existsPath(String path) throws IOException {
-        log.info("existsPath: {}", path);
-        return this.hadoopHDFSService.existsPath(path);
+        log.debug("existsPath: {}", path);
+        try (val op = metrics.start("gateway.existsPath"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(this.hadoopHDFSService.existsPath(path));
+        }
     }
 
     public boolean upload(String local_path, String hdfs_path) {
-        log.info("upload: {} -> {}", local_path, hdfs_path);
+        log.debug("upload: {} -> {}", local_path, hdfs_path);
         val file = new File(local_path);
 
-        try (val input = new FileInputStream(file)) {
-            hadoopHDFSService.writeFile(input, hdfs_path, file.getName(), false);
-            return true;
+        try (val op = metrics.start("gateway.upload"); val permit = admission.enter(Lane.BULK)) {
+            op.bytesIn(hadoopTransferService.upload(local_path, hdfs_path, file.getName()));
+            return op.ok(true);
+        } catch (HadoopOverloadedException e) {
+            // A rejeição chega ao cliente em vez de virar um retorno vazio
+            throw e;
         } catch (Exception e) {
             log.error(e);
         }
         return false;
     }
 
+    public long writeBytes(String hdfs_path, byte[] data, boolean overwrite) throws IOException, HadoopException {
+        log.debug("writeBytes: {} ({} bytes)", hdfs_path, data.length);
+        try (val op = metrics.start("gateway.writeBytes"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(data.length);
+            op.bytesIn(data.length);
+            return op.ok(hadoopWriteService.writeBytes(hdfs_path, data, overwrite));
+        }
+    }
+
+    public long writeBytesCompressed(String hdfs_path, byte[] data, String codec, boolean overwrite) throws IOException, HadoopException {
+        log.debug("writeBytesCompressed: {} ({} bytes {})", hdfs_path, data.length, codec);
+        try (val op = metrics.start("gateway.writeBytesCompressed"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(data.length);
+            op.bytesIn(data.length);
+            return op.ok(hadoopWriteService.writeBytesCompressed(hdfs_path, data, codec, overwrite));
+        }
+    }
+
+    public String openWrite(String hdfs_path, boolean overwrite, boolean append) throws IOException, HadoopException {
+        log.debug("openWrite: {}", hdfs_path);
+        try (val op = metrics.start("gateway.openWrite"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopWriteService.open(hdfs_path, overwrite, append));
+        }
+    }
+
+    public long writeChunk(String sessionId, byte[] chunk) throws IOException, HadoopException {
+        try (val op = metrics.start("gateway.writeChunk"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(chunk.length);
+            op.bytesIn(chunk.length);
+            return op.ok(hadoopWriteService.write(sessionId, chunk));
+        }
+    }
+
+    public long writeChunkCompressed(String sessionId, byte[] chunk, String codec) throws IOException, HadoopException {
+        try (val op = metrics.start("gateway.writeChunkCompressed"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(chunk.length);
+            op.bytesIn(chunk.length);
+            return op.ok(hadoopWriteService.writeCompressed(sessionId, chunk, codec));
+        }
+    }
+
+    public void hflushWrite(String sessionId) throws IOException, HadoopException {
+        try (val op = metrics.start("gateway.hflushWrite")) {
+            hadoopWriteService.hflush(sessionId);
+            op.ok();
+        }
+    }
+
+    public long closeWrite(String sessionId) throws IOException, HadoopException {
+        log.debug("closeWrite: {}", sessionId);
+        try (val op = metrics.start("gateway.closeWrite")) {
+            return op.ok(hadoopWriteService.close(sessionId));
+        }
+    }
+
+    public String packOpen(String container_path) throws IOException, HadoopException {
+        log.debug("packOpen: {}", container_path);
+        try (val op = metrics.start("gateway.packOpen"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopPackService.open(container_path));
+        }
+    }
+
+    public int packAdd(String sessionId, String name, byte[] content) throws IOException, HadoopException {
+        try (val op = metrics.start("gateway.packAdd"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(content.length);
+            op.bytesIn(content.length);
+            return op.ok(hadoopPackService.add(sessionId, name, content));
+        }
+    }
+
+    public int packClose(String sessionId) throws IOException, HadoopException {
+        log.debug("packClose: {}", sessionId);
+        try (val op = metrics.start("gateway.packClose")) {
+            return op.ok(hadoopPackService.close(sessionId));
+        }
+    }
+
+    public int packDirectory(String local_dir, String container_path) throws IOException {
+        log.info("packDirectory: {} -> {}", local_dir, container_path);
+        try (val op = metrics.start("gateway.packDirectory"); val permit = admission.enter(Lane.BULK)) {
+            return op.ok(hadoopPackService.packDirectory(local_dir, container_path));
+        }
+    }
+
+    public String[] packList(String container_path) throws IOException {
+        try (val op = metrics.start("gateway.packList"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopPackService.list(container_path));
+        }
+    }
+
+    public byte[] packRead(String container_path, String name) throws IOException {
+        try (val op = metrics.start("gateway.packRead"); val permit = admission.enter(Lane.DATA)) {
+            byte[] content = hadoopPackService.read(container_path, name, permit::reserve);
+            op.bytesOut(content.length);
+            return op.ok(content);
+        }
+    }
+
+    public HadoopPackedBuffer packReadMany(String container_path, String[] names) throws IOException {
+        log.debug("packReadMany: {} arquivos de {}", names.length, container_path);
+        try (val op = metrics.start("gateway.packReadMany"); val permit = admission.enter(Lane.DATA)) {
+            val result = hadoopPackService.readMany(container_path, names, permit::reserve);
+            op.bytesOut(result.getData().length);
+            return op.ok(result);
+        }
+    }
+
+    public byte[] readImage(String path, int width, int height, String format) throws IOException {
+        log.debug("readImage: {} {}x{} {}", path, width, height, format);
+        try (val op = metrics.start("gateway.readImage"); val permit = admission.enter(Lane.DATA)) {
+            byte[] image = hadoopImageService.readImage(path, width, height, format, permit::reserve);
+            op.bytesOut(image.length);
+            return op.ok(image);
+        }
+    }
+
+    public HadoopPackedBuffer readImages(String[] paths, int width, int height, String format) throws IOException {
+        log.debug("readImages: {} imagens {}x{} {}", paths.length, width, height, format);
+        try (val op = metrics.start("gateway.readImages"); val permit = admission.enter(Lane.DATA)) {
+            val result = hadoopImageService.readImages(paths, width, height, format, permit::reserve);
+            op.bytesOut(result.getData().length);
+            return op.ok(result);
+        }
+    }
+
+    public String readTable(String path, String[] columns, String filter, int batchSize) throws IOException, HadoopException {
+        log.debug("readTable: {} filter={} batchSize={}", path, filter, batchSize);
+        try (val op = metrics.start("gateway.readTable"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopTableService.open(path, columns, filter, batchSize));
+        }
+    }
+
+    public HadoopTableBatch readTableNext(String cursorId) throws IOException, HadoopException {
+        log.debug("readTableNext: {}", cursorId);
+        try (val op = metrics.start("gateway.readTableNext"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(hadoopTableService.maxBatchBytes());
+            val batch = hadoopTableService.next(cursorId);
+            op.bytesOut(batch.getData().length);
+            return op.ok(batch);
+        }
+    }
+
+    public boolean readTableClose(String cursorId) {
+        log.debug("readTableClose: {}", cursorId);
+        try (val op = metrics.start("gateway.readTableClose")) {
+            return op.ok(hadoopTableService.close(cursorId));
+        }
+    }
+
     public byte[] readAllBytes(String path) {
-        log.info("readAllBytes {}", path);
-        val start = System.currentTimeMillis();
-        try (val input = hadoopHDFSService.readFile(path)) {
-            byte[] bytes = IOUtils.toByteArray(input);
-            val end = System.currentTimeMillis();
-            System.out.println(">>>>>>>>>>>>>>>>>. " + (end - start));
-            return bytes;
+        log.debug("readAllBytes {}", path);
+        try (val op = metrics.start("gateway.readAllBytes"); val permit = admission.enter(Lane.DATA)) {
+            reserveFile(permit, path);
+            byte[] bytes = hadoopReadCacheService.readAllBytes(path);
+            op.bytesOut(bytes.length);
+            return op.ok(bytes);
         } catch (IOException e) {
             log.error(e);
         }
         return null;
     }
 
+    public HadoopPackedBuffer readMany(String[] paths) {
+        log.debug("readMany: {} arquivos", paths.length);
+        try (val op = metrics.start("gateway.readMany"); val permit = admission.enter(Lane.DATA)) {
+            val result = hadoopBatchReadService.readMany(paths, HadoopTransferService.NO_PROGRESS, permit::reserve);
+            op.bytesOut(result.getData().length);
+            return op.ok(result);
+        }
+    }
+
+    public String datasetOpen(String[] paths, boolean shuffle, long seed, int prefetch) throws HadoopException {
+        log.info("datasetOpen: {} arquivos shuffle={} prefetch={}", paths.length, shuffle, prefetch);
+        try (val op = metrics.start("gateway.datasetOpen"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopDatasetService.open(paths, shuffle, seed, prefetch));
+        }
+    }
+
+    public HadoopPackedBuffer datasetNext(String sessionId, int maxItems) throws HadoopException {
+        log.debug("datasetNext: {} {}", sessionId, maxItems);
+        try (val op = metrics.start("gateway.datasetNext"); val permit = admission.enter(Lane.DATA)) {
+            val result = hadoopDatasetService.next(sessionId, maxItems, permit::reserve);
+            op.bytesOut(result.getData().length);
+            return op.ok(result);
+        }
+    }
+
+    public Map<String, Long> datasetStats(String sessionId) throws HadoopException {
+        try (val op = metrics.start("gateway.datasetStats")) {
+            return op.ok(hadoopDatasetService.stats(sessionId));
+        }
+    }
+
+    public boolean datasetClose(String sessionId) {
+        log.info("datasetClose: {}", sessionId);
+        try (val op = metrics.start("gateway.datasetClose")) {
+            return op.ok(hadoopDatasetService.close(sessionId));
+        }
+    }
+
+    public String[] compressionCodecs() {
+        try (val op = metrics.start("gateway.compressionCodecs")) {
+            return op.ok(hadoopCompressionService.codecs());
+        }
+    }
+
+    public byte[] readAllBytesHedged(String path, long deadlineMillis) throws IOException {
+        log.debug("readAllBytesHedged {} deadline={}", path, deadlineMillis);
+        try (val op = metrics.start("gateway.readAllBytesHedged"); val permit = admission.enter(Lane.DATA)) {
+            reserveFile(permit, path);
+            byte[] bytes = hadoopHedgedReadService.readAllBytes(path, deadlineMillis);
+            op.bytesOut(bytes.length);
+            return op.ok(bytes);
+        }
+    }
+
+    public HadoopCompressedPayload readAllBytesCompressed(String path, String codec) throws IOException {
+        log.debug("readAllBytesCompressed {} {}", path, codec);
+        try (val op = metrics.start("gateway.readAllBytesCompressed");
+             val permit = admission.enter(Lane.DATA);
+             val input = hadoopHDFSService.readFile(path)) {
+            reserveFile(permit, path);
+            val payload = hadoopCompressionService.compress(input, path.substring(path.lastIndexOf('/') + 1), codec);
+            op.bytesOut(payload.getData().length);
+            return op.ok(payload);
+        }
+    }
+
+    public String openRead(String path) throws IOException, HadoopException {
+        log.debug("openRead: {}", path);
+        try (val op = metrics.start("gateway.openRead"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopReadHandleService.open(path));
+        }
+    }
+
+    public byte[] readChunk(String handleId, int maxBytes) throws IOException, HadoopException {
+        log.debug("readChunk: {} {}", handleId, maxBytes);
+        try (val op = metrics.start("gateway.readChunk"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(hadoopReadHandleService.chunkSize(maxBytes));
+            byte[] chunk = hadoopReadHandleService.readChunk(handleId, maxBytes);
+            op.bytesOut(chunk.length);
+            return op.ok(chunk);
+        }
+    }
+
+    public HadoopCompressedPayload readChunkCompressed(String handleId, int maxBytes, String codec) throws IOException, HadoopException {
+        log.debug("readChunkCompressed: {} {} {}", handleId, maxBytes, codec);
+        try (val op = metrics.start("gateway.readChunkCompressed"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(hadoopReadHandleService.chunkSize(maxBytes));
+            val payload = hadoopCompressionService.compress(hadoopReadHandleService.readChunk(handleId, maxBytes), null, codec);
+            op.bytesOut(payload.getData().length);
+            return op.ok(payload);
+        }
+    }
+
+    /**
+     * Open a file to be read as one compressed stream, pulled with {@link #readCompressedNext(String, int)} and
+     * closed with {@link #closeRead(String)}; neither the file nor its compressed form is held whole in memory.
+     */
+    public String openReadCompressed(String path, String codec) throws IOException, HadoopException {
+        log.debug("openReadCompressed: {} {}", path, codec);
+        try (val op = metrics.start("gateway.openReadCompressed"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopReadHandleService.openCompressed(path, codec));
+        }
+    }
+
+    public HadoopCompressedPayload readCompressedNext(String handleId, int maxBytes) throws IOException, HadoopException {
+        log.debug("readCompressedNext: {} {}", handleId, maxBytes);
+        try (val op = metrics.start("gateway.readCompressedNext"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(hadoopReadHandleService.chunkSize(maxBytes));
+            val payload = hadoopReadHandleService.readCompressed(handleId, maxBytes);
+            op.bytesOut(payload.getData().length);
+            return op.ok(payload);
+        }
+    }
+
+    public boolean closeRead(String handleId) {
+        log.debug("closeRead: {}", handleId);
+        try (val op = metrics.start("gateway.closeRead")) {
+            return op.ok(hadoopReadHandleService.close(handleId));
+        }
+    }
+
+    public byte[] readRange(String path, long offset, int length) throws IOException, HadoopException {
+        log.debug("readRange: {} [{}, +{}]", path, offset, length);
+        try (val op = metrics.start("gateway.readRange"); val permit = admission.enter(Lane.DATA)) {
+            permit.reserve(hadoopReadHandleService.chunkSize(length));
+            byte[] range = hadoopReadHandleService.readRange(path, offset, length);
+            op.bytesOut(range.length);
+            return op.ok(range);
+        }
+    }
+
+    public boolean isSharedMemoryEnabled() {
+        return hadoopSharedMemoryService.isEnabled();
+    }
+
+    public HadoopSharedSegment readToSharedMemory(String path) throws IOException, HadoopException {
+        log.debug("readToSharedMemory: {}", path);
+        try (val op = metrics.start("gateway.readToSharedMemory"); val permit = admission.enter(Lane.DATA)) {
+            val segment = hadoopSharedMemoryService.readToSegment(path, permit::reserve);
+            op.bytesOut(segment.getLength());
+            return op.ok(segment);
+        }
+    }
+
+    public boolean releaseSharedMemory(String name) {
+        log.debug("releaseSharedMemory: {}", name);
+        try (val op = metrics.start("gateway.releaseSharedMemory")) {
+            return op.ok(hadoopSharedMemoryService.release(name));
+        }
+    }
+
     public boolean download(String hdfs_file_path, String local_save_path) {
-        log.info("download: {} -> {}", hdfs_file_path, local_save_path);
-        try (FileOutputStream fileOutputStream = new FileOutputStream(local_save_path)) {
-            val input = hadoopHDFSService.readFile(hdfs_file_path);
-            IOUtils.copy(input, fileOutputStream);
-            IOUtils.closeQuietly(input);
-            return true;
+        log.debug("download: {} -> {}", hdfs_file_path, local_save_path);
+        try (val op = metrics.start("gateway.download"); val permit = admission.enter(Lane.BULK)) {
+            hadoopReadCacheService.download(hdfs_file_path, local_save_path);
+            return op.ok(true);
+        } catch (HadoopOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error(e);
         }
         return false;
     }
 
+    public HadoopTransferReport uploadMany(String[] localPaths, String[] hdfsPaths) throws IOException {
+        log.info("uploadMany: {} arquivos", localPaths.length);
+        try (val op = metrics.start("gateway.uploadMany"); val permit = admission.enter(Lane.BULK)) {
+            val report = hadoopBulkTransferService.uploadMany(localPaths, hdfsPaths);
+            op.bytesIn(report.getTotalBytes());
+            return op.ok(report);
+        }
+    }
+
+    public HadoopTransferReport downloadMany(String[] hdfsPaths, String[] localPaths) throws IOException {
+        log.info("downloadMany: {} arquivos", hdfsPaths.length);
+        try (val op = metrics.start("gateway.downloadMany"); val permit = admission.enter(Lane.BULK)) {
+            val report = hadoopBulkTransferService.downloadMany(hdfsPaths, localPaths);
+            op.bytesOut(report.getTotalBytes());
+            return op.ok(report);
+        }
+    }
+
+    public HadoopTransferReport uploadDirectory(String localDir, String hdfsDir) throws IOException {
+        log.info("uploadDirectory: {} -> {}", localDir, hdfsDir);
+        try (val op = metrics.start("gateway.uploadDirectory"); val permit = admission.enter(Lane.BULK)) {
+            val report = hadoopBulkTransferService.uploadDirectory(localDir, hdfsDir);
+            op.bytesIn(report.getTotalBytes());
+            return op.ok(report);
+        }
+    }
+
+    public HadoopTransferReport downloadDirectory(String hdfsDir, String localDir) throws IOException {
+        log.info("downloadDirectory: {} -> {}", hdfsDir, localDir);
+        try (val op = metrics.start("gateway.downloadDirectory"); val permit = admission.enter(Lane.BULK)) {
+            val report = hadoopBulkTransferService.downloadDirectory(hdfsDir, localDir);
+            op.bytesOut(report.getTotalBytes());
+            return op.ok(report);
+        }
+    }
+
+    public HadoopSyncReport syncToHdfs(String localDir, String hdfsDir) throws IOException {
+        log.info("syncToHdfs: {} -> {}", localDir, hdfsDir);
+        try (val op = metrics.start("gateway.syncToHdfs"); val permit = admission.enter(Lane.BULK)) {
+            val report = hadoopSyncService.syncToHdfs(localDir, hdfsDir);
+            op.bytesIn(report.getTransfers().getTotalBytes());
+            return op.ok(report);
+        }
+    }
+
+    public HadoopSyncReport syncFromHdfs(String hdfsDir, String localDir) throws IOException {
+        log.info("syncFromHdfs: {} -> {}", hdfsDir, localDir);
+        try (val op = metrics.start("gateway.syncFromHdfs"); val permit = admission.enter(Lane.BULK)) {
+            val report = hadoopSyncService.syncFromHdfs(hdfsDir, localDir);
+            op.bytesOut(report.getTransfers().getTotalBytes());
+            return op.ok(report);
+        }
+    }
+
+    public String submitUpload(String local_path, String hdfs_path) throws HadoopException {
+        log.debug("submitUpload: {} -> {}", local_path, hdfs_path);
+        try (val op = metrics.start("gateway.submitUpload"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopJobService.submitUpload(local_path, hdfs_path));
+        }
+    }
+
+    public String submitDownload(String hdfs_file_path, String local_save_path) throws IOException, HadoopException {
+        log.debug("submitDownload: {} -> {}", hdfs_file_path, local_save_path);
+        try (val op = metrics.start("gateway.submitDownload"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopJobService.submitDownload(hdfs_file_path, local_save_path));
+        }
+    }
+
+    public String submitRead(String path) throws IOException, HadoopException {
+        log.debug("submitRead: {}", path);
+        try (val op = metrics.start("gateway.submitRead"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopJobService.submitRead(path));
+        }
+    }
+
+    public String submitReadMany(String[] paths) throws HadoopException {
+        log.debug("submitReadMany: {} arquivos", paths.length);
+        try (val op = metrics.start("gateway.submitReadMany"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopJobService.submitReadMany(paths));
+        }
+    }
+
+    public String submitUploadDirectory(String localDir, String hdfsDir) throws HadoopException {
+        log.info("submitUploadDirectory: {} -> {}", localDir, hdfsDir);
+        try (val op = metrics.start("gateway.submitUploadDirectory"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopJobService.submitUploadDirectory(localDir, hdfsDir));
+        }
+    }
+
+    public String submitDownloadDirectory(String hdfsDir, String localDir) throws HadoopException {
+        log.info("submitDownloadDirectory: {} -> {}", hdfsDir, localDir);
+        try (val op = metrics.start("gateway.submitDownloadDirectory"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopJobService.submitDownloadDirectory(hdfsDir, localDir));
+        }
+    }
+
+    public String jobStatus(String jobId) throws HadoopException {
+        try (val op = metrics.start("gateway.jobStatus")) {
+            return op.ok(hadoopJobService.status(jobId));
+        }
+    }
+
+    public boolean jobAwait(String jobId, long timeoutMillis) throws HadoopException {
+        try (val op = metrics.start("gateway.jobAwait")) {
+            return op.ok(hadoopJobService.await(jobId, timeoutMillis));
+        }
+    }
+
+    public Object jobResult(String jobId) throws HadoopException {
+        try (val op = metrics.start("gateway.jobResult"); val permit = admission.enter(Lane.DATA)) {
+            Object result = hadoopJobService.result(jobId);
+            // O conteúdo já está em memória, mas o py4j ainda o copia ao serializar a resposta
+            long size = result instanceof byte[] ? ((byte[]) result).length
+                    : result instanceof HadoopPackedBuffer ? ((HadoopPackedBuffer) result).getData().length : 0;
+            permit.reserve(size);
+            op.bytesOut(size);
+            return op.ok(result);
+        }
+    }
+
+    public Map<String, Long> jobProgress(String jobId) throws HadoopException {
+        try (val op = metrics.start("gateway.jobProgress")) {
+            return op.ok(hadoopJobService.progress(jobId));
+        }
+    }
+
+    public boolean jobCancel(String jobId) {
+        log.debug("jobCancel: {}", jobId);
+        try (val op = metrics.start("gateway.jobCancel")) {
+            return op.ok(hadoopJobService.cancel(jobId));
+        }
+    }
+
+    public boolean jobRelease(String jobId) {
+        try (val op = metrics.start("gateway.jobRelease")) {
+            return op.ok(hadoopJobService.release(jobId));
+        }
+    }
+
+    public Map<String, Long> jobStats() {
+        try (val op = metrics.start("gateway.jobStats")) {
+            return op.ok(hadoopJobService.stats());
+        }
+    }
+
     public boolean mkdir(String path) {
-        log.info("Mkdir: {}", path);
-        try {
-            return hadoopHDFSService.mkdir(Paths.get(path));
+        log.debug("Mkdir: {}", path);
+        try (val op = metrics.start("gateway.mkdir"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopHDFSService.mkdir(Paths.get(path)));
+        } catch (HadoopOverloadedException e) {
+            throw e;
         } catch (Exception | HadoopException e) {
             log.error(e);
         }
@@ -79,21 +580,24 @@ public class HadoopPythonService {
     }
 
     public String[] ls(String path) {
-        log.info("ls: {}", path);
-        try {
-            val resultQuery = hadoopHDFSService.showDirectory(path);
+        log.debug("ls: {}", path);
+        try (val op = metrics.start("gateway.ls"); val permit = admission.enter(Lane.METADATA)) {
+            // Percorre a listagem paginada em vez de montar o FileStatus[] do diretório inteiro
+            val entries = hadoopHDFSService.listStatusIterator(path);
             val uri = hadoopHDFSService.getFs().getUri().toString();
-            val result = new String[resultQuery.length];
-            for (int i = 0; i < resultQuery.length; i++) {
-                var subPath = resultQuery[i].getPath().toString();
+            val result = new ArrayList<String>();
+            while (entries.hasNext()) {
+                var subPath = entries.next().getPath().toString();
                 if (subPath.startsWith(uri)) {
                     subPath = subPath.substring(uri.length());
                 } else {
                     log.warn("Uri não encontrado no path: uri: {} subPath: {}", uri, subPath);
                 }
-                result[i] = subPath;
+                result.add(subPath);
             }
-            return result;
+            return op.ok(result.toArray(new String[0]));
+        } catch (HadoopOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error(e);
         }
@@ -101,36 +605,136 @@ public class HadoopPythonService {
     }
 
     public boolean isFile(String path) throws IOException {
-        log.info("is_file: {}", path);
-        return hadoopHDFSService.isFile(path);
+        log.debug("is_file: {}", path);
+        try (val op = metrics.start("gateway.isFile"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopHDFSService.isFile(path));
+        }
     }
 
     public boolean isDirectory(String path) throws IOException {
-        log.info("isDirectory: {}", path);
-        return hadoopHDFSService.isDirectory(path);
+        log.debug("isDirectory: {}", path);
+        try (val op = metrics.start("gateway.isDirectory"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopHDFSService.isDirectory(path));
+        }
+    }
+
+    public Map<String, Long> metadataCacheStats() {
+        return hadoopHDFSService.metadataCacheStats();
+    }
+
+    public Map<String, Long> hedgeStats() {
+        return hadoopHedgedReadService.stats();
+    }
+
+    public Map<String, Long> zeroCopyStats() {
+        return hadoopZeroCopyService.stats();
+    }
+
+    public Map<String, Long> readCacheStats() {
+        return hadoopReadCacheService.stats();
+    }
+
+    /**
+     * Counters and latency percentiles (microseconds) of every gateway and hdfs operation.
+     */
+    public Map<String, Map<String, Number>> metrics() {
+        return metrics.snapshot();
+    }
+
+    public Map<String, Map<String, Number>> admissionStats() {
+        return admission.stats();
     }
 
     public HadoopDirInfo pathInfo(String path) {
-        log.info("pathInfo: {}", path);
-        try {
-            val resultQuery = hadoopHDFSService.showDirectory(path);
-            val files = new ArrayList<String>();
-            val folders = new ArrayList<String>();
-            val result = new HadoopDirInfo(path);
-            for (FileStatus file : resultQuery) {
-                if (file.isFile()) {
-                    files.add(file.getPath().getName());
-                } else {
-                    folders.add(file.getPath().getName());
-                }
-            }
-            result.setFiles(files.toArray(new String[files.size()]));
-            result.setFolders(folders.toArray(new String[folders.size()]));
-            return result;
+        log.debug("pathInfo: {}", path);
+        try (val op = metrics.start("gateway.pathInfo"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(HadoopDirInfo.of(path, hadoopHDFSService.showDirectory(path)));
+        } catch (HadoopOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error(e);
         }
         return null;
     }
 
+    public HadoopStatBatch statMany(String[] paths) {
+        log.debug("statMany: {} caminhos", paths.length);
+        try (val op = metrics.start("gateway.statMany"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopStatService.statMany(paths));
+        }
+    }
+
+    public HadoopStatBatch lsDetailed(String path) throws IOException {
+        log.debug("lsDetailed: {}", path);
+        try (val op = metrics.start("gateway.lsDetailed"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopStatService.lsDetailed(path));
+        }
+    }
+
+    public String listOpen(String path, boolean recursive) throws IOException, HadoopException {
+        log.debug("listOpen: {} recursive={}", path, recursive);
+        try (val op = metrics.start("gateway.listOpen"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopListingService.open(path, recursive));
+        }
+    }
+
+    public HadoopStatBatch listNext(String cursorId, int maxItems) throws IOException, HadoopException {
+        log.debug("listNext: {} {}", cursorId, maxItems);
+        try (val op = metrics.start("gateway.listNext"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopListingService.next(cursorId, maxItems));
+        }
+    }
+
+    public String find(String root, String globPattern, long minSize, long maxSize, long modifiedAfter, long limit) throws IOException, HadoopException {
+        log.debug("find: {} {}", root, globPattern);
+        try (val op = metrics.start("gateway.find"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopListingService.find(root, globPattern, minSize, maxSize, modifiedAfter, limit));
+        }
+    }
+
+    public boolean listClose(String cursorId) {
+        log.debug("listClose: {}", cursorId);
+        try (val op = metrics.start("gateway.listClose")) {
+            return op.ok(hadoopListingService.close(cursorId));
+        }
+    }
+
+    public String walk(String path, int maxDepth) throws HadoopException {
+        log.debug("walk: {} maxDepth={}", path, maxDepth);
+        try (val op = metrics.start("gateway.walk"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopWalkService.open(path, maxDepth));
+        }
+    }
+
+    public HadoopDirInfo[] walkNext(String cursorId) throws IOException, HadoopException {
+        log.debug("walkNext: {}", cursorId);
+        try (val op = metrics.start("gateway.walkNext"); val permit = admission.enter(Lane.METADATA)) {
+            return op.ok(hadoopWalkService.next(cursorId));
+        }
+    }
+
+    public int walkPrune(String cursorId, String[] paths) throws HadoopException {
+        log.debug("walkPrune: {} {} paths", cursorId, paths.length);
+        try (val op = metrics.start("gateway.walkPrune")) {
+            return op.ok(hadoopWalkService.prune(cursorId, paths));
+        }
+    }
+
+    public boolean walkClose(String cursorId) {
+        log.debug("walkClose: {}", cursorId);
+        try (val op = metrics.start("gateway.walkClose")) {
+            return op.ok(hadoopWalkService.close(cursorId));
+        }
+    }
+
+    /**
+     * Reserve the size of a file read whole into memory, taken from the NameNode rather than the metadata
+     * cache so a file that grew is reserved with its current size.
+     */
+    private void reserveFile(HadoopAdmissionControl.Permit permit, String path) throws IOException {
+        if (admission.isEnabled()) {
+            permit.reserve(hadoopHDFSService.fileInfoUncached(path).getLen());
+        }
+    }
+
 }
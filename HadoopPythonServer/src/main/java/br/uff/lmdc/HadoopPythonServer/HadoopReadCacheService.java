@@ -0,0 +1,300 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Optional read-through cache of hdfs file contents, keyed by path, modification time and length as returned
+ * by the NameNode on each read (not by the metadata cache), so a changed file is never served from the cache.
+ * Small files are kept in memory and large ones in a subdirectory of the configured directory owned by the
+ * cache, each tier with its own LRU byte budget; files larger than a whole budget are read without being
+ * cached. Concurrent misses on the same file share a single hdfs read.
+ */
+@Log4j2
+@Service
+public class HadoopReadCacheService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopTransferService hadoopTransferService;
+    private final HadoopHedgedReadService hadoopHedgedReadService;
+    private final HadoopZeroCopyService hadoopZeroCopyService;
+    private final HadoopConfigurationProperties.HadoopReadCacheConfigurationProperties cacheConfiguration;
+
+    //Nome do subdiretório do cache e dos arquivos dele (sha-1 da chave), os únicos removidos na inicialização
+    static final String DISK_SUBDIRECTORY = "hdfs-read-cache";
+    private static final Pattern ENTRY_FILE = Pattern.compile("[0-9a-f]{40}(\\.part)?");
+
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsedMisses = new LongAdder();
+
+    public HadoopReadCacheService(HadoopHDFSService hadoopHDFSService, HadoopTransferService hadoopTransferService,
+                                  HadoopHedgedReadService hadoopHedgedReadService, HadoopZeroCopyService hadoopZeroCopyService,
+                                  HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopTransferService = hadoopTransferService;
+        this.hadoopHedgedReadService = hadoopHedgedReadService;
+        this.hadoopZeroCopyService = hadoopZeroCopyService;
+        this.cacheConfiguration = hadoopConfiguration.getCache();
+    }
+
+    @PostConstruct
+    void onInit() throws IOException {
+        if (cacheConfiguration.isEnabled()) {
+            Path directory = Files.createDirectories(diskDirectory());
+            // O índice não é persistido, então as entradas de uma execução anterior são descartadas
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory,
+                    entry -> ENTRY_FILE.matcher(entry.getFileName().toString()).matches())) {
+                for (Path entry : entries) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+    }
+
+    Path diskDirectory() {
+        return Paths.get(cacheConfiguration.getDiskDirectory(), DISK_SUBDIRECTORY);
+    }
+
+    /**
+     * Return the contents of a hdfs file, from the cache when possible.
+     *
+     * @param hdfsPath the hdfs path of the file
+     * @return the contents
+     * @throws IOException
+     */
+    public byte[] readAllBytes(String hdfsPath) throws IOException {
+        if (!cacheConfiguration.isEnabled()) {
+            return readDirect(hdfsPath);
+        }
+        Object cached = get(hadoopHDFSService.fileInfoUncached(hdfsPath));
+        if (cached == null) {
+            return readDirect(hdfsPath);
+        }
+        if (cached instanceof byte[]) {
+            return (byte[]) cached;
+        }
+        try {
+            return Files.readAllBytes((Path) cached);
+        } catch (NoSuchFileException e) {
+            // Removido do cache entre a consulta e a leitura
+            return readDirect(hdfsPath);
+        }
+    }
+
+    /**
+     * Download a hdfs file to a local file, from the cache when possible.
+     *
+     * @param hdfsPath  the hdfs path of the file
+     * @param localPath the local destination, overwritten if it exists
+     * @throws IOException
+     */
+    public void download(String hdfsPath, String localPath) throws IOException {
+        if (!cacheConfiguration.isEnabled()) {
+            hadoopTransferService.download(hdfsPath, localPath);
+            return;
+        }
+        Object cached = get(hadoopHDFSService.fileInfoUncached(hdfsPath));
+        if (cached == null) {
+            hadoopTransferService.download(hdfsPath, localPath);
+            return;
+        }
+        if (cached instanceof byte[]) {
+            Files.write(Paths.get(localPath), (byte[]) cached);
+            return;
+        }
+        try {
+            Files.copy((Path) cached, Paths.get(localPath), StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            hadoopTransferService.download(hdfsPath, localPath);
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("memoryHits", memoryHits.sum());
+        stats.put("diskHits", diskHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("collapsedMisses", collapsedMisses.sum());
+        synchronized (memory) {
+            stats.put("memoryEntries", (long) memory.size());
+            stats.put("memoryBytes", memoryBytes);
+        }
+        synchronized (disk) {
+            stats.put("diskEntries", (long) disk.size());
+            stats.put("diskBytes", diskBytes);
+        }
+        return stats;
+    }
+
+    /**
+     * Return the cached contents of a file: a byte[] from the memory tier or a Path from the disk tier; null if
+     * the file is larger than the budget of its tier and must be read directly.
+     */
+    private Object get(FileStatus status) throws IOException {
+        String key = status.getPath().toUri().getPath() + "|" + status.getModificationTime() + "|" + status.getLen();
+        boolean inMemory = status.getLen() <= cacheConfiguration.getMemoryMaxFileSize();
+        if (status.getLen() > (inMemory ? cacheConfiguration.getMemoryMaxBytes() : cacheConfiguration.getDiskMaxBytes())) {
+            return null;
+        }
+        Object cached = inMemory ? memoryGet(key) : diskGet(key);
+        if (cached != null) {
+            (inMemory ? memoryHits : diskHits).increment();
+            return cached;
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> pending = loading.putIfAbsent(key, mine);
+        if (pending != null) {
+            collapsedMisses.increment();
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+        misses.increment();
+        try {
+            Object loaded = inMemory ? memoryLoad(key, status) : diskLoad(key, status);
+            mine.complete(loaded);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private byte[] memoryGet(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private byte[] memoryLoad(String key, FileStatus status) throws IOException {
+        byte[] content = readDirect(status.getPath().toString());
+        if (content.length > cacheConfiguration.getMemoryMaxBytes()) {
+            return content;
+        }
+        synchronized (memory) {
+            if (memory.put(key, content) == null) {
+                memoryBytes += content.length;
+            }
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > cacheConfiguration.getMemoryMaxBytes() && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+        return content;
+    }
+
+    private Path diskGet(String key) {
+        synchronized (disk) {
+            DiskEntry entry = disk.get(key);
+            return entry == null ? null : entry.path;
+        }
+    }
+
+    private Path diskLoad(String key, FileStatus status) throws IOException {
+        Path directory = diskDirectory();
+        Path target = directory.resolve(hash(key));
+        Path temporary = directory.resolve(target.getFileName() + ".part");
+        try {
+            hadoopTransferService.download(status.getPath().toString(), temporary.toString());
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        long size = Files.size(target);
+        List<Path> evicted = new ArrayList<>();
+        synchronized (disk) {
+            DiskEntry previous = disk.put(key, new DiskEntry(target, size));
+            if (previous != null) {
+                diskBytes -= previous.size;
+            }
+            diskBytes += size;
+            Iterator<Map.Entry<String, DiskEntry>> eldest = disk.entrySet().iterator();
+            while (diskBytes > cacheConfiguration.getDiskMaxBytes() && eldest.hasNext()) {
+                Map.Entry<String, DiskEntry> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                diskBytes -= entry.getValue().size;
+                eldest.remove();
+                evicted.add(entry.getValue().path);
+            }
+        }
+        // Os arquivos saem do índice sob o lock e são apagados fora dele
+        for (Path path : evicted) {
+            Files.deleteIfExists(path);
+        }
+        return target;
+    }
+
+    private byte[] readDirect(String hdfsPath) throws IOException {
+        if (hadoopHedgedReadService.isEnabled()) {
+            return hadoopHedgedReadService.readAllBytes(hdfsPath, 0);
+        }
+        if (hadoopZeroCopyService.isEnabled()) {
+            return hadoopZeroCopyService.readAllBytes(hdfsPath, HadoopTransferService.NO_PROGRESS);
+        }
+        try (InputStream input = hadoopHDFSService.readFile(hdfsPath)) {
+            return IOUtils.toByteArray(input);
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class DiskEntry {
+        private final Path path;
+        private final long size;
+
+        private DiskEntry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
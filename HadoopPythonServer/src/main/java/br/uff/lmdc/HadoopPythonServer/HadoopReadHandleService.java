@@ -0,0 +1,183 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Streaming reads of HDFS files. Instead of materializing the whole file in a single array, the client
+ * opens a server side read handle and pulls chunks of bounded size, or reads a range of the file using
+ * positioned reads. A compressed handle hands out the file as one compressed stream, in pieces of bounded size.
+ */
+@Log4j2
+@Service
+public class HadoopReadHandleService {
+
+    private static final byte[] EOF = new byte[0];
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopCompressionService hadoopCompressionService;
+    private final HadoopConfigurationProperties.HadoopReadConfigurationProperties readConfiguration;
+    private final HadoopHandleRegistry<FSDataInputStream> handles;
+    private final HadoopHandleRegistry<HadoopCompressionService.CompressedStream> compressedHandles;
+
+    public HadoopReadHandleService(HadoopHDFSService hadoopHDFSService, HadoopCompressionService hadoopCompressionService,
+                                   HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopCompressionService = hadoopCompressionService;
+        this.readConfiguration = hadoopConfiguration.getRead();
+        this.handles = new HadoopHandleRegistry<>("read", readConfiguration.getHandleIdleTimeoutMillis(), readConfiguration.getMaxOpenHandles());
+        this.compressedHandles = new HadoopHandleRegistry<>("compressedRead", readConfiguration.getHandleIdleTimeoutMillis(), readConfiguration.getMaxOpenHandles());
+    }
+
+    /**
+     * Open a hdfs file for sequential chunked reads.
+     *
+     * @param path the hdfs path of the file
+     * @return the handle id to be used in {@link #readChunk(String, int)} and {@link #close(String)}
+     * @throws IOException
+     * @throws HadoopException if too many handles are open
+     */
+    public String open(String path) throws IOException, HadoopException {
+        log.debug("open() called for {}", path);
+        return handles.register(hadoopHDFSService.readFile(path));
+    }
+
+    /**
+     * Open a hdfs file to be read as a single compressed stream, in pieces.
+     *
+     * @param path  the hdfs path of the file
+     * @param codec the codec requested by the client, see {@link HadoopCompressionService}
+     * @return the handle id to be used in {@link #readCompressed(String, int)} and {@link #close(String)}
+     * @throws IOException if the file can't be opened or the codec is unknown
+     * @throws HadoopException if too many handles are open
+     */
+    public String openCompressed(String path, String codec) throws IOException, HadoopException {
+        log.debug("openCompressed() called for {} codec={}", path, codec);
+        FSDataInputStream input = hadoopHDFSService.readFile(path);
+        HadoopCompressionService.CompressedStream stream;
+        try {
+            stream = hadoopCompressionService.stream(input, path.substring(path.lastIndexOf('/') + 1), codec);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        return compressedHandles.register(stream);
+    }
+
+    /**
+     * Read the next piece of a compressed handle.
+     *
+     * @param handleId the handle returned by {@link #openCompressed(String, String)}
+     * @param maxBytes the maximum size of the piece; 0 or less uses the configured chunk size
+     * @return the piece, with last set on the final one
+     * @throws IOException
+     * @throws HadoopException if the handle does not exist or maxBytes exceeds the configured limit
+     */
+    public HadoopCompressedPayload readCompressed(String handleId, int maxBytes) throws IOException, HadoopException {
+        int size = checkSize(maxBytes);
+        return compressedHandles.get(handleId).next(size);
+    }
+
+    /**
+     * Read the next chunk of an open handle.
+     *
+     * @param handleId the handle returned by {@link #open(String)}
+     * @param maxBytes the maximum size of the chunk; 0 or less uses the configured chunk size
+     * @return the chunk, smaller than maxBytes only at the end of the file and empty once the file is over
+     * @throws IOException
+     * @throws HadoopException if the handle does not exist or maxBytes exceeds the configured limit
+     */
+    public byte[] readChunk(String handleId, int maxBytes) throws IOException, HadoopException {
+        int size = checkSize(maxBytes);
+        FSDataInputStream input = handles.get(handleId);
+        byte[] buffer = new byte[size];
+        int read = 0;
+        synchronized (input) {
+            while (read < size) {
+                int n = input.read(buffer, read, size - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        }
+        if (read == 0) {
+            return EOF;
+        }
+        return read == size ? buffer : Arrays.copyOf(buffer, read);
+    }
+
+    /**
+     * Read a range of a hdfs file using a positioned read, without a handle.
+     *
+     * @param path   the hdfs path of the file
+     * @param offset the position of the first byte
+     * @param length the number of bytes to read
+     * @return the bytes read, shorter than length if the file ends before the range
+     * @throws IOException
+     * @throws HadoopException if length exceeds the configured limit
+     */
+    public byte[] readRange(String path, long offset, int length) throws IOException, HadoopException {
+        int size = checkSize(length);
+        try (FSDataInputStream input = hadoopHDFSService.readFile(path)) {
+            return readPositioned(input, offset, size);
+        }
+    }
+
+    static byte[] readPositioned(FSDataInputStream input, long offset, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = input.read(offset + read, buffer, read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read == length ? buffer : Arrays.copyOf(buffer, read);
+    }
+
+    /**
+     * The largest chunk a readChunk with this maxBytes may return.
+     */
+    public int chunkSize(int maxBytes) {
+        return maxBytes <= 0 ? readConfiguration.getChunkSize() : Math.min(maxBytes, readConfiguration.getMaxChunkSize());
+    }
+
+    public boolean close(String handleId) {
+        log.debug("close() called for {}", handleId);
+        return handles.release(handleId) || compressedHandles.release(handleId);
+    }
+
+    public int openHandles() {
+        return handles.size() + compressedHandles.size();
+    }
+
+    private int checkSize(int requested) throws HadoopException {
+        if (requested <= 0) {
+            return readConfiguration.getChunkSize();
+        }
+        if (requested > readConfiguration.getMaxChunkSize()) {
+            throw new HadoopException("Tamanho " + requested + " excede o limite de " + readConfiguration.getMaxChunkSize() + " bytes por leitura");
+        }
+        return requested;
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleHandles() {
+        handles.expireIdle();
+        compressedHandles.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        handles.releaseAll();
+        compressedHandles.releaseAll();
+    }
+}
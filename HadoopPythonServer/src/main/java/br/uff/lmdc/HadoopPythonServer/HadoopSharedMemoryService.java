@@ -0,0 +1,146 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Transfer of hdfs file contents through memory mapped files under the shared memory directory (/dev/shm).
+ * The contents are written from the hdfs stream into the segment file and only a {@link HadoopSharedSegment} is
+ * returned over py4j, so the bytes are not serialized through the gateway socket; the client maps the file. The
+ * server writes through the file channel instead of a mapping of its own, which java can't unmap and would keep the
+ * pages of a released segment until the garbage collector ran.
+ */
+@Log4j2
+@Service
+public class HadoopSharedMemoryService {
+
+    private static final String SEGMENT_PREFIX = "hdfs-lmdc-";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopSharedMemoryConfigurationProperties sharedMemoryConfiguration;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    public HadoopSharedMemoryService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.sharedMemoryConfiguration = hadoopConfiguration.getSharedMemory();
+    }
+
+    public boolean isEnabled() {
+        return sharedMemoryConfiguration.isEnabled();
+    }
+
+    /**
+     * Copy a hdfs file into a new shared memory segment. The segment must be released with {@link #release(String)}
+     * once the client has mapped it; otherwise it is removed after the configured timeout.
+     *
+     * @param hdfsPath the hdfs path of the file
+     * @param reserve  receives the size of the file, taken from the NameNode, before the segment is written
+     * @return the segment holding the file contents
+     * @throws IOException
+     * @throws HadoopException if shared memory is disabled or the file does not fit in a single mapping
+     */
+    public HadoopSharedSegment readToSegment(String hdfsPath, LongConsumer reserve) throws IOException, HadoopException {
+        if (!isEnabled()) {
+            throw new HadoopException("Transferência por memória compartilhada desativada (hadoop.shared-memory.enabled)");
+        }
+        long expected = hadoopHDFSService.fileInfoUncached(hdfsPath).getLen();
+        if (expected > Integer.MAX_VALUE) {
+            throw new HadoopException("O arquivo '" + hdfsPath + "' é grande demais para um único segmento: " + expected + " bytes");
+        }
+        reserve.accept(expected);
+        String name = SEGMENT_PREFIX + UUID.randomUUID();
+        Path segmentPath = Paths.get(sharedMemoryConfiguration.getDirectory(), name);
+        boolean registered = false;
+        try {
+            long length = 0;
+            try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 InputStream input = hadoopHDFSService.readFile(hdfsPath)) {
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                int n;
+                while (length < expected && (n = input.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), expected - length))) >= 0) {
+                    buffer.clear().limit(n);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    length += n;
+                }
+            }
+            segments.put(name, new Segment(segmentPath));
+            registered = true;
+            log.debug("Segmento {} criado para {} com {} bytes", name, hdfsPath, length);
+            return new HadoopSharedSegment(name, segmentPath.toString(), 0, length);
+        } finally {
+            if (!registered) {
+                // Qualquer falha, não só de IO, deixaria no tmpfs um arquivo que ninguém mais remove
+                Files.deleteIfExists(segmentPath);
+            }
+        }
+    }
+
+    /**
+     * Remove a shared memory segment. Mappings already opened by the client remain valid.
+     *
+     * @param name the segment name
+     * @return true if the segment existed
+     */
+    public boolean release(String name) {
+        Segment segment = name == null ? null : segments.remove(name);
+        if (segment == null) {
+            return false;
+        }
+        segment.delete();
+        return true;
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireSegments() {
+        long limit = System.currentTimeMillis() - sharedMemoryConfiguration.getSegmentTimeoutMillis();
+        segments.entrySet().removeIf(e -> {
+            if (e.getValue().createdAt < limit) {
+                log.warn("Segmento {} não foi liberado pelo cliente e será removido", e.getKey());
+                e.getValue().delete();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        segments.values().forEach(Segment::delete);
+        segments.clear();
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+
+        private void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.error("Não foi possível remover o segmento " + path, e);
+            }
+        }
+    }
+}
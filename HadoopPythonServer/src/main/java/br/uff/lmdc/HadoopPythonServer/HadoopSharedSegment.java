@@ -0,0 +1,33 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+
+/**
+ * A region of a memory mapped file under the shared memory directory holding the contents of a hdfs file.
+ * Only this descriptor crosses the gateway; the client maps the file itself.
+ */
+@Getter
+public class HadoopSharedSegment {
+
+    String name;
+    String path;
+    long offset;
+    long length;
+
+    public HadoopSharedSegment(String name, String path, long offset, long length) {
+        this.name = name;
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public String toString() {
+        return "HadoopSharedSegment{" +
+                "name='" + name + '\'' +
+                ", path='" + path + '\'' +
+                ", offset=" + offset +
+                ", length=" + length +
+                '}';
+    }
+}
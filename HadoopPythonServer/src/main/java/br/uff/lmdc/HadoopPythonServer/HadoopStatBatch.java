@@ -0,0 +1,84 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The metadata of several paths as columns of primitive arrays, one entry per path, with the names packed
+ * in a single UTF-8 buffer separated by '\0'.
+ */
+@Getter
+public class HadoopStatBatch {
+
+    public static final byte FILE = 0;
+    public static final byte DIRECTORY = 1;
+    public static final byte SYMLINK = 2;
+    public static final byte MISSING = 3;
+    public static final byte ERROR = 4;
+
+    byte[] names;
+    long[] lengths;
+    long[] mtimes;
+    byte[] kinds;
+    short[] replication;
+    short[] permissions;
+
+    public HadoopStatBatch(int count) {
+        this.lengths = new long[count];
+        this.mtimes = new long[count];
+        this.kinds = new byte[count];
+        this.replication = new short[count];
+        this.permissions = new short[count];
+    }
+
+    public int getCount() {
+        return kinds.length;
+    }
+
+    void set(int index, FileStatus status) {
+        lengths[index] = status.getLen();
+        mtimes[index] = status.getModificationTime();
+        kinds[index] = status.isSymlink() ? SYMLINK : status.isDirectory() ? DIRECTORY : FILE;
+        replication[index] = status.getReplication();
+        permissions[index] = status.getPermission().toShort();
+    }
+
+    void setNames(String[] values) {
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                packed.write(0);
+            }
+            byte[] name = values[i].getBytes(StandardCharsets.UTF_8);
+            packed.write(name, 0, name.length);
+        }
+        this.names = packed.toByteArray();
+    }
+
+    /**
+     * The columns as a single array, since py4j transfers byte arrays in one piece but other arrays element by element:
+     * lengths and mtimes as little endian int64, replication and permissions as little endian int16, then the kinds.
+     */
+    public byte[] getPackedColumns() {
+        ByteBuffer columns = ByteBuffer.allocate(getCount() * 21).order(ByteOrder.LITTLE_ENDIAN);
+        for (long length : lengths) {
+            columns.putLong(length);
+        }
+        for (long mtime : mtimes) {
+            columns.putLong(mtime);
+        }
+        for (short value : replication) {
+            columns.putShort(value);
+        }
+        for (short permission : permissions) {
+            columns.putShort(permission);
+        }
+        columns.put(kinds);
+        return columns.array();
+    }
+}
@@ -0,0 +1,88 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Metadata of many paths in a single gateway call, returned as a {@link HadoopStatBatch}.
+ */
+@Log4j2
+@Service
+public class HadoopStatService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final ExecutorService executor;
+
+    public HadoopStatService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.executor = Executors.newFixedThreadPool(hadoopConfiguration.getStat().getParallelism());
+    }
+
+    /**
+     * Stat several paths concurrently. Missing or unreadable paths are flagged in the kinds column.
+     *
+     * @param paths the hdfs paths
+     * @return the metadata, in the order of paths; the names are the paths themselves
+     */
+    public HadoopStatBatch statMany(String[] paths) {
+        HadoopStatBatch batch = new HadoopStatBatch(paths.length);
+        List<Future<FileStatus>> infos = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            infos.add(executor.submit(() -> hadoopHDFSService.fileInfo(path)));
+        }
+        for (int i = 0; i < paths.length; i++) {
+            try {
+                batch.set(i, infos.get(i).get());
+            } catch (ExecutionException e) {
+                batch.kinds[i] = e.getCause() instanceof FileNotFoundException ? HadoopStatBatch.MISSING : HadoopStatBatch.ERROR;
+                log.debug("statMany: {} não pode ser consultado: {}", paths[i], e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.kinds[i] = HadoopStatBatch.ERROR;
+            }
+        }
+        batch.setNames(paths);
+        return batch;
+    }
+
+    /**
+     * List a directory with the metadata of every entry. The entries are fetched from the NameNode in batches
+     * with listStatusIterator, like the listing cursors, instead of one listStatus call for the whole directory.
+     *
+     * @param path the hdfs directory
+     * @return the metadata; the names are the names of the entries, without the directory
+     * @throws IOException if the directory can't be listed
+     */
+    public HadoopStatBatch lsDetailed(String path) throws IOException {
+        List<FileStatus> statuses = new ArrayList<>();
+        RemoteIterator<FileStatus> entries = hadoopHDFSService.listStatusIterator(path);
+        while (entries.hasNext()) {
+            statuses.add(entries.next());
+        }
+        HadoopStatBatch batch = new HadoopStatBatch(statuses.size());
+        String[] names = new String[statuses.size()];
+        for (int i = 0; i < statuses.size(); i++) {
+            batch.set(i, statuses.get(i));
+            names[i] = statuses.get(i).getPath().getName();
+        }
+        batch.setNames(names);
+        return batch;
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,33 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+
+/**
+ * Result of a directory sync: the transfers of the files that changed and how the others were found unchanged.
+ */
+@Getter
+public class HadoopSyncReport {
+
+    HadoopTransferReport transfers;
+    int scanned;
+    //Iguais pelo tamanho e pelas datas registradas no manifesto
+    int unchangedByManifest;
+    //Iguais pelo checksum
+    int unchangedByChecksum;
+    int checksummed;
+
+    public HadoopSyncReport(HadoopTransferReport transfers, int scanned, int unchangedByManifest, int unchangedByChecksum, int checksummed) {
+        this.transfers = transfers;
+        this.scanned = scanned;
+        this.unchangedByManifest = unchangedByManifest;
+        this.unchangedByChecksum = unchangedByChecksum;
+        this.checksummed = checksummed;
+    }
+
+    @Override
+    public String toString() {
+        return "HadoopSyncReport{scanned=" + scanned + ", transferred=" + transfers.getFileCount()
+                + ", unchangedByManifest=" + unchangedByManifest + ", unchangedByChecksum=" + unchangedByChecksum
+                + ", checksummed=" + checksummed + "}";
+    }
+}
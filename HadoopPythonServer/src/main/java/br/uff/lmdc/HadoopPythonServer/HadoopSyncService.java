@@ -0,0 +1,317 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Incremental sync of directories between the local file system and hdfs: only the files that changed are
+ * transferred, in parallel by {@link HadoopBulkTransferService}. A file whose length differs has changed. When the
+ * lengths match, the modification times are compared with the ones recorded in a manifest, an extended attribute
+ * of the hdfs file written by the last sync; if they don't match either, the hdfs checksum (the CRC of the whole
+ * file, see {@link HadoopHDFSService#getFileChecksum(String)}) is compared with the CRC of the local file, and the
+ * manifest is updated so the next sync skips the checksum. Files missing on the source side are not deleted.
+ */
+@Log4j2
+@Service
+public class HadoopSyncService {
+
+    static final String MANIFEST_ATTRIBUTE = "user.lmdc.sync";
+
+    private enum Decision {
+        CHANGED, CHANGED_BY_CHECKSUM, UNCHANGED_BY_MANIFEST, UNCHANGED_BY_CHECKSUM
+    }
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopBulkTransferService hadoopBulkTransferService;
+    private final ExecutorService executor;
+
+    public HadoopSyncService(HadoopHDFSService hadoopHDFSService, HadoopBulkTransferService hadoopBulkTransferService,
+                             HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopBulkTransferService = hadoopBulkTransferService;
+        this.executor = Executors.newFixedThreadPool(hadoopConfiguration.getSync().getParallelism());
+    }
+
+    /**
+     * Upload the files below a local directory that are missing or different in hdfs.
+     *
+     * @param localDir the local directory
+     * @param hdfsDir  the hdfs destination directory
+     * @return the report of the sync
+     * @throws IOException if the local directory can't be walked
+     */
+    public HadoopSyncReport syncToHdfs(String localDir, String hdfsDir) throws IOException {
+        Path root = Paths.get(localDir);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        Path[] localPaths = files.toArray(new Path[0]);
+        String[] hdfsPaths = new String[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            hdfsPaths[i] = HadoopPaths.join(hdfsDir, root.relativize(files.get(i)).toString().replace(File.separatorChar, '/'));
+        }
+        LocalState[] local = new LocalState[files.size()];
+        Decision[] decisions = compareAll(localPaths, hdfsPaths, new FileStatus[files.size()], local);
+        List<Integer> changed = changed(decisions);
+        HadoopTransferReport transfers = hadoopBulkTransferService.uploadMany(
+                changed.stream().map(i -> localPaths[i].toString()).toArray(String[]::new),
+                changed.stream().map(i -> hdfsPaths[i]).toArray(String[]::new));
+        recordTransferred(transfers, changed, localPaths, hdfsPaths, null, local);
+        return report(transfers, decisions, localDir, hdfsDir);
+    }
+
+    /**
+     * Download the files below a hdfs directory that are missing or different locally.
+     *
+     * @param hdfsDir  the hdfs directory
+     * @param localDir the local destination directory
+     * @return the report of the sync
+     * @throws IOException if the hdfs directory can't be listed
+     */
+    public HadoopSyncReport syncFromHdfs(String hdfsDir, String localDir) throws IOException {
+        String root = hadoopHDFSService.qualifiedPath(hdfsDir);
+        List<FileStatus> statuses = new ArrayList<>();
+        List<String> relatives = new ArrayList<>();
+        RemoteIterator<LocatedFileStatus> files = hadoopHDFSService.listFilesRecursive(hdfsDir);
+        while (files.hasNext()) {
+            LocatedFileStatus file = files.next();
+            String relative = HadoopPaths.relativize(root, file.getPath().toUri().getPath());
+            if (relative != null) {
+                statuses.add(file);
+                relatives.add(relative);
+            }
+        }
+        FileStatus[] remote = statuses.toArray(new FileStatus[0]);
+        Path[] localPaths = new Path[remote.length];
+        String[] hdfsPaths = new String[remote.length];
+        for (int i = 0; i < remote.length; i++) {
+            localPaths[i] = Paths.get(localDir, relatives.get(i).split("/"));
+            hdfsPaths[i] = remote[i].getPath().toUri().getPath();
+        }
+        Decision[] decisions = compareAll(localPaths, hdfsPaths, remote, new LocalState[remote.length]);
+        List<Integer> changed = changed(decisions);
+        HadoopTransferReport transfers = hadoopBulkTransferService.downloadMany(
+                changed.stream().map(i -> hdfsPaths[i]).toArray(String[]::new),
+                changed.stream().map(i -> localPaths[i].toString()).toArray(String[]::new));
+        recordTransferred(transfers, changed, localPaths, hdfsPaths, remote, null);
+        return report(transfers, decisions, hdfsDir, localDir);
+    }
+
+    /**
+     * @param local receives the length and modification time of each local file as seen before any transfer
+     */
+    private Decision[] compareAll(Path[] localPaths, String[] hdfsPaths, FileStatus[] remote, LocalState[] local) {
+        List<Future<Decision>> futures = new ArrayList<>(localPaths.length);
+        for (int i = 0; i < localPaths.length; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                if (!Files.isRegularFile(localPaths[index])) {
+                    return Decision.CHANGED;
+                }
+                local[index] = LocalState.of(localPaths[index]);
+                return compare(local[index], localPaths[index], hdfsPaths[index], remote[index]);
+            }));
+        }
+        Decision[] decisions = new Decision[localPaths.length];
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = await(futures.get(i), hdfsPaths[i], Decision.CHANGED);
+        }
+        return decisions;
+    }
+
+    private Decision compare(LocalState state, Path local, String hdfsPath, FileStatus remote) throws IOException {
+        if (remote == null) {
+            try {
+                // Sem cache: um status antigo faria o sync pular um arquivo alterado por outro cliente
+                remote = hadoopHDFSService.fileInfoUncached(hdfsPath);
+            } catch (FileNotFoundException e) {
+                return Decision.CHANGED;
+            }
+        }
+        long length = state.length;
+        if (!remote.isFile() || remote.getLen() != length) {
+            return Decision.CHANGED;
+        }
+        if (length == 0) {
+            // Dois arquivos vazios são iguais, sem precisar do manifesto
+            return Decision.UNCHANGED_BY_MANIFEST;
+        }
+        long localTime = state.modificationTime;
+        if (manifest(length, localTime, remote.getModificationTime()).equals(readManifest(hdfsPath))) {
+            return Decision.UNCHANGED_BY_MANIFEST;
+        }
+        FileChecksum checksum = hadoopHDFSService.getFileChecksum(hdfsPath);
+        Checksum crc = checksum == null ? null : localEquivalent(checksum.getAlgorithmName());
+        if (crc == null) {
+            // Sem um checksum comparável não há como saber: o arquivo é transferido
+            return Decision.CHANGED;
+        }
+        if ((int) crc(local, crc) != ByteBuffer.wrap(checksum.getBytes()).getInt()) {
+            return Decision.CHANGED_BY_CHECKSUM;
+        }
+        writeManifest(hdfsPath, manifest(length, localTime, remote.getModificationTime()));
+        return Decision.UNCHANGED_BY_CHECKSUM;
+    }
+
+    private static Checksum localEquivalent(String algorithm) {
+        switch (algorithm) {
+            case "COMPOSITE-CRC32C":
+                return new CRC32C();
+            case "COMPOSITE-CRC32":
+                return new CRC32();
+            default:
+                return null;
+        }
+    }
+
+    private static long crc(Path local, Checksum crc) throws IOException {
+        byte[] buffer = new byte[1024 * 1024];
+        try (InputStream input = Files.newInputStream(local)) {
+            int n;
+            while ((n = input.read(buffer)) >= 0) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Record in the manifest of every file transferred the state both sides are known to share. The state of the
+     * source is the one seen before the transfer, so a source changed while it was copied no longer matches the
+     * manifest on the next sync; the state of the target is read after the transfer.
+     *
+     * @param remote the hdfs status of each file when it's the source of the transfer, null to read it
+     * @param local  the state of each local file when it's the source of the transfer, null to read it
+     */
+    private void recordTransferred(HadoopTransferReport transfers, List<Integer> changed, Path[] localPaths,
+                                   String[] hdfsPaths, FileStatus[] remote, LocalState[] local) {
+        List<Future<Void>> futures = new ArrayList<>();
+        List<String> recorded = new ArrayList<>();
+        for (int i = 0; i < changed.size(); i++) {
+            if (!transfers.getSuccess()[i]) {
+                continue;
+            }
+            int index = changed.get(i);
+            String hdfsPath = hdfsPaths[index];
+            recorded.add(hdfsPath);
+            futures.add(executor.submit((Callable<Void>) () -> {
+                FileStatus status = remote != null ? remote[index] : hadoopHDFSService.fileInfoUncached(hdfsPath);
+                LocalState state = local != null ? local[index] : LocalState.of(localPaths[index]);
+                if (state.length != status.getLen()) {
+                    // A origem mudou durante a cópia: sem manifesto, o próximo sync compara de novo
+                    log.debug("Sync: {} mudou durante a transferência", hdfsPath);
+                    return null;
+                }
+                writeManifest(hdfsPath, manifest(status.getLen(), state.modificationTime, status.getModificationTime()));
+                return null;
+            }));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            await(futures.get(i), recorded.get(i), null);
+        }
+    }
+
+    private static String manifest(long length, long localTime, long hdfsTime) {
+        return length + "," + localTime + "," + hdfsTime;
+    }
+
+    private String readManifest(String hdfsPath) throws IOException {
+        try {
+            byte[] manifest = hadoopHDFSService.getExtendedAttribute(hdfsPath, MANIFEST_ATTRIBUTE);
+            return manifest == null ? "" : new String(manifest, StandardCharsets.UTF_8);
+        } catch (UnsupportedOperationException e) {
+            return "";
+        }
+    }
+
+    private void writeManifest(String hdfsPath, String manifest) {
+        try {
+            hadoopHDFSService.setExtendedAttributes(hdfsPath, MANIFEST_ATTRIBUTE, manifest);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Sem o manifesto o próximo sync só volta a comparar os checksums
+            log.debug("Manifesto de {} não gravado: {}", hdfsPath, e.getMessage());
+        }
+    }
+
+    private static List<Integer> changed(Decision[] decisions) {
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < decisions.length; i++) {
+            if (decisions[i] == Decision.CHANGED || decisions[i] == Decision.CHANGED_BY_CHECKSUM) {
+                changed.add(i);
+            }
+        }
+        return changed;
+    }
+
+    private static HadoopSyncReport report(HadoopTransferReport transfers, Decision[] decisions, String source, String target) {
+        int[] counts = new int[Decision.values().length];
+        for (Decision decision : decisions) {
+            counts[decision.ordinal()]++;
+        }
+        HadoopSyncReport report = new HadoopSyncReport(transfers, decisions.length,
+                counts[Decision.UNCHANGED_BY_MANIFEST.ordinal()], counts[Decision.UNCHANGED_BY_CHECKSUM.ordinal()],
+                counts[Decision.CHANGED_BY_CHECKSUM.ordinal()] + counts[Decision.UNCHANGED_BY_CHECKSUM.ordinal()]);
+        log.info("Sync {} -> {}: {}", source, target, report);
+        return report;
+    }
+
+    private static <T> T await(Future<T> future, String path, T fallback) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.error("Sync: falha em {}: {}", path, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return fallback;
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        executor.shutdownNow();
+    }
+
+    private static class LocalState {
+        private final long length;
+        private final long modificationTime;
+
+        private LocalState(long length, long modificationTime) {
+            this.length = length;
+            this.modificationTime = modificationTime;
+        }
+
+        private static LocalState of(Path path) throws IOException {
+            // O horário antes do tamanho: uma escrita entre as duas leituras muda o horário visto no próximo sync
+            long modificationTime = Files.getLastModifiedTime(path).toMillis();
+            return new LocalState(Files.size(path), modificationTime);
+        }
+    }
+}
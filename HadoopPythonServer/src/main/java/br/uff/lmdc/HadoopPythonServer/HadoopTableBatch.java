@@ -0,0 +1,58 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A batch of rows of a table in columns, every column packed in a single contiguous array. Fixed width
+ * columns (int32, int64, float32, float64 and bool) are little endian arrays with one value per row; string
+ * and binary columns are rows + 1 little endian int32 offsets followed by the bytes of the values. Null values
+ * take a slot with zeros (or an empty value) and are marked in an optional validity array, one byte per row.
+ */
+@Getter
+public class HadoopTableBatch {
+
+    public static final String INT32 = "int32";
+    public static final String INT64 = "int64";
+    public static final String FLOAT32 = "float32";
+    public static final String FLOAT64 = "float64";
+    public static final String BOOL = "bool";
+    public static final String STRING = "string";
+    public static final String BINARY = "binary";
+
+    String[] columns;
+    String[] types;
+    int rows;
+    byte[] data;
+    int[] valuesOffsets;
+    int[] valuesLengths;
+    /**
+     * -1 for columns without nulls.
+     */
+    int[] validityOffsets;
+
+    public HadoopTableBatch(String[] columns, String[] types, int rows, byte[] data, int[] valuesOffsets, int[] valuesLengths,
+                            int[] validityOffsets) {
+        this.columns = columns;
+        this.types = types;
+        this.rows = rows;
+        this.data = data;
+        this.valuesOffsets = valuesOffsets;
+        this.valuesLengths = valuesLengths;
+        this.validityOffsets = validityOffsets;
+    }
+
+    /**
+     * The index as a single array (see {@link HadoopPackedBuffer#getPackedIndex()}): for each column the values
+     * offset, the values length and the validity offset as little endian int32.
+     */
+    public byte[] getPackedIndex() {
+        ByteBuffer index = ByteBuffer.allocate(columns.length * 12).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < columns.length; i++) {
+            index.putInt(valuesOffsets[i]).putInt(valuesLengths[i]).putInt(validityOffsets[i]);
+        }
+        return index.array();
+    }
+}
@@ -0,0 +1,291 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.filter2.predicate.Operators;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The row filter of a table read: comparisons of a column with a literal joined by "and", e.g.
+ * {@code year >= 2019 and country == 'BR' and score != null}. The operators are ==, =, !=, <, <=, > and >=;
+ * strings are quoted with ' or " (a doubled quote inside is a quote) and null only compares with == and !=.
+ * For parquet the filter becomes a predicate used to skip row groups by their statistics and then rows;
+ * for csv it is evaluated on the text of each row.
+ */
+class HadoopTableFilter {
+
+    private final List<Condition> conditions;
+
+    private HadoopTableFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * @param text the filter; null or blank for no filter
+     * @throws IOException if the filter is malformed
+     */
+    static HadoopTableFilter parse(String text) throws IOException {
+        List<Condition> conditions = new ArrayList<>();
+        if (text != null && !text.isBlank()) {
+            Tokenizer tokenizer = new Tokenizer(text);
+            do {
+                String column = tokenizer.identifier();
+                String op = tokenizer.operator();
+                conditions.add(tokenizer.literal(column, op));
+            } while (tokenizer.and());
+        }
+        return new HadoopTableFilter(conditions);
+    }
+
+    boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    Set<String> columns() {
+        Set<String> columns = new LinkedHashSet<>();
+        conditions.forEach(condition -> columns.add(condition.column));
+        return columns;
+    }
+
+    /**
+     * The parquet predicate of the filter, with the literals converted to the types of the columns.
+     *
+     * @return the predicate; null for an empty filter
+     * @throws IOException if a column doesn't exist, isn't primitive or a literal doesn't fit its type
+     */
+    FilterPredicate toPredicate(MessageType schema) throws IOException {
+        FilterPredicate predicate = null;
+        for (Condition condition : conditions) {
+            FilterPredicate next = condition.toPredicate(schema);
+            predicate = predicate == null ? next : FilterApi.and(predicate, next);
+        }
+        return predicate;
+    }
+
+    /**
+     * Evaluate the filter on a row of text. A literal that is a number compares numerically and a cell that
+     * isn't a number doesn't match it; null matches empty cells.
+     *
+     * @param values the value of each column, null for empty cells
+     */
+    boolean matches(Function<String, String> values) {
+        for (Condition condition : conditions) {
+            if (!condition.matches(values.apply(condition.column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Condition {
+        private final String column;
+        private final String op;
+        //null quando o literal é null
+        private final String literal;
+        private final boolean quoted;
+
+        private Condition(String column, String op, String literal, boolean quoted) {
+            this.column = column;
+            this.op = op;
+            this.literal = literal;
+            this.quoted = quoted;
+        }
+
+        private FilterPredicate toPredicate(MessageType schema) throws IOException {
+            if (!schema.containsField(column) || !schema.getType(column).isPrimitive()) {
+                throw new IOException("Coluna do filtro não existe ou não é primitiva: " + column);
+            }
+            PrimitiveType type = schema.getType(column).asPrimitiveType();
+            try {
+                switch (type.getPrimitiveTypeName()) {
+                    case INT32:
+                        return compare(FilterApi.intColumn(column), literal == null ? null : Integer.valueOf(literal));
+                    case INT64:
+                        return compare(FilterApi.longColumn(column), literal == null ? null : Long.valueOf(literal));
+                    case FLOAT:
+                        return compare(FilterApi.floatColumn(column), literal == null ? null : Float.valueOf(literal));
+                    case DOUBLE:
+                        return compare(FilterApi.doubleColumn(column), literal == null ? null : Double.valueOf(literal));
+                    case BINARY:
+                        return compare(FilterApi.binaryColumn(column), literal == null ? null : Binary.fromString(literal));
+                    case BOOLEAN:
+                        if (literal != null && !literal.equalsIgnoreCase("true") && !literal.equalsIgnoreCase("false")) {
+                            throw new NumberFormatException(literal);
+                        }
+                        Operators.BooleanColumn booleanColumn = FilterApi.booleanColumn(column);
+                        Boolean value = literal == null ? null : Boolean.valueOf(literal);
+                        if (op.equals("==")) {
+                            return FilterApi.eq(booleanColumn, value);
+                        } else if (op.equals("!=")) {
+                            return FilterApi.notEq(booleanColumn, value);
+                        }
+                        throw new IOException("Coluna booleana " + column + " só aceita == e !=");
+                    default:
+                        throw new IOException("Filtro não suportado para o tipo " + type.getPrimitiveTypeName() + " da coluna " + column);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Valor inválido para a coluna " + column + " (" + type.getPrimitiveTypeName() + "): " + literal);
+            }
+        }
+
+        private <T extends Comparable<T>, C extends Operators.Column<T> & Operators.SupportsLtGt> FilterPredicate compare(C column, T value) {
+            switch (op) {
+                case "==":
+                    return FilterApi.eq(column, value);
+                case "!=":
+                    return FilterApi.notEq(column, value);
+                case "<":
+                    return FilterApi.lt(column, value);
+                case "<=":
+                    return FilterApi.ltEq(column, value);
+                case ">":
+                    return FilterApi.gt(column, value);
+                default:
+                    return FilterApi.gtEq(column, value);
+            }
+        }
+
+        private boolean matches(String value) {
+            if (literal == null || value == null) {
+                boolean equal = literal == null && value == null;
+                return op.equals("==") ? equal : op.equals("!=") && !equal;
+            }
+            int comparison;
+            Double number = quoted ? null : number(literal);
+            if (number != null) {
+                Double cell = number(value);
+                if (cell == null) {
+                    return false;
+                }
+                comparison = cell.compareTo(number);
+            } else {
+                comparison = value.compareTo(literal);
+            }
+            switch (op) {
+                case "==":
+                    return comparison == 0;
+                case "!=":
+                    return comparison != 0;
+                case "<":
+                    return comparison < 0;
+                case "<=":
+                    return comparison <= 0;
+                case ">":
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+
+        private static Double number(String text) {
+            try {
+                return Double.valueOf(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static class Tokenizer {
+        private final String text;
+        private int position;
+
+        private Tokenizer(String text) {
+            this.text = text;
+        }
+
+        private String identifier() throws IOException {
+            skipSpaces();
+            int start = position;
+            while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position) {
+                throw error("nome de coluna esperado");
+            }
+            return text.substring(start, position);
+        }
+
+        private String operator() throws IOException {
+            skipSpaces();
+            for (String op : new String[]{"==", "!=", "<=", ">=", "=", "<", ">"}) {
+                if (text.startsWith(op, position)) {
+                    position += op.length();
+                    return op.equals("=") ? "==" : op;
+                }
+            }
+            throw error("operador esperado");
+        }
+
+        private Condition literal(String column, String op) throws IOException {
+            skipSpaces();
+            if (position >= text.length()) {
+                throw error("valor esperado");
+            }
+            char quote = text.charAt(position);
+            if (quote == '\'' || quote == '"') {
+                StringBuilder value = new StringBuilder();
+                position++;
+                while (true) {
+                    if (position >= text.length()) {
+                        throw error("aspas não fechadas");
+                    }
+                    char c = text.charAt(position++);
+                    if (c == quote) {
+                        if (position < text.length() && text.charAt(position) == quote) {
+                            position++;
+                        } else {
+                            break;
+                        }
+                    }
+                    value.append(c);
+                }
+                return new Condition(column, op, value.toString(), true);
+            }
+            int start = position;
+            while (position < text.length() && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            String value = text.substring(start, position);
+            if (value.equalsIgnoreCase("null")) {
+                if (!op.equals("==") && !op.equals("!=")) {
+                    throw error("null só pode ser comparado com == e !=");
+                }
+                return new Condition(column, op, null, false);
+            }
+            return new Condition(column, op, value, false);
+        }
+
+        private boolean and() throws IOException {
+            skipSpaces();
+            if (position >= text.length()) {
+                return false;
+            }
+            if (text.regionMatches(true, position, "and", 0, 3) && position + 3 < text.length()
+                    && Character.isWhitespace(text.charAt(position + 3))) {
+                position += 3;
+                return true;
+            }
+            throw error("'and' esperado");
+        }
+
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException("Filtro inválido na posição " + position + ": " + message + " em \"" + text + "\"");
+        }
+    }
+}
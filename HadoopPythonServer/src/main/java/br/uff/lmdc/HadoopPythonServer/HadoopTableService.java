@@ -0,0 +1,599 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.compat.RowGroupFilter;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.util.HadoopStreams;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads of parquet and csv tables on the server, so only the requested columns and rows cross the gateway, in
+ * columnar batches ({@link HadoopTableBatch}) read through a server side cursor. Parquet files are read column by
+ * column: only the projected columns (and the ones the filter needs) are fetched from hdfs, row groups whose
+ * statistics (min/max and dictionaries) can't match the filter are skipped without being read and the remaining rows
+ * are filtered one by one. Csv files (.csv or .tsv, optionally compressed with a hadoop codec such as
+ * .gz) have a header row and are read as strings; the filter is evaluated on each row.
+ */
+@Log4j2
+@Service
+public class HadoopTableService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopTableConfigurationProperties tableConfiguration;
+    private final HadoopHandleRegistry<TableCursor> cursors;
+
+    public HadoopTableService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.tableConfiguration = hadoopConfiguration.getTable();
+        this.cursors = new HadoopHandleRegistry<>("table", tableConfiguration.getCursorIdleTimeoutMillis(), tableConfiguration.getMaxOpenCursors());
+    }
+
+    /**
+     * Start reading a table.
+     *
+     * @param path      the hdfs path of the parquet or csv file
+     * @param columns   the columns to read; null or empty for every column
+     * @param filter    the row filter (see {@link HadoopTableFilter}); null or empty for every row
+     * @param batchSize the maximum number of rows of each batch; 0 or less uses the configured size
+     * @return the cursor id used in {@link #next(String)}
+     * @throws IOException     if the file can't be read, a column doesn't exist or the filter is invalid
+     * @throws HadoopException if too many cursors are open
+     */
+    public String open(String path, String[] columns, String filter, int batchSize) throws IOException, HadoopException {
+        log.debug("open() called for {} columns={} filter={}", path, columns == null ? null : Arrays.toString(columns), filter);
+        HadoopTableFilter rowFilter = HadoopTableFilter.parse(filter);
+        int rows = batchSize <= 0 ? tableConfiguration.getBatchSize() : Math.min(batchSize, tableConfiguration.getMaxBatchSize());
+        String[] requested = columns == null || columns.length == 0 ? null : columns;
+        CompressionCodec codec = new CompressionCodecFactory(hadoopHDFSService.getFs().getConf()).getCodec(new org.apache.hadoop.fs.Path(path));
+        String name = codec == null ? path : CompressionCodecFactory.removeSuffix(path, codec.getDefaultExtension());
+        name = name.toLowerCase();
+        TableCursor cursor;
+        if (name.endsWith(".csv") || name.endsWith(".tsv")) {
+            InputStream input = hadoopHDFSService.readFile(path);
+            try {
+                cursor = new CsvCursor(codec == null ? input : codec.createInputStream(input), name.endsWith(".tsv") ? '\t' : ',',
+                        requested, rowFilter, rows);
+            } catch (IOException | RuntimeException e) {
+                input.close();
+                throw e;
+            }
+        } else {
+            cursor = new ParquetCursor(path, requested, rowFilter, rows);
+        }
+        return cursors.register(cursor);
+    }
+
+    /**
+     * Read the next batch of a table. The cursor is released once an empty batch is returned.
+     *
+     * @param cursorId the cursor returned by {@link #open(String, String[], String, int)}
+     * @return the batch; with no rows once the table is over
+     * @throws IOException     if the file can't be read
+     * @throws HadoopException if the cursor does not exist
+     */
+    public HadoopTableBatch next(String cursorId) throws IOException, HadoopException {
+        TableCursor cursor = cursors.get(cursorId);
+        HadoopTableBatch batch;
+        synchronized (cursor) {
+            batch = cursor.next();
+        }
+        if (batch.getRows() == 0) {
+            cursors.release(cursorId);
+        }
+        return batch;
+    }
+
+    /**
+     * The largest batch a {@link #next(String)} may return, give or take its last row.
+     */
+    public long maxBatchBytes() {
+        return tableConfiguration.getMaxBatchBytes();
+    }
+
+    public boolean close(String cursorId) {
+        return cursors.release(cursorId);
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleCursors() {
+        cursors.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        cursors.releaseAll();
+    }
+
+    private InputFile inputFile(String path) throws IOException {
+        // O tamanho localiza o rodapé: um tamanho do cache, de antes do arquivo ser reescrito, apontaria para o lugar errado
+        FileStatus status = hadoopHDFSService.fileInfoUncached(path);
+        return new InputFile() {
+            @Override
+            public long getLength() {
+                return status.getLen();
+            }
+
+            @Override
+            public SeekableInputStream newStream() throws IOException {
+                return HadoopStreams.wrap(hadoopHDFSService.readFile(path));
+            }
+        };
+    }
+
+    private static String typeOf(PrimitiveType type) {
+        switch (type.getPrimitiveTypeName()) {
+            case INT32:
+                return HadoopTableBatch.INT32;
+            case INT64:
+                return HadoopTableBatch.INT64;
+            case FLOAT:
+                return HadoopTableBatch.FLOAT32;
+            case DOUBLE:
+                return HadoopTableBatch.FLOAT64;
+            case BOOLEAN:
+                return HadoopTableBatch.BOOL;
+            case BINARY:
+                return LogicalTypeAnnotation.stringType().equals(type.getLogicalTypeAnnotation()) ? HadoopTableBatch.STRING : HadoopTableBatch.BINARY;
+            default:
+                return HadoopTableBatch.BINARY;
+        }
+    }
+
+    private static boolean isFlat(Type field) {
+        return field.isPrimitive() && !field.isRepetition(Type.Repetition.REPEATED);
+    }
+
+    private interface TableCursor extends Closeable {
+        HadoopTableBatch next() throws IOException;
+    }
+
+    private class ParquetCursor implements TableCursor {
+        private final ParquetFileReader reader;
+        private final MessageType readSchema;
+        private final MessageColumnIO columnIO;
+        private final FilterCompat.Filter filter;
+        private final String[] columns;
+        private final String[] types;
+        private final int[] fields;
+        private final PrimitiveType.PrimitiveTypeName[] primitives;
+        private final int batchSize;
+        private final List<BlockMetaData> blocks;
+        private final List<BlockMetaData> selected;
+        private int nextBlock;
+        private RecordReader<Group> records;
+        private long remainingInGroup;
+
+        private ParquetCursor(String path, String[] requested, HadoopTableFilter rowFilter, int batchSize) throws IOException {
+            this.reader = ParquetFileReader.open(inputFile(path));
+            try {
+                MessageType fileSchema = reader.getFileMetaData().getSchema();
+                // O predicado depende dos tipos das colunas, conhecidos só depois de ler o rodapé: os row groups são
+                // descartados aqui, com o mesmo leitor, em vez de reabrir o arquivo com o filtro nas opções
+                FilterPredicate predicate = rowFilter.isEmpty() ? null : rowFilter.toPredicate(fileSchema);
+                this.filter = predicate == null ? FilterCompat.NOOP : FilterCompat.get(predicate);
+                this.blocks = reader.getRowGroups();
+                this.selected = RowGroupFilter.filterRowGroups(Arrays.asList(RowGroupFilter.FilterLevel.STATISTICS,
+                        RowGroupFilter.FilterLevel.DICTIONARY), filter, blocks, reader);
+                List<String> names = new ArrayList<>();
+                if (requested == null) {
+                    for (Type field : fileSchema.getFields()) {
+                        if (isFlat(field)) {
+                            names.add(field.getName());
+                        }
+                    }
+                } else {
+                    for (String column : requested) {
+                        if (!fileSchema.containsField(column)) {
+                            throw new IOException("Coluna " + column + " não existe em " + path);
+                        }
+                        if (!isFlat(fileSchema.getType(column))) {
+                            throw new IOException("Coluna " + column + " de " + path + " não é primitiva");
+                        }
+                        names.add(column);
+                    }
+                }
+                Set<String> filterColumns = rowFilter.columns();
+                List<Type> readFields = new ArrayList<>();
+                for (Type field : fileSchema.getFields()) {
+                    if (names.contains(field.getName()) || filterColumns.contains(field.getName())) {
+                        readFields.add(field);
+                    }
+                }
+                this.readSchema = new MessageType(fileSchema.getName(), readFields);
+                reader.setRequestedSchema(readSchema);
+                this.columnIO = new ColumnIOFactory(reader.getFileMetaData().getCreatedBy()).getColumnIO(readSchema, fileSchema, true);
+                this.columns = names.toArray(new String[0]);
+                this.types = new String[columns.length];
+                this.fields = new int[columns.length];
+                this.primitives = new PrimitiveType.PrimitiveTypeName[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    PrimitiveType type = readSchema.getType(columns[i]).asPrimitiveType();
+                    types[i] = typeOf(type);
+                    fields[i] = readSchema.getFieldIndex(columns[i]);
+                    primitives[i] = type.getPrimitiveTypeName();
+                }
+                this.batchSize = batchSize;
+                log.debug("Tabela {}: {} de {} row groups descartados pelas estatísticas", path, blocks.size() - selected.size(), blocks.size());
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public HadoopTableBatch next() throws IOException {
+            ColumnBuilder[] builders = builders(types);
+            int rows = 0;
+            while (rows < batchSize && size(builders) < tableConfiguration.getMaxBatchBytes()) {
+                if (remainingInGroup == 0) {
+                    PageReadStore pages = nextRowGroup();
+                    if (pages == null) {
+                        break;
+                    }
+                    records = columnIO.getRecordReader(pages, new GroupRecordConverter(readSchema), filter);
+                    remainingInGroup = pages.getRowCount();
+                }
+                remainingInGroup--;
+                Group group = records.read();
+                if (group == null || records.shouldSkipCurrentRecord()) {
+                    continue;
+                }
+                for (int i = 0; i < columns.length; i++) {
+                    append(builders[i], group, fields[i], primitives[i]);
+                }
+                rows++;
+            }
+            return build(columns, types, rows, builders);
+        }
+
+        private PageReadStore nextRowGroup() throws IOException {
+            while (nextBlock < blocks.size()) {
+                if (selected.contains(blocks.get(nextBlock++))) {
+                    return reader.readNextRowGroup();
+                }
+                reader.skipNextRowGroup();
+            }
+            return null;
+        }
+
+        private void append(ColumnBuilder builder, Group group, int field, PrimitiveType.PrimitiveTypeName type) {
+            if (group.getFieldRepetitionCount(field) == 0) {
+                builder.addNull();
+                return;
+            }
+            switch (type) {
+                case INT32:
+                    builder.addInt(group.getInteger(field, 0));
+                    break;
+                case INT64:
+                    builder.addLong(group.getLong(field, 0));
+                    break;
+                case FLOAT:
+                    builder.addFloat(group.getFloat(field, 0));
+                    break;
+                case DOUBLE:
+                    builder.addDouble(group.getDouble(field, 0));
+                    break;
+                case BOOLEAN:
+                    builder.addBoolean(group.getBoolean(field, 0));
+                    break;
+                case INT96:
+                    builder.addBytes(group.getInt96(field, 0).getBytes());
+                    break;
+                default:
+                    builder.addBytes(group.getBinary(field, 0).getBytes());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private class CsvCursor implements TableCursor {
+        private final Reader input;
+        private final char delimiter;
+        private final HadoopTableFilter filter;
+        private final Map<String, Integer> header = new HashMap<>();
+        private final String[] columns;
+        private final String[] types;
+        private final int[] positions;
+        private final int batchSize;
+        private final StringBuilder field = new StringBuilder();
+
+        private CsvCursor(InputStream input, char delimiter, String[] requested, HadoopTableFilter filter, int batchSize) throws IOException {
+            this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1024 * 1024);
+            this.delimiter = delimiter;
+            this.filter = filter;
+            this.batchSize = batchSize;
+            List<String> names = readRecord();
+            if (names == null) {
+                throw new IOException("Arquivo csv sem cabeçalho");
+            }
+            for (int i = 0; i < names.size(); i++) {
+                header.putIfAbsent(names.get(i) == null ? "" : names.get(i).trim(), i);
+            }
+            this.columns = requested == null ? header.keySet().stream().sorted((a, b) -> header.get(a) - header.get(b)).toArray(String[]::new) : requested;
+            this.positions = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                positions[i] = position(columns[i]);
+            }
+            for (String column : filter.columns()) {
+                position(column);
+            }
+            this.types = new String[columns.length];
+            Arrays.fill(types, HadoopTableBatch.STRING);
+        }
+
+        private int position(String column) throws IOException {
+            Integer position = header.get(column);
+            if (position == null) {
+                throw new IOException("Coluna " + column + " não existe no cabeçalho do csv");
+            }
+            return position;
+        }
+
+        @Override
+        public HadoopTableBatch next() throws IOException {
+            ColumnBuilder[] builders = builders(types);
+            int rows = 0;
+            List<String> record;
+            while (rows < batchSize && size(builders) < tableConfiguration.getMaxBatchBytes() && (record = readRecord()) != null) {
+                if (record.size() == 1 && record.get(0) == null) {
+                    // Linha vazia
+                    continue;
+                }
+                List<String> row = record;
+                if (!filter.matches(column -> cell(row, header.get(column)))) {
+                    continue;
+                }
+                for (int i = 0; i < columns.length; i++) {
+                    String value = cell(row, positions[i]);
+                    if (value == null) {
+                        builders[i].addNull();
+                    } else {
+                        builders[i].addBytes(value.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                rows++;
+            }
+            return build(columns, types, rows, builders);
+        }
+
+        private String cell(List<String> row, int position) {
+            return position < row.size() ? row.get(position) : null;
+        }
+
+        /**
+         * Read a record (RFC 4180: fields may be quoted, with doubled quotes and line breaks inside).
+         *
+         * @return the fields, null for empty unquoted fields; null at the end of the file
+         */
+        private List<String> readRecord() throws IOException {
+            int c = input.read();
+            if (c < 0) {
+                return null;
+            }
+            List<String> record = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean inQuotes = false;
+            while (true) {
+                if (inQuotes) {
+                    if (c < 0) {
+                        throw new IOException("Aspas não fechadas no csv");
+                    }
+                    if (c == '"') {
+                        c = input.read();
+                        if (c != '"') {
+                            inQuotes = false;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c < 0 || c == '\n') {
+                    record.add(value(quoted));
+                    return record;
+                } else if (c == delimiter) {
+                    record.add(value(quoted));
+                    field.setLength(0);
+                    quoted = false;
+                } else if (c == '"' && field.length() == 0 && !quoted) {
+                    inQuotes = true;
+                    quoted = true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = input.read();
+            }
+        }
+
+        private String value(boolean quoted) {
+            return !quoted && field.length() == 0 ? null : field.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    private static ColumnBuilder[] builders(String[] types) {
+        ColumnBuilder[] builders = new ColumnBuilder[types.length];
+        for (int i = 0; i < types.length; i++) {
+            builders[i] = new ColumnBuilder(types[i]);
+        }
+        return builders;
+    }
+
+    private static long size(ColumnBuilder[] builders) {
+        long size = 0;
+        for (ColumnBuilder builder : builders) {
+            size += builder.size();
+        }
+        return size;
+    }
+
+    private static HadoopTableBatch build(String[] columns, String[] types, int rows, ColumnBuilder[] builders) {
+        ByteBuffer data = ByteBuffer.allocate((int) size(builders));
+        int[] valuesOffsets = new int[columns.length];
+        int[] valuesLengths = new int[columns.length];
+        int[] validityOffsets = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            valuesOffsets[i] = data.position();
+            builders[i].writeValues(data);
+            valuesLengths[i] = data.position() - valuesOffsets[i];
+            validityOffsets[i] = builders[i].nulls ? data.position() : -1;
+            builders[i].writeValidity(data);
+        }
+        return new HadoopTableBatch(columns, types, rows, data.array(), valuesOffsets, valuesLengths, validityOffsets);
+    }
+
+    /**
+     * The values of a column in a batch being read, in the layout of {@link HadoopTableBatch}.
+     */
+    private static class ColumnBuilder {
+        private final boolean variableWidth;
+        private final int width;
+        //Valores de largura fixa, ou os offsets dos valores de largura variável
+        private ByteBuffer values = allocate(1024);
+        private ByteBuffer bytes;
+        private byte[] validity = new byte[1024];
+        private boolean nulls;
+        private int rows;
+
+        private ColumnBuilder(String type) {
+            this.variableWidth = type.equals(HadoopTableBatch.STRING) || type.equals(HadoopTableBatch.BINARY);
+            switch (type) {
+                case HadoopTableBatch.INT64:
+                case HadoopTableBatch.FLOAT64:
+                    width = 8;
+                    break;
+                case HadoopTableBatch.BOOL:
+                    width = 1;
+                    break;
+                default:
+                    width = 4;
+            }
+            if (variableWidth) {
+                bytes = allocate(16 * 1024);
+                values.putInt(0);
+            }
+        }
+
+        private void addInt(int value) {
+            values = ensure(values, 4).putInt(value);
+            valid(true);
+        }
+
+        private void addLong(long value) {
+            values = ensure(values, 8).putLong(value);
+            valid(true);
+        }
+
+        private void addFloat(float value) {
+            values = ensure(values, 4).putFloat(value);
+            valid(true);
+        }
+
+        private void addDouble(double value) {
+            values = ensure(values, 8).putDouble(value);
+            valid(true);
+        }
+
+        private void addBoolean(boolean value) {
+            values = ensure(values, 1).put((byte) (value ? 1 : 0));
+            valid(true);
+        }
+
+        private void addBytes(byte[] value) {
+            bytes = ensure(bytes, value.length).put(value);
+            values = ensure(values, 4).putInt(bytes.position());
+            valid(true);
+        }
+
+        private void addNull() {
+            if (variableWidth) {
+                values = ensure(values, 4).putInt(bytes.position());
+            } else {
+                values = ensure(values, width).put(new byte[width]);
+            }
+            nulls = true;
+            valid(false);
+        }
+
+        private void valid(boolean valid) {
+            if (rows == validity.length) {
+                validity = Arrays.copyOf(validity, rows * 2);
+            }
+            validity[rows++] = (byte) (valid ? 1 : 0);
+        }
+
+        private long size() {
+            return values.position() + (variableWidth ? bytes.position() : 0) + (nulls ? rows : 0);
+        }
+
+        private void writeValues(ByteBuffer output) {
+            output.put(values.array(), 0, values.position());
+            if (variableWidth) {
+                output.put(bytes.array(), 0, bytes.position());
+            }
+        }
+
+        private void writeValidity(ByteBuffer output) {
+            if (nulls) {
+                output.put(validity, 0, rows);
+            }
+        }
+
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static ByteBuffer ensure(ByteBuffer buffer, int length) {
+            if (buffer.remaining() >= length) {
+                return buffer;
+            }
+            ByteBuffer bigger = allocate((int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * buffer.capacity(), (long) buffer.position() + length)));
+            bigger.put(buffer.array(), 0, buffer.position());
+            return bigger;
+        }
+    }
+}
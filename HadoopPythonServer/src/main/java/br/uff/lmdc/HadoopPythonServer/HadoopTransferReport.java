@@ -0,0 +1,99 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a bulk transfer: the outcome of each file plus aggregate throughput.
+ */
+@Getter
+public class HadoopTransferReport {
+
+    String[] sources;
+    String[] targets;
+    boolean[] success;
+    String[] errors;
+    long[] bytes;
+    long totalBytes;
+    long elapsedMillis;
+
+    public HadoopTransferReport(String[] sources, String[] targets) {
+        this.sources = sources;
+        this.targets = targets;
+        this.success = new boolean[sources.length];
+        this.errors = new String[sources.length];
+        this.bytes = new long[sources.length];
+    }
+
+    void succeeded(int index, long transferred) {
+        success[index] = true;
+        bytes[index] = transferred;
+    }
+
+    void failed(int index, Throwable error) {
+        success[index] = false;
+        errors[index] = error.getMessage() != null ? error.getMessage() : error.toString();
+    }
+
+    void finish(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+        long total = 0;
+        for (long b : bytes) {
+            total += b;
+        }
+        this.totalBytes = total;
+    }
+
+    public int getFileCount() {
+        return sources.length;
+    }
+
+    public int getFailureCount() {
+        int failures = 0;
+        for (boolean ok : success) {
+            if (!ok) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    public double getThroughputBytesPerSecond() {
+        return elapsedMillis == 0 ? totalBytes * 1000.0 : totalBytes * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * The sources that failed, so that a client doesn't need to fetch the whole report to find them.
+     */
+    public String[] getFailedSources() {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < sources.length; i++) {
+            if (!success[i]) {
+                failed.add(sources[i]);
+            }
+        }
+        return failed.toArray(new String[0]);
+    }
+
+    public String[] getFailedErrors() {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < sources.length; i++) {
+            if (!success[i]) {
+                failed.add(errors[i]);
+            }
+        }
+        return failed.toArray(new String[0]);
+    }
+
+    @Override
+    public String toString() {
+        return "HadoopTransferReport{" +
+                "files=" + sources.length +
+                ", failures=" + getFailureCount() +
+                ", totalBytes=" + totalBytes +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
@@ -0,0 +1,224 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Transfers between hdfs and the local file system. Large files are downloaded in parts read concurrently
+ * with positioned reads, so a single file uses several datanodes at a time; each part is written at its
+ * own position of a preallocated local file.
+ */
+@Log4j2
+@Service
+public class HadoopTransferService {
+
+    static final LongConsumer NO_PROGRESS = bytes -> {
+    };
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopHedgedReadService hadoopHedgedReadService;
+    private final HadoopZeroCopyService hadoopZeroCopyService;
+    private final HadoopConfigurationProperties.HadoopTransferConfigurationProperties transferConfiguration;
+    private final ExecutorService partExecutor;
+
+    public HadoopTransferService(HadoopHDFSService hadoopHDFSService, HadoopHedgedReadService hadoopHedgedReadService,
+                                 HadoopZeroCopyService hadoopZeroCopyService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopHedgedReadService = hadoopHedgedReadService;
+        this.hadoopZeroCopyService = hadoopZeroCopyService;
+        this.transferConfiguration = hadoopConfiguration.getTransfer();
+        this.partExecutor = Executors.newFixedThreadPool(transferConfiguration.getConcurrency());
+    }
+
+    /**
+     * Download a hdfs file to a local file, in parallel when the file is large enough.
+     *
+     * @param hdfsPath  the hdfs path of the file
+     * @param localPath the local destination, overwritten if it exists
+     * @return the number of bytes downloaded
+     * @throws IOException
+     */
+    public long download(String hdfsPath, String localPath) throws IOException {
+        return download(hdfsPath, localPath, NO_PROGRESS);
+    }
+
+    /**
+     * Download a hdfs file to a local file, reporting the bytes copied as the download goes.
+     *
+     * @param progress receives the number of bytes of each piece copied, possibly from several threads
+     * @see #download(String, String)
+     */
+    public long download(String hdfsPath, String localPath, LongConsumer progress) throws IOException {
+        FileStatus status = hadoopHDFSService.fileInfoUncached(hdfsPath);
+        if (!transferConfiguration.isParallelDownload() || status.getLen() < transferConfiguration.getParallelThreshold()) {
+            return downloadSequential(hdfsPath, localPath, progress);
+        }
+        return downloadParallel(status, localPath, progress);
+    }
+
+    /**
+     * Upload a local file to hdfs, replacing the destination if it exists.
+     *
+     * @param localPath  the local file
+     * @param outputPath the hdfs directory
+     * @param fileName   the name of the file in hdfs
+     * @return the number of bytes uploaded
+     * @throws IOException
+     */
+    public long upload(String localPath, String outputPath, String fileName) throws IOException {
+        return upload(localPath, outputPath, fileName, NO_PROGRESS);
+    }
+
+    /**
+     * Upload a local file to hdfs, reporting the bytes copied as the upload goes.
+     *
+     * @param progress receives the number of bytes of each piece copied
+     * @see #upload(String, String, String)
+     */
+    public long upload(String localPath, String outputPath, String fileName, LongConsumer progress) throws IOException {
+        try (InputStream input = withProgress(new FileInputStream(localPath), progress)) {
+            hadoopHDFSService.writeFile(input, outputPath, fileName, false);
+        }
+        return Files.size(Paths.get(localPath));
+    }
+
+    long downloadSequential(String hdfsPath, String localPath, LongConsumer progress) throws IOException {
+        if (hadoopHedgedReadService.isEnabled()) {
+            return hadoopHedgedReadService.download(hdfsPath, localPath, 0, progress);
+        }
+        if (hadoopZeroCopyService.isEnabled()) {
+            return hadoopZeroCopyService.download(hdfsPath, localPath, progress);
+        }
+        try (FileOutputStream output = new FileOutputStream(localPath);
+             InputStream input = withProgress(hadoopHDFSService.readFile(hdfsPath), progress)) {
+            return IOUtils.copyLarge(input, output);
+        }
+    }
+
+    long downloadParallel(FileStatus status, String localPath, LongConsumer progress) throws IOException {
+        Queue<long[]> parts = new ConcurrentLinkedQueue<>(splitParts(status));
+        int workers = Math.min(transferConfiguration.getConcurrency(), parts.size());
+        log.debug("Download paralelo de {} em {} partes com {} workers", status.getPath(), parts.size(), workers);
+        String hdfsPath = status.getPath().toString();
+        try (RandomAccessFile file = new RandomAccessFile(localPath, "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(status.getLen());
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(partExecutor.submit(() -> {
+                    try (FSDataInputStream input = hadoopHDFSService.readFile(hdfsPath)) {
+                        copyParts(input, channel, parts, progress);
+                    }
+                    return null;
+                }));
+            }
+            awaitAll(futures, status);
+        } catch (IOException e) {
+            Files.deleteIfExists(Paths.get(localPath));
+            throw e;
+        }
+        return status.getLen();
+    }
+
+    /**
+     * Split a file into parts, either by its blocks or by the configured part size.
+     *
+     * @return the parts as {offset, length}
+     */
+    List<long[]> splitParts(FileStatus status) throws IOException {
+        List<long[]> parts = new ArrayList<>();
+        long partSize = transferConfiguration.getPartSize();
+        if (partSize <= 0) {
+            for (BlockLocation block : hadoopHDFSService.getFileBlockLocations(status)) {
+                parts.add(new long[]{block.getOffset(), block.getLength()});
+            }
+            if (!parts.isEmpty()) {
+                return parts;
+            }
+            partSize = status.getBlockSize();
+        }
+        for (long offset = 0; offset < status.getLen(); offset += partSize) {
+            parts.add(new long[]{offset, Math.min(partSize, status.getLen() - offset)});
+        }
+        return parts;
+    }
+
+    private void copyParts(FSDataInputStream input, FileChannel channel, Queue<long[]> parts, LongConsumer progress) throws IOException {
+        byte[] buffer = new byte[transferConfiguration.getBufferSize()];
+        long[] part;
+        while ((part = parts.poll()) != null) {
+            long position = part[0];
+            long end = part[0] + part[1];
+            while (position < end) {
+                int length = (int) Math.min(buffer.length, end - position);
+                input.readFully(position, buffer, 0, length);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, length);
+                long writePosition = position;
+                while (chunk.hasRemaining()) {
+                    writePosition += channel.write(chunk, writePosition);
+                }
+                position += length;
+                progress.accept(length);
+            }
+        }
+    }
+
+    static InputStream withProgress(InputStream input, LongConsumer progress) {
+        if (progress == NO_PROGRESS) {
+            return input;
+        }
+        return new ProxyInputStream(input) {
+            @Override
+            protected void afterRead(int n) {
+                if (n > 0) {
+                    progress.accept(n);
+                }
+            }
+        };
+    }
+
+    private void awaitAll(List<Future<?>> futures, FileStatus status) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Download de " + status.getPath() + " interrompido", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        partExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,200 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Recursive walk of a hdfs tree done on the server. The tree is walked top-down and depth first, in the order
+ * of os.walk, through a cursor: each page returns up to pageSize {@link HadoopDirInfo}, so the client iterates
+ * the pages instead of calling pathInfo once per directory. The next pending directories are listed ahead in
+ * parallel on a bounded pool. Subtrees dropped by the client are removed with {@link #prune(String, String[])}.
+ */
+@Log4j2
+@Service
+public class HadoopWalkService {
+
+    private static final HadoopDirInfo[] EMPTY_PAGE = new HadoopDirInfo[0];
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopWalkConfigurationProperties walkConfiguration;
+    private final HadoopHandleRegistry<WalkCursor> cursors;
+    private final ExecutorService executor;
+
+    public HadoopWalkService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.walkConfiguration = hadoopConfiguration.getWalk();
+        this.cursors = new HadoopHandleRegistry<>("walk", walkConfiguration.getCursorIdleTimeoutMillis(), walkConfiguration.getMaxOpenCursors());
+        this.executor = Executors.newFixedThreadPool(walkConfiguration.getParallelism());
+    }
+
+    /**
+     * Start a walk.
+     *
+     * @param path     the root of the walk
+     * @param maxDepth how many levels below the root are visited; negative for no limit
+     * @return the cursor id used in {@link #next(String)}
+     * @throws HadoopException if too many cursors are open
+     */
+    public String open(String path, int maxDepth) throws HadoopException {
+        log.debug("open() called for {} maxDepth={}", path, maxDepth);
+        return cursors.register(new WalkCursor(path, maxDepth));
+    }
+
+    /**
+     * Return the next page of directories of a walk. The cursor is released once an empty page is returned.
+     *
+     * @param cursorId the cursor returned by {@link #open(String, int)}
+     * @return the directories, parents always before their children; empty once the walk is over
+     * @throws IOException       if the root can't be listed
+     * @throws HadoopException   if the cursor does not exist
+     */
+    public HadoopDirInfo[] next(String cursorId) throws IOException, HadoopException {
+        WalkCursor cursor = cursors.get(cursorId);
+        synchronized (cursor) {
+            if (cursor.pending.isEmpty()) {
+                cursors.release(cursorId);
+                return EMPTY_PAGE;
+            }
+            List<HadoopDirInfo> page = new ArrayList<>();
+            while (page.size() < walkConfiguration.getPageSize() && !cursor.pending.isEmpty()) {
+                prefetch(cursor);
+                PendingDir dir = cursor.pending.pop();
+                HadoopDirInfo info = await(dir, cursor);
+                if (info == null) {
+                    continue;
+                }
+                page.add(info);
+                if (cursor.maxDepth < 0 || dir.depth < cursor.maxDepth) {
+                    String[] folders = info.getFolders();
+                    // Empilhados do último para o primeiro, para o primeiro filho ser visitado antes dos irmãos
+                    for (int i = folders.length - 1; i >= 0; i--) {
+                        cursor.pending.push(new PendingDir(HadoopPaths.join(dir.path, folders[i]), dir.depth + 1));
+                    }
+                }
+            }
+            prefetch(cursor);
+            return page.toArray(EMPTY_PAGE);
+        }
+    }
+
+    /**
+     * Drop pending subtrees of a walk, like removing names from dirs in os.walk. Directories of the page already
+     * returned aren't affected; the client skips the ones below the pruned paths.
+     *
+     * @param cursorId the cursor returned by {@link #open(String, int)}
+     * @param paths    the directories whose subtrees are skipped
+     * @return the number of pending directories removed
+     * @throws HadoopException if the cursor does not exist
+     */
+    public int prune(String cursorId, String[] paths) throws HadoopException {
+        WalkCursor cursor = cursors.get(cursorId);
+        synchronized (cursor) {
+            int before = cursor.pending.size();
+            cursor.pending.removeIf(dir -> {
+                for (String path : paths) {
+                    if (dir.path.equals(path) || HadoopPaths.relativize(path, dir.path) != null) {
+                        dir.cancel();
+                        return true;
+                    }
+                }
+                return false;
+            });
+            return before - cursor.pending.size();
+        }
+    }
+
+    public boolean close(String cursorId) {
+        return cursors.release(cursorId);
+    }
+
+    /**
+     * Start listing the directories at the top of the stack, the next ones to be visited.
+     */
+    private void prefetch(WalkCursor cursor) {
+        int started = 0;
+        for (PendingDir dir : cursor.pending) {
+            if (started++ >= walkConfiguration.getParallelism()) {
+                break;
+            }
+            if (dir.listing == null) {
+                dir.listing = executor.submit(() -> HadoopDirInfo.of(dir.path, hadoopHDFSService.showDirectory(dir.path)));
+            }
+        }
+    }
+
+    private HadoopDirInfo await(PendingDir dir, WalkCursor cursor) throws IOException {
+        try {
+            return dir.listing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Walk interrompido em " + dir.path, e);
+        } catch (ExecutionException e) {
+            if (dir.depth == 0) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+            // Diretórios removidos durante o walk são ignorados, como no os.walk
+            log.warn("Não foi possível listar {}: {}", dir.path, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleCursors() {
+        cursors.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        cursors.releaseAll();
+        executor.shutdownNow();
+    }
+
+    private static class PendingDir {
+        private final String path;
+        private final int depth;
+        private Future<HadoopDirInfo> listing;
+
+        private PendingDir(String path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+        private void cancel() {
+            if (listing != null) {
+                listing.cancel(true);
+            }
+        }
+    }
+
+    private static class WalkCursor implements Closeable {
+        //Pilha: o topo é o próximo diretório na ordem do os.walk
+        private final Deque<PendingDir> pending = new ArrayDeque<>();
+        private final int maxDepth;
+
+        private WalkCursor(String path, int maxDepth) {
+            this.maxDepth = maxDepth;
+            this.pending.push(new PendingDir(path, 0));
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                pending.forEach(PendingDir::cancel);
+                pending.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writes of data produced in Python memory, without a local temporary file: whole files in a single call or
+ * write sessions that receive the file in chunks. The chunks of a session go through a buffer of the configured
+ * size, and the data is hflushed to the datanodes in batches, by size or by time, instead of on every chunk.
+ */
+@Log4j2
+@Service
+public class HadoopWriteService {
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopCompressionService hadoopCompressionService;
+    private final HadoopConfigurationProperties.HadoopWriteConfigurationProperties writeConfiguration;
+    private final HadoopHandleRegistry<WriteSession> sessions;
+
+    public HadoopWriteService(HadoopHDFSService hadoopHDFSService, HadoopCompressionService hadoopCompressionService,
+                              HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.hadoopCompressionService = hadoopCompressionService;
+        this.writeConfiguration = hadoopConfiguration.getWrite();
+        this.sessions = new HadoopHandleRegistry<>("write", writeConfiguration.getSessionIdleTimeoutMillis(), writeConfiguration.getMaxOpenSessions());
+    }
+
+    /**
+     * Write a whole file.
+     *
+     * @param hdfsPath  the hdfs path of the file
+     * @param data      the content
+     * @param overwrite whether to replace the file if it exists
+     * @return the number of bytes written
+     * @throws IOException
+     * @throws HadoopException if the file exists and overwrite is false
+     */
+    public long writeBytes(String hdfsPath, byte[] data, boolean overwrite) throws IOException, HadoopException {
+        try (FSDataOutputStream output = create(hdfsPath, overwrite, false)) {
+            output.write(data);
+        } finally {
+            hadoopHDFSService.invalidateMetadata(hdfsPath);
+        }
+        return data.length;
+    }
+
+    /**
+     * Write a whole file sent compressed by the client; it's decoded in chunks on its way to hdfs.
+     *
+     * @param codec the codec of data, see {@link HadoopCompressionService}
+     * @return the number of bytes written, after decoding
+     */
+    public long writeBytesCompressed(String hdfsPath, byte[] data, String codec, boolean overwrite) throws IOException, HadoopException {
+        try (InputStream decoded = hadoopCompressionService.decompress(data, codec);
+             FSDataOutputStream output = create(hdfsPath, overwrite, false)) {
+            return hadoopCompressionService.copy(decoded, output);
+        } finally {
+            hadoopHDFSService.invalidateMetadata(hdfsPath);
+        }
+    }
+
+    /**
+     * Open a write session.
+     *
+     * @param hdfsPath  the hdfs path of the file
+     * @param overwrite whether to replace the file if it exists
+     * @param append    whether to append to the file if it exists
+     * @return the session id used in {@link #write(String, byte[])}
+     * @throws IOException
+     * @throws HadoopException if the file exists and neither overwrite nor append is set, or too many sessions are open
+     */
+    public String open(String hdfsPath, boolean overwrite, boolean append) throws IOException, HadoopException {
+        log.debug("open() called for {} overwrite={} append={}", hdfsPath, overwrite, append);
+        FSDataOutputStream output = create(hdfsPath, overwrite, append);
+        return sessions.register(new WriteSession(hadoopHDFSService, hdfsPath, output, writeConfiguration.getBufferSize()));
+    }
+
+    /**
+     * Append a chunk to a write session, hflushing when the configured size or interval is reached.
+     *
+     * @return the number of bytes written by the session so far
+     */
+    public long write(String sessionId, byte[] chunk) throws IOException, HadoopException {
+        WriteSession session = sessions.get(sessionId);
+        synchronized (session) {
+            session.buffered.write(chunk);
+            return written(session, chunk.length);
+        }
+    }
+
+    /**
+     * Append a chunk sent compressed by the client; each chunk is a complete compressed frame.
+     *
+     * @return the number of bytes written by the session so far, after decoding
+     */
+    public long writeCompressed(String sessionId, byte[] chunk, String codec) throws IOException, HadoopException {
+        WriteSession session = sessions.get(sessionId);
+        try (InputStream decoded = hadoopCompressionService.decompress(chunk, codec)) {
+            synchronized (session) {
+                return written(session, hadoopCompressionService.copy(decoded, session.buffered));
+            }
+        }
+    }
+
+    private long written(WriteSession session, long length) throws IOException {
+        session.written += length;
+        session.unflushed += length;
+        if (session.unflushed >= writeConfiguration.getHflushBytes()
+                || System.currentTimeMillis() - session.lastHflush >= writeConfiguration.getHflushIntervalMillis()) {
+            session.hflush();
+        }
+        return session.written;
+    }
+
+    /**
+     * Make everything written so far visible to readers and durable on the datanodes.
+     */
+    public void hflush(String sessionId) throws IOException, HadoopException {
+        WriteSession session = sessions.get(sessionId);
+        synchronized (session) {
+            session.hflush();
+        }
+    }
+
+    /**
+     * Close a write session, completing the file.
+     *
+     * @return the number of bytes written by the session
+     */
+    public long close(String sessionId) throws IOException, HadoopException {
+        WriteSession session = sessions.get(sessionId);
+        try {
+            // Fechado aqui e não só pelo registro, que ignora os erros: é no close que o HDFS completa o arquivo
+            session.close();
+            return session.written;
+        } finally {
+            sessions.release(sessionId);
+        }
+    }
+
+    private FSDataOutputStream create(String hdfsPath, boolean overwrite, boolean append) throws IOException, HadoopException {
+        String name = hdfsPath.substring(hdfsPath.lastIndexOf('/') + 1);
+        try {
+            // A existência é verificada pelo próprio create/append no NameNode, não pelo cache de metadados
+            return hadoopHDFSService.getOutputStreamForWrite(HadoopPaths.parent(hdfsPath), name, overwrite, append);
+        } catch (FileAlreadyExistsException e) {
+            throw new HadoopException("Arquivo " + hdfsPath + " já existe", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    void expireIdleSessions() {
+        sessions.expireIdle();
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        sessions.releaseAll();
+    }
+
+    private static class WriteSession implements Closeable {
+        private final HadoopHDFSService hadoopHDFSService;
+        private final String path;
+        private final FSDataOutputStream output;
+        private final BufferedOutputStream buffered;
+        private long written;
+        private long unflushed;
+        private long lastHflush = System.currentTimeMillis();
+
+        private WriteSession(HadoopHDFSService hadoopHDFSService, String path, FSDataOutputStream output, int bufferSize) {
+            this.hadoopHDFSService = hadoopHDFSService;
+            this.path = path;
+            this.output = output;
+            this.buffered = new BufferedOutputStream(output, bufferSize);
+        }
+
+        private void hflush() throws IOException {
+            buffered.flush();
+            output.hflush();
+            unflushed = 0;
+            lastHflush = System.currentTimeMillis();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                buffered.close();
+            } finally {
+                hadoopHDFSService.invalidateMetadata(path);
+            }
+        }
+    }
+}
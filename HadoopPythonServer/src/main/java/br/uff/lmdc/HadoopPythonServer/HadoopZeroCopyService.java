@@ -0,0 +1,202 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.ReadOption;
+import org.apache.hadoop.hdfs.ReadStatistics;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
+import org.apache.hadoop.io.ByteBufferPool;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Whole file reads through the enhanced byte buffer API of the hdfs client ({@code read(ByteBufferPool, int,
+ * EnumSet<ReadOption>)}). When the server runs next to a datanode with short-circuit reads configured, blocks come
+ * from memory mapped local files without being copied; otherwise the client reads into direct buffers taken from a
+ * shared pool of a bounded number of buffers (or heap buffers for streams that can't read into a ByteBuffer, such as
+ * the local file system). The
+ * buffers go straight to a FileChannel in downloads and are copied once into the result array in reads, instead of
+ * the stream copies through intermediate heap buffers.
+ */
+@Log4j2
+@Service
+public class HadoopZeroCopyService {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final HadoopHDFSService hadoopHDFSService;
+    private final HadoopConfigurationProperties.HadoopZeroCopyConfigurationProperties zeroCopyConfiguration;
+    private final BufferPool pool;
+    private final EnumSet<ReadOption> readOptions;
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder localBytes = new LongAdder();
+    private final LongAdder shortCircuitBytes = new LongAdder();
+    private final LongAdder zeroCopyBytes = new LongAdder();
+
+    public HadoopZeroCopyService(HadoopHDFSService hadoopHDFSService, HadoopConfigurationProperties hadoopConfiguration) {
+        this.hadoopHDFSService = hadoopHDFSService;
+        this.zeroCopyConfiguration = hadoopConfiguration.getZeroCopy();
+        this.pool = new BufferPool(zeroCopyConfiguration.getBufferSize(), zeroCopyConfiguration.getMaxPooledBuffers());
+        this.readOptions = zeroCopyConfiguration.isSkipChecksums() ? EnumSet.of(ReadOption.SKIP_CHECKSUMS) : EnumSet.noneOf(ReadOption.class);
+    }
+
+    public boolean isEnabled() {
+        return zeroCopyConfiguration.isEnabled();
+    }
+
+    /**
+     * Read a whole file, to the end of the stream: the size from the metadata cache only sizes the first array.
+     *
+     * @param hdfsPath the hdfs path of the file
+     * @param progress receives the number of bytes of each buffer read
+     * @return the contents
+     * @throws IOException if the file can't be read or doesn't fit in an array
+     */
+    public byte[] readAllBytes(String hdfsPath, LongConsumer progress) throws IOException {
+        long length = hadoopHDFSService.fileInfo(hdfsPath).getLen();
+        if (length > MAX_ARRAY_SIZE) {
+            throw new IOException("Arquivo " + hdfsPath + " muito grande para ser lido em memória");
+        }
+        byte[] content = new byte[(int) length];
+        int position = 0;
+        try (FSDataInputStream input = hadoopHDFSService.readFile(hdfsPath)) {
+            ByteBuffer buffer;
+            while ((buffer = read(input, zeroCopyConfiguration.getBufferSize())) != null) {
+                try {
+                    int n = buffer.remaining();
+                    if (n > content.length - position) {
+                        // O arquivo cresceu depois do tamanho guardado no cache
+                        if ((long) position + n > MAX_ARRAY_SIZE) {
+                            throw new IOException("Arquivo " + hdfsPath + " muito grande para ser lido em memória");
+                        }
+                        content = Arrays.copyOf(content, (int) Math.min(MAX_ARRAY_SIZE, Math.max((long) position + n, 2L * content.length)));
+                    }
+                    buffer.get(content, position, n);
+                    position += n;
+                    progress.accept(n);
+                } finally {
+                    input.releaseBuffer(buffer);
+                }
+            }
+            record(input, position);
+        }
+        // O arquivo pode ter diminuído entre a consulta do tamanho e a leitura, ou o array ter crescido além do fim
+        return position == content.length ? content : Arrays.copyOf(content, position);
+    }
+
+    /**
+     * Download a file to a local file, replacing it if it exists.
+     *
+     * @param progress receives the number of bytes of each buffer written
+     * @return the number of bytes downloaded
+     */
+    public long download(String hdfsPath, String localPath, LongConsumer progress) throws IOException {
+        long copied = 0;
+        try (FSDataInputStream input = hadoopHDFSService.readFile(hdfsPath);
+             FileChannel output = FileChannel.open(Paths.get(localPath),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer;
+            while ((buffer = read(input, zeroCopyConfiguration.getBufferSize())) != null) {
+                try {
+                    int n = buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        output.write(buffer);
+                    }
+                    copied += n;
+                    progress.accept(n);
+                } finally {
+                    input.releaseBuffer(buffer);
+                }
+            }
+            record(input, copied);
+        }
+        log.debug("download() {} -> {}: {} bytes", hdfsPath, localPath, copied);
+        return copied;
+    }
+
+    /**
+     * The bytes read and, for hdfs, how many of them came from a local datanode, by short-circuit reads and
+     * without copies (memory mapped).
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("bytesRead", bytesRead.sum());
+        stats.put("localBytes", localBytes.sum());
+        stats.put("shortCircuitBytes", shortCircuitBytes.sum());
+        stats.put("zeroCopyBytes", zeroCopyBytes.sum());
+        return stats;
+    }
+
+    /**
+     * The next buffer of a stream, at most maxLength bytes.
+     *
+     * @return the buffer, to be given back with releaseBuffer; null at the end of the stream
+     */
+    private ByteBuffer read(FSDataInputStream input, int maxLength) throws IOException {
+        ByteBuffer buffer = input.read(pool, Math.min(maxLength, zeroCopyConfiguration.getBufferSize()), readOptions);
+        if (buffer != null && !buffer.hasRemaining()) {
+            input.releaseBuffer(buffer);
+            return null;
+        }
+        return buffer;
+    }
+
+    /**
+     * Direct buffers of a single size, reused by the reads that don't map the blocks. At most maxBuffers are kept;
+     * the ones given back beyond that are dropped and freed by the garbage collector, so a burst of concurrent reads
+     * doesn't pin its direct memory for the life of the server. Heap buffers aren't kept.
+     */
+    static class BufferPool implements ByteBufferPool {
+        private final int bufferSize;
+        private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+        BufferPool(int bufferSize, int maxBuffers) {
+            this.bufferSize = bufferSize;
+            this.buffers = new ArrayBlockingQueue<>(Math.max(1, maxBuffers));
+        }
+
+        @Override
+        public ByteBuffer getBuffer(boolean direct, int length) {
+            if (!direct || length > bufferSize) {
+                return direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+            }
+            ByteBuffer buffer = buffers.poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(bufferSize);
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        @Override
+        public void putBuffer(ByteBuffer buffer) {
+            if (buffer.isDirect() && buffer.capacity() == bufferSize) {
+                buffers.offer(buffer);
+            }
+        }
+    }
+
+    private void record(InputStream input, long bytes) {
+        bytesRead.add(bytes);
+        if (input instanceof HdfsDataInputStream) {
+            ReadStatistics statistics = ((HdfsDataInputStream) input).getReadStatistics();
+            localBytes.add(statistics.getTotalLocalBytesRead());
+            shortCircuitBytes.add(statistics.getTotalShortCircuitBytesRead());
+            zeroCopyBytes.add(statistics.getTotalZeroCopyBytesRead());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HadoopAdmissionControlTests {
+
+	private static HadoopAdmissionControl admission(int dataConcurrency, int maxQueued, long maxInFlightBytes) {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getAdmission().setDataConcurrency(dataConcurrency);
+		configuration.getAdmission().setMaxQueued(maxQueued);
+		configuration.getAdmission().setQueueTimeoutMillis(50);
+		configuration.getAdmission().setMaxInFlightBytes(maxInFlightBytes);
+		return new HadoopAdmissionControl(configuration);
+	}
+
+	private static Number stat(HadoopAdmissionControl admission, String group, String name) {
+		return admission.stats().get(group).get(name);
+	}
+
+	@Test
+	void reservationsOverTheBudgetWaitUntilItIsFreed() {
+		HadoopAdmissionControl admission = admission(4, 4, 4096);
+		HadoopAdmissionControl.Permit first = admission.enter(HadoopAdmissionControl.Lane.DATA);
+		first.reserve(3000);
+		assertEquals(3072L, stat(admission, "bytes", "in_flight_bytes"));
+
+		try (HadoopAdmissionControl.Permit second = admission.enter(HadoopAdmissionControl.Lane.DATA)) {
+			assertThrows(HadoopOverloadedException.class, () -> second.reserve(2048));
+			assertEquals(1L, stat(admission, "bytes", "timeouts"));
+
+			first.close();
+			assertDoesNotThrow(() -> second.reserve(2048));
+			assertEquals(2048L, stat(admission, "bytes", "in_flight_bytes"));
+		}
+		assertEquals(0L, stat(admission, "bytes", "in_flight_bytes"));
+	}
+
+	@Test
+	void aReservationLargerThanTheBudgetTakesAllOfIt() {
+		HadoopAdmissionControl admission = admission(4, 4, 4096);
+
+		try (HadoopAdmissionControl.Permit permit = admission.enter(HadoopAdmissionControl.Lane.DATA)) {
+			permit.reserve(1_000_000);
+			permit.reserve(1);
+			assertEquals(4096L, stat(admission, "bytes", "in_flight_bytes"));
+		}
+		assertEquals(0L, stat(admission, "bytes", "in_flight_bytes"));
+	}
+
+	@Test
+	void aLaneRejectsCallsOnceItsQueueIsFull() {
+		HadoopAdmissionControl admission = admission(1, 0, 4096);
+
+		try (HadoopAdmissionControl.Permit permit = admission.enter(HadoopAdmissionControl.Lane.DATA)) {
+			assertThrows(HadoopOverloadedException.class, () -> admission.enter(HadoopAdmissionControl.Lane.DATA));
+			assertEquals(1L, stat(admission, "data", "rejected"));
+			// As outras filas não são afetadas
+			admission.enter(HadoopAdmissionControl.Lane.METADATA).close();
+		}
+		admission.enter(HadoopAdmissionControl.Lane.DATA).close();
+	}
+
+	@Test
+	void aCallThatWaitsTooLongTimesOut() {
+		HadoopAdmissionControl admission = admission(1, 4, 4096);
+
+		try (HadoopAdmissionControl.Permit permit = admission.enter(HadoopAdmissionControl.Lane.DATA)) {
+			assertThrows(HadoopOverloadedException.class, () -> admission.enter(HadoopAdmissionControl.Lane.DATA));
+			assertEquals(1L, stat(admission, "data", "timeouts"));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HadoopBatchReadServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopBatchReadService batchReadService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getRead().setBatchParallelism(2);
+		configuration.getRead().setMaxBatchBytes(10);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		batchReadService = new HadoopBatchReadService(hdfs, configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		batchReadService.onDestroy();
+	}
+
+	private String write(String name, String content) throws IOException {
+		return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	private static String slice(HadoopPackedBuffer buffer, int i) {
+		return new String(buffer.getData(), buffer.getOffsets()[i], buffer.getLengths()[i], StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void packsTheFilesInOrderAndFlagsTheOnesThatCantBeRead() throws IOException {
+		String[] paths = {
+				write("a", "abc"),
+				directory.resolve("missing").toString(),
+				write("empty", ""),
+				write("b", "defgh"),
+				write("c", "ijk"),
+				directory.toString(),
+		};
+		AtomicLong reserved = new AtomicLong(-1);
+		AtomicLong progress = new AtomicLong();
+
+		HadoopPackedBuffer buffer = batchReadService.readMany(paths, progress::addAndGet, reserved::set);
+
+		assertArrayEquals(new byte[]{
+				HadoopPackedBuffer.OK, HadoopPackedBuffer.MISSING, HadoopPackedBuffer.OK,
+				HadoopPackedBuffer.OK, HadoopPackedBuffer.TOO_LARGE, HadoopPackedBuffer.ERROR
+		}, buffer.getStatus());
+		assertEquals("abcdefgh", new String(buffer.getData(), StandardCharsets.UTF_8));
+		assertEquals("abc", slice(buffer, 0));
+		assertEquals("", slice(buffer, 2));
+		assertEquals("defgh", slice(buffer, 3));
+		assertEquals(3, buffer.getOffsets()[3]);
+		assertEquals(0, buffer.getLengths()[4]);
+		assertEquals(8, reserved.get());
+		assertEquals(8, progress.get());
+	}
+
+	@Test
+	void thePackedIndexHoldsOffsetsLengthsAndStatus() throws IOException {
+		HadoopPackedBuffer buffer = batchReadService.readMany(new String[]{write("a", "ab"), write("b", "cde")});
+		ByteBuffer index = ByteBuffer.wrap(buffer.getPackedIndex()).order(ByteOrder.LITTLE_ENDIAN);
+
+		assertEquals(0, index.getInt());
+		assertEquals(2, index.getInt());
+		assertEquals(2, index.getInt());
+		assertEquals(3, index.getInt());
+		assertArrayEquals(new byte[2], Arrays.copyOfRange(index.array(), 16, 18));
+	}
+}
@@ -0,0 +1,108 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class HadoopBulkTransferServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopTransferService transferService;
+	private HadoopBulkTransferService bulkTransferService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getTransfer().setBulkParallelism(2);
+		configuration.getTransfer().setMaxInFlightBytes(4096);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		transferService = new HadoopTransferService(hdfs, mock(HadoopHedgedReadService.class), mock(HadoopZeroCopyService.class), configuration);
+		bulkTransferService = new HadoopBulkTransferService(hdfs, transferService, configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		bulkTransferService.onDestroy();
+		transferService.onDestroy();
+	}
+
+	private Path write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void directoriesRoundTripWithTheirRelativePaths() throws IOException {
+		Path local = directory.resolve("local");
+		write(local.resolve("a.txt"), "a");
+		write(local.resolve("sub/b.txt"), "bb");
+		write(local.resolve("sub/deeper/c.txt"), "ccc");
+		String remote = directory.resolve("remote").toString();
+		AtomicLong progress = new AtomicLong();
+
+		HadoopTransferReport upload = bulkTransferService.uploadDirectory(local.toString(), remote, progress::addAndGet);
+		Path copy = directory.resolve("copy");
+		HadoopTransferReport download = bulkTransferService.downloadDirectory(remote, copy.toString());
+
+		assertEquals(3, upload.getFileCount());
+		assertEquals(0, upload.getFailureCount());
+		assertEquals(6, upload.getTotalBytes());
+		assertEquals(6, progress.get());
+		assertEquals(3, download.getFileCount());
+		assertEquals(0, download.getFailureCount());
+		assertArrayEquals(Files.readAllBytes(local.resolve("sub/deeper/c.txt")), Files.readAllBytes(copy.resolve("sub/deeper/c.txt")));
+		assertArrayEquals(Files.readAllBytes(local.resolve("a.txt")), Files.readAllBytes(copy.resolve("a.txt")));
+	}
+
+	@Test
+	void aFailedFileIsReportedWithoutStoppingTheOthers() throws IOException {
+		String present = write(directory.resolve("present"), "content").toString();
+		String missing = directory.resolve("missing").toString();
+		String[] targets = {directory.resolve("out/1").toString(), directory.resolve("out/2").toString()};
+
+		HadoopTransferReport report = bulkTransferService.downloadMany(new String[]{missing, present}, targets);
+
+		assertEquals(1, report.getFailureCount());
+		assertArrayEquals(new String[]{missing}, report.getFailedSources());
+		assertFalse(report.getSuccess()[0]);
+		assertTrue(report.getSuccess()[1]);
+		assertNull(report.getErrors()[1]);
+		assertEquals(7, report.getTotalBytes());
+		assertEquals("content", Files.readString(Path.of(targets[1])));
+	}
+
+	@Test
+	void filesLargerThanTheInFlightBudgetStillTransfer() throws IOException {
+		String large = Files.write(directory.resolve("large"), new byte[10_000]).toString();
+
+		HadoopTransferReport report = bulkTransferService.uploadMany(new String[]{large}, new String[]{directory.resolve("remote/large").toString()});
+
+		assertEquals(0, report.getFailureCount());
+		assertEquals(10_000, report.getTotalBytes());
+	}
+
+	@Test
+	void rejectsListsOfDifferentLengths() {
+		assertThrows(IllegalArgumentException.class, () -> bulkTransferService.uploadMany(new String[]{"a"}, new String[0]));
+	}
+}
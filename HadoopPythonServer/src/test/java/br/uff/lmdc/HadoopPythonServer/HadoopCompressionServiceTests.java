@@ -0,0 +1,87 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopCompressionServiceTests {
+
+	private final HadoopCompressionService compressionService = new HadoopCompressionService(new HadoopConfigurationProperties());
+
+	private static byte[] text(int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) ('a' + (i * 7 + i / 13) % 26);
+		}
+		return content;
+	}
+
+	private byte[] streamed(byte[] content, String codec, int pieceSize, String expectedCodec) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (HadoopCompressionService.CompressedStream stream = compressionService.stream(new ByteArrayInputStream(content), "data.txt", codec)) {
+			HadoopCompressedPayload piece;
+			do {
+				piece = stream.next(pieceSize);
+				assertEquals(expectedCodec, piece.getCodec());
+				assertTrue(piece.getData().length <= pieceSize);
+				compressed.write(piece.getData());
+			} while (!piece.isLast());
+			assertEquals(content.length, piece.getLength());
+		}
+		try (InputStream decoded = compressionService.decompress(compressed.toByteArray(), expectedCodec)) {
+			return IOUtils.toByteArray(decoded);
+		}
+	}
+
+	@Test
+	void streamedPiecesFormASingleLz4Frame() throws IOException {
+		byte[] content = text(3 * 1024 * 1024);
+		assertArrayEquals(content, streamed(content, HadoopCompressionService.LZ4, 4096, HadoopCompressionService.LZ4));
+	}
+
+	@Test
+	void streamedPiecesFormASingleZlibStream() throws IOException {
+		byte[] content = text(1024 * 1024 + 17);
+		assertArrayEquals(content, streamed(content, HadoopCompressionService.DEFLATE, 1000, HadoopCompressionService.DEFLATE));
+	}
+
+	@Test
+	void randomContentIsStreamedAsIs() throws IOException {
+		byte[] content = new byte[200 * 1024];
+		new Random(1).nextBytes(content);
+		assertArrayEquals(content, streamed(content, HadoopCompressionService.LZ4, 64 * 1024, HadoopCompressionService.NONE));
+	}
+
+	@Test
+	void smallContentFitsInOnePiece() throws IOException {
+		try (HadoopCompressionService.CompressedStream stream = compressionService.stream(new ByteArrayInputStream(new byte[]{1, 2, 3}), null, HadoopCompressionService.DEFLATE)) {
+			HadoopCompressedPayload piece = stream.next(1024);
+			assertTrue(piece.isLast());
+			assertEquals(HadoopCompressionService.NONE, piece.getCodec());
+			assertArrayEquals(new byte[]{1, 2, 3}, piece.getData());
+		}
+	}
+
+	@Test
+	void compressKeepsReturningTheWholeContent() throws IOException {
+		byte[] content = text(100 * 1024);
+		HadoopCompressedPayload payload = compressionService.compress(content, "data.txt", HadoopCompressionService.DEFLATE);
+
+		assertEquals(HadoopCompressionService.DEFLATE, payload.getCodec());
+		assertTrue(payload.getData().length < content.length);
+		assertFalse(payload.getData().length == 0);
+		try (InputStream decoded = compressionService.decompress(payload.getData(), payload.getCodec())) {
+			assertArrayEquals(content, IOUtils.toByteArray(decoded));
+		}
+	}
+}
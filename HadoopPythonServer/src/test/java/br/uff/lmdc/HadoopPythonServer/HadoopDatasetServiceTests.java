@@ -0,0 +1,126 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HadoopDatasetServiceTests {
+
+	private HadoopZeroCopyService zeroCopy;
+	private HadoopConfigurationProperties configuration;
+	private HadoopDatasetService datasetService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		zeroCopy = mock(HadoopZeroCopyService.class);
+		when(zeroCopy.isEnabled()).thenReturn(true);
+		when(zeroCopy.readAllBytes(anyString(), any())).thenAnswer(invocation -> content(invocation.getArgument(0)));
+		configuration = new HadoopConfigurationProperties();
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (datasetService != null) {
+			datasetService.onDestroy();
+		}
+	}
+
+	private static byte[] content(String path) {
+		return (path + "-data").getBytes();
+	}
+
+	private HadoopDatasetService service() {
+		datasetService = new HadoopDatasetService(mock(HadoopHDFSService.class), zeroCopy, configuration);
+		return datasetService;
+	}
+
+	private static void awaitPrefetchedBytes(HadoopDatasetService service, String session, long bytes) throws Throwable {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (service.stats(session).get("prefetchedBytes") < bytes && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	void deliversEveryFileInOrder() throws Throwable {
+		HadoopDatasetService service = service();
+		String session = service.open(new String[]{"/a", "/b", "/c"}, false, 0, 2);
+
+		HadoopPackedBuffer first = service.next(session, 1);
+		assertArrayEquals(new String[]{"/a"}, first.getPaths());
+		assertArrayEquals(content("/a"), first.getData());
+		List<String> delivered = new ArrayList<>(Arrays.asList(first.getPaths()));
+		HadoopPackedBuffer batch;
+		while ((batch = service.next(session, 10)).getPaths().length > 0) {
+			delivered.addAll(Arrays.asList(batch.getPaths()));
+		}
+
+		assertEquals(Arrays.asList("/a", "/b", "/c"), delivered);
+		assertEquals(3L, service.stats(session).get("delivered"));
+	}
+
+	@Test
+	void stopsPrefetchingAtTheByteBudget() throws Throwable {
+		// Cada arquivo tem 7 bytes ("/x-data"); o segundo passa do limite de 10
+		configuration.getDataset().setParallelism(1);
+		configuration.getDataset().setMaxPrefetchBytes(10);
+		HadoopDatasetService service = service();
+		String session = service.open(new String[]{"/a", "/b", "/c", "/d"}, false, 0, 32);
+
+		awaitPrefetchedBytes(service, session, 14);
+		Thread.sleep(50);
+		Map<String, Long> stats = service.stats(session);
+		assertEquals(2L, stats.get("prefetched"));
+		assertEquals(14L, stats.get("prefetchedBytes"));
+
+		service.next(session, 1);
+		awaitPrefetchedBytes(service, session, 14);
+		assertEquals(2L, service.stats(session).get("prefetched"));
+	}
+
+	@Test
+	void closeDoesNotWaitForAStalledRead() throws Throwable {
+		CountDownLatch release = new CountDownLatch(1);
+		when(zeroCopy.readAllBytes(anyString(), any())).thenAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return content(invocation.getArgument(0));
+		});
+		HadoopDatasetService service = service();
+		String session = service.open(new String[]{"/slow"}, false, 0, 1);
+
+		CompletableFuture<HadoopPackedBuffer> next = CompletableFuture.supplyAsync(() -> {
+			try {
+				return service.next(session, 1);
+			} catch (HadoopException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		long deadline = System.currentTimeMillis() + 5000;
+		while (service.stats(session).get("stalls") == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		CompletableFuture<Boolean> close = CompletableFuture.supplyAsync(() -> service.close(session));
+		assertTrue(close.get(2, TimeUnit.SECONDS));
+		assertFalse(next.isDone());
+		release.countDown();
+		assertArrayEquals(new String[]{"/slow"}, next.get(5, TimeUnit.SECONDS).getPaths());
+	}
+}
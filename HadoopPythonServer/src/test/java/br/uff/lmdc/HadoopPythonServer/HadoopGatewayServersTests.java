@@ -0,0 +1,59 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class HadoopGatewayServersTests {
+
+	private HadoopGatewayServers gatewayServers;
+
+	@AfterEach
+	void tearDown() {
+		if (gatewayServers != null) {
+			gatewayServers.onDestroy();
+		}
+	}
+
+	@Test
+	void startsAListenerOnEachConfiguredPort() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getGateway().setPorts(List.of(0, 0));
+		gatewayServers = new HadoopGatewayServers(mock(HadoopPythonService.class), configuration);
+
+		gatewayServers.start();
+		List<Integer> ports = gatewayServers.listeningPorts();
+
+		assertEquals(2, ports.size());
+		assertNotEquals(ports.get(0), ports.get(1));
+		for (int port : ports) {
+			new Socket(InetAddress.getLoopbackAddress(), port).close();
+		}
+
+		gatewayServers.onDestroy();
+		assertTrue(gatewayServers.listeningPorts().isEmpty());
+	}
+
+	@Test
+	void acceptedConnectionsFollowTheNoDelaySetting() throws IOException {
+		for (boolean tcpNoDelay : new boolean[]{true, false}) {
+			try (ServerSocket server = new HadoopGatewayServers.TunedServerSocketFactory(tcpNoDelay).createServerSocket(0, 1, InetAddress.getLoopbackAddress());
+				 Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+				 Socket accepted = server.accept()) {
+				assertEquals(tcpNoDelay, accepted.getTcpNoDelay());
+				assertFalse(client.isClosed());
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopHandleRegistryTests {
+
+	private static class Resource implements Closeable {
+		private boolean closed;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	@Test
+	void expiresOnlyTheHandlesIdleForLongerThanTheTimeout() throws Throwable {
+		HadoopHandleRegistry<Resource> registry = new HadoopHandleRegistry<>("test", 50, 10);
+		Resource idle = new Resource();
+		Resource used = new Resource();
+		String idleId = registry.register(idle);
+		String usedId = registry.register(used);
+
+		Thread.sleep(100);
+		registry.get(usedId);
+
+		assertEquals(1, registry.expireIdle());
+		assertTrue(idle.closed);
+		assertFalse(used.closed);
+		assertThrows(HadoopException.class, () -> registry.get(idleId));
+		assertSame(used, registry.get(usedId));
+		assertEquals(1, registry.size());
+	}
+
+	@Test
+	void closesTheResourceWhenTheRegistryIsFull() throws Throwable {
+		HadoopHandleRegistry<Resource> registry = new HadoopHandleRegistry<>("test", 60_000, 1);
+		registry.register(new Resource());
+		Resource rejected = new Resource();
+
+		assertThrows(HadoopException.class, () -> registry.register(rejected));
+		assertTrue(rejected.closed);
+	}
+
+	@Test
+	void releaseClosesTheResourceOnce() throws Throwable {
+		HadoopHandleRegistry<Resource> registry = new HadoopHandleRegistry<>("test", 60_000, 10);
+		Resource resource = new Resource();
+		String id = registry.register(resource);
+
+		assertTrue(registry.release(id));
+		assertTrue(resource.closed);
+		assertFalse(registry.release(id));
+		assertFalse(registry.release(null));
+		assertEquals(0, registry.size());
+	}
+}
@@ -0,0 +1,145 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HadoopHedgedReadServiceTests {
+
+	private static final String PATH = "/data/file";
+
+	private HadoopConfigurationProperties configuration;
+	private HadoopHDFSService hdfs;
+	private HadoopHedgedReadService hedgedReadService;
+	private byte[] content;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		configuration = new HadoopConfigurationProperties();
+		configuration.getHedge().setRangeSize(1000);
+		configuration.getHedge().setThresholdMillis(250);
+		configuration.getHedge().setDeadlineMillis(5000);
+		configuration.getHedge().setParallelism(4);
+		content = new byte[2500];
+		new Random(1).nextBytes(content);
+		hdfs = mock(HadoopHDFSService.class);
+		when(hdfs.fileInfoUncached(PATH)).thenReturn(new FileStatus(content.length, false, 1, 0, 0, new org.apache.hadoop.fs.Path(PATH)));
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (hedgedReadService != null) {
+			hedgedReadService.onDestroy();
+		}
+	}
+
+	private HadoopHedgedReadService service() {
+		hedgedReadService = new HadoopHedgedReadService(hdfs, configuration);
+		return hedgedReadService;
+	}
+
+	/**
+	 * A stream whose positioned reads take the given time before returning the content.
+	 */
+	private FSDataInputStream stream(long delayMillis) throws IOException {
+		FSDataInputStream stream = mock(FSDataInputStream.class);
+		doAnswer(invocation -> {
+			Thread.sleep(delayMillis);
+			long position = invocation.getArgument(0);
+			byte[] buffer = invocation.getArgument(1);
+			int offset = invocation.getArgument(2);
+			int length = invocation.getArgument(3);
+			System.arraycopy(content, (int) position, buffer, offset, length);
+			return null;
+		}).when(stream).readFully(anyLong(), any(byte[].class), anyInt(), anyInt());
+		return stream;
+	}
+
+	@Test
+	void readsTheFileInRangesWithoutHedgingFastReads() throws IOException {
+		FSDataInputStream fast = stream(0);
+		when(hdfs.readFile(PATH)).thenReturn(fast);
+
+		assertArrayEquals(content, service().readAllBytes(PATH, 0));
+		assertEquals(1L, hedgedReadService.stats().get("reads"));
+		assertEquals(3L, hedgedReadService.stats().get("ranges"));
+		assertEquals(0L, hedgedReadService.stats().get("hedges"));
+	}
+
+	@Test
+	void aSlowRangeIsHedgedOnAnotherStream() throws IOException {
+		configuration.getHedge().setRangeSize(content.length);
+		FSDataInputStream slow = stream(5000);
+		FSDataInputStream fast = stream(0);
+		when(hdfs.readFile(PATH)).thenReturn(slow, fast);
+
+		assertArrayEquals(content, service().readAllBytes(PATH, 0));
+		assertEquals(1L, hedgedReadService.stats().get("hedges"));
+		assertEquals(1L, hedgedReadService.stats().get("hedgeWins"));
+	}
+
+	@Test
+	void aFailedRangeIsRetriedOnAnotherStream() throws IOException {
+		configuration.getHedge().setRangeSize(content.length);
+		FSDataInputStream failing = mock(FSDataInputStream.class);
+		doThrow(new IOException("datanode")).when(failing).readFully(anyLong(), any(byte[].class), anyInt(), anyInt());
+		FSDataInputStream fast = stream(0);
+		when(hdfs.readFile(PATH)).thenReturn(failing, fast);
+
+		assertArrayEquals(content, service().readAllBytes(PATH, 0));
+		assertEquals(1L, hedgedReadService.stats().get("recoveredErrors"));
+		assertEquals(0L, hedgedReadService.stats().get("hedges"));
+	}
+
+	@Test
+	void failsWhenTheDeadlinePasses() throws IOException {
+		FSDataInputStream slow = stream(5000);
+		when(hdfs.readFile(PATH)).thenReturn(slow);
+
+		assertThrows(IOException.class, () -> service().readAllBytes(PATH, 400));
+		assertEquals(1L, hedgedReadService.stats().get("deadlinesExceeded"));
+	}
+
+	@Test
+	void timeWaitingForAThreadDoesNotTriggerAHedge() throws Exception {
+		configuration.getHedge().setRangeSize(content.length);
+		configuration.getHedge().setParallelism(1);
+		// Cada leitura leva 150 ms; a segunda espera a primeira na fila e só termina 300 ms depois de pedida
+		FSDataInputStream first = stream(150);
+		FSDataInputStream second = stream(150);
+		when(hdfs.readFile(PATH)).thenReturn(first, second);
+		HadoopHedgedReadService service = service();
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			Future<byte[]> firstRead = callers.submit(() -> service.readAllBytes(PATH, 0));
+			Future<byte[]> secondRead = callers.submit(() -> service.readAllBytes(PATH, 0));
+
+			assertArrayEquals(content, firstRead.get());
+			assertArrayEquals(content, secondRead.get());
+		} finally {
+			callers.shutdownNow();
+		}
+		assertEquals(0L, service.stats().get("hedges"));
+		assertEquals(Arrays.asList(2L, 2L), Arrays.asList(service.stats().get("reads"), service.stats().get("ranges")));
+	}
+}
@@ -0,0 +1,123 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HadoopImageServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopConfigurationProperties configuration;
+	private HadoopImageService imageService;
+	private String image;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		configuration = new HadoopConfigurationProperties();
+		configuration.getImage().setParallelism(2);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		imageService = new HadoopImageService(hdfs, configuration);
+		image = write("red.png", 40, 20, Color.RED);
+	}
+
+	@AfterEach
+	void tearDown() {
+		imageService.onDestroy();
+	}
+
+	private String write(String name, int width, int height, Color color) throws IOException {
+		BufferedImage source = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = source.createGraphics();
+		graphics.setColor(color);
+		graphics.fillRect(0, 0, width, height);
+		graphics.dispose();
+		Path file = directory.resolve(name);
+		ImageIO.write(source, "png", file.toFile());
+		return file.toString();
+	}
+
+	private static BufferedImage decode(byte[] encoded) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(encoded));
+	}
+
+	@Test
+	void rawPixelsAreRgbRowByRow() throws IOException {
+		byte[] pixels = imageService.readImage(image, 4, 2, "raw");
+
+		assertEquals(4 * 2 * 3, pixels.length);
+		for (int i = 0; i < pixels.length; i += 3) {
+			assertArrayEquals(new byte[]{(byte) 255, 0, 0}, new byte[]{pixels[i], pixels[i + 1], pixels[i + 2]});
+		}
+	}
+
+	@Test
+	void keepsTheAspectRatioWhenOneSideIsMissing() throws IOException {
+		BufferedImage byWidth = decode(imageService.readImage(image, 10, 0, "PNG"));
+		BufferedImage byHeight = decode(imageService.readImage(image, 0, 5, "Jpg"));
+		BufferedImage original = decode(imageService.readImage(image, 0, 0, null));
+
+		assertEquals(10, byWidth.getWidth());
+		assertEquals(5, byWidth.getHeight());
+		assertEquals(10, byHeight.getWidth());
+		assertEquals(40, original.getWidth());
+		assertEquals(20, original.getHeight());
+	}
+
+	@Test
+	void rejectsUnsupportedRequests() throws IOException {
+		configuration.getImage().setMaxSourcePixels(100);
+
+		assertThrows(IOException.class, () -> imageService.readImage(image, 4, 0, "raw"));
+		assertThrows(IOException.class, () -> imageService.readImage(image, 4, 4, "gif"));
+		assertThrows(IOException.class, () -> imageService.readImage(image, 4, 4, "png"));
+	}
+
+	@Test
+	void flagsTheImagesThatCantBeReadAndReservesRawBuffersUpFront() throws IOException {
+		String blue = write("blue.png", 8, 8, Color.BLUE);
+		String text = Files.write(directory.resolve("text.png"), new byte[]{1, 2, 3}).toString();
+		String missing = directory.resolve("missing.png").toString();
+		List<Long> reserved = new ArrayList<>();
+
+		HadoopPackedBuffer buffer = imageService.readImages(new String[]{image, missing, text, blue}, 2, 2, "raw", reserved::add);
+
+		assertArrayEquals(new byte[]{
+				HadoopPackedBuffer.OK, HadoopPackedBuffer.MISSING, HadoopPackedBuffer.ERROR, HadoopPackedBuffer.OK
+		}, buffer.getStatus());
+		assertEquals(List.of(4L * 2 * 2 * 3), reserved);
+		assertEquals(24, buffer.getData().length);
+		assertEquals(12, buffer.getOffsets()[3]);
+		assertEquals((byte) 255, buffer.getData()[12 + 2]);
+	}
+
+	@Test
+	void aSingleImageReservesItsResultSize() throws IOException {
+		List<Long> reserved = new ArrayList<>();
+
+		imageService.readImage(image, 4, 2, "raw", reserved::add);
+		byte[] encoded = imageService.readImage(image, 4, 2, "png", reserved::add);
+
+		assertEquals(List.of(24L, (long) encoded.length), reserved);
+	}
+}
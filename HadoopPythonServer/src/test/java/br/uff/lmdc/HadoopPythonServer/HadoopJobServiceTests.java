@@ -0,0 +1,197 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import br.uff.lmdc.HadoopPythonServer.HadoopAdmissionControl.Lane;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HadoopJobServiceTests {
+
+	private HadoopBatchReadService batchRead;
+	private HadoopConfigurationProperties configuration;
+	private HadoopAdmissionControl admission;
+	private HadoopJobService jobService;
+
+	@BeforeEach
+	void setUp() {
+		batchRead = mock(HadoopBatchReadService.class);
+		configuration = new HadoopConfigurationProperties();
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (jobService != null) {
+			jobService.onDestroy();
+		}
+	}
+
+	private HadoopJobService service() {
+		admission = new HadoopAdmissionControl(configuration);
+		jobService = new HadoopJobService(mock(HadoopHDFSService.class), mock(HadoopTransferService.class),
+				mock(HadoopBulkTransferService.class), batchRead, mock(HadoopZeroCopyService.class),
+				admission, configuration);
+		return jobService;
+	}
+
+	@Test
+	void concurrentSubmissionsRespectTheJobLimit() throws Exception {
+		configuration.getJob().setMaxJobs(5);
+		HadoopJobService service = service();
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger accepted = new AtomicInteger();
+		ExecutorService callers = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<?>> submissions = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				submissions.add(callers.submit(() -> {
+					start.await();
+					try {
+						service.submit("test", -1, Lane.BULK, (progress, reserve) -> null);
+						accepted.incrementAndGet();
+					} catch (HadoopException e) {
+						// Limite atingido
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> submission : submissions) {
+				submission.get(5, TimeUnit.SECONDS);
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+
+		assertEquals(5, accepted.get());
+	}
+
+	@Test
+	void releasingAJobFreesItsSlot() throws Throwable {
+		configuration.getJob().setMaxJobs(1);
+		HadoopJobService service = service();
+		String id = service.submit("test", -1, Lane.BULK, (progress, reserve) -> null);
+		assertThrows(HadoopException.class, () -> service.submit("test", -1, Lane.BULK, (progress, reserve) -> null));
+
+		assertTrue(service.release(id));
+
+		service.submit("test", -1, Lane.BULK, (progress, reserve) -> null);
+	}
+
+	@Test
+	void aReleaseRacingTheExpiryFreesTheSlotOnce() throws Throwable {
+		configuration.getJob().setMaxJobs(4);
+		configuration.getJob().setResultTimeoutMillis(0);
+		HadoopJobService service = service();
+		ExecutorService releasers = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 50; round++) {
+				List<String> ids = new ArrayList<>();
+				for (int i = 0; i < 4; i++) {
+					ids.add(service.submit("test", -1, Lane.BULK, (progress, reserve) -> null));
+				}
+				for (String id : ids) {
+					assertTrue(service.await(id, 5000));
+				}
+				Thread.sleep(1);
+				List<Future<?>> releases = new ArrayList<>();
+				for (String id : ids) {
+					releases.add(releasers.submit(() -> service.release(id)));
+				}
+				service.expireFinishedJobs();
+				for (Future<?> release : releases) {
+					release.get(5, TimeUnit.SECONDS);
+				}
+			}
+		} finally {
+			releasers.shutdownNow();
+		}
+
+		for (int i = 0; i < 4; i++) {
+			service.submit("test", -1, Lane.BULK, (progress, reserve) -> null);
+		}
+		assertThrows(HadoopException.class, () -> service.submit("test", -1, Lane.BULK, (progress, reserve) -> null));
+	}
+
+	@Test
+	void readManyReportsProgressPerFile() throws Throwable {
+		CountDownLatch firstFile = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+		when(batchRead.readMany(any(), any(), any())).thenAnswer(invocation -> {
+			LongConsumer progress = invocation.getArgument(1);
+			progress.accept(10);
+			firstFile.countDown();
+			finish.await(5, TimeUnit.SECONDS);
+			progress.accept(20);
+			return new HadoopPackedBuffer(new String[0], new byte[0], new int[0], new int[0], new byte[0]);
+		});
+		HadoopJobService service = service();
+		String id = service.submitReadMany(new String[]{"/a", "/b"});
+
+		assertTrue(firstFile.await(5, TimeUnit.SECONDS));
+		assertEquals(10L, service.progress(id).get("transferred"));
+		finish.countDown();
+		assertTrue(service.await(id, 5000));
+		assertEquals(30L, service.progress(id).get("transferred"));
+	}
+
+	@Test
+	void aJobWaitsForItsLaneAndReservesOnIt() throws Throwable {
+		configuration.getAdmission().setDataConcurrency(1);
+		configuration.getAdmission().setMaxInFlightBytes(1024 * 1024);
+		CountDownLatch reserved = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+		when(batchRead.readMany(any(), any(), any())).thenAnswer(invocation -> {
+			LongConsumer reserve = invocation.getArgument(2);
+			reserve.accept(4096);
+			reserved.countDown();
+			finish.await(5, TimeUnit.SECONDS);
+			return new HadoopPackedBuffer(new String[0], new byte[0], new int[0], new int[0], new byte[0]);
+		});
+		HadoopJobService service = service();
+		String id;
+		try (HadoopAdmissionControl.Permit busy = admission.enter(Lane.DATA)) {
+			id = service.submitReadMany(new String[]{"/a"});
+			Thread.sleep(100);
+			assertEquals(HadoopJobService.PENDING, service.status(id));
+		}
+
+		assertTrue(reserved.await(5, TimeUnit.SECONDS));
+		assertEquals(HadoopJobService.RUNNING, service.status(id));
+		assertEquals(4096L, admission.stats().get("bytes").get("in_flight_bytes"));
+		finish.countDown();
+		assertTrue(service.await(id, 5000));
+		assertEquals(0L, admission.stats().get("bytes").get("in_flight_bytes"));
+	}
+
+	@Test
+	void aJobRefusedByTheAdmissionControlFails() throws Throwable {
+		configuration.getAdmission().setBulkConcurrency(1);
+		configuration.getAdmission().setMaxQueued(0);
+		HadoopJobService service = service();
+		try (HadoopAdmissionControl.Permit busy = admission.enter(Lane.BULK)) {
+			String id = service.submit("test", -1, Lane.BULK, (progress, reserve) -> null);
+
+			assertTrue(service.await(id, 5000));
+			assertEquals(HadoopJobService.FAILED, service.status(id));
+			HadoopException error = assertThrows(HadoopException.class, () -> service.result(id));
+			assertTrue(error.getCause() instanceof HadoopOverloadedException);
+		}
+	}
+}
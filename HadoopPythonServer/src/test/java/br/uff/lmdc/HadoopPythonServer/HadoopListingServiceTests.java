@@ -0,0 +1,170 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopListingServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopListingService listingService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getListing().setPageSize(2);
+		configuration.getListing().setMaxPageSize(3);
+		configuration.getListing().setCursorIdleTimeoutMillis(50);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		listingService = new HadoopListingService(hdfs, configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		listingService.onDestroy();
+	}
+
+	private void write(String name, int size) throws IOException {
+		write(name, size, System.currentTimeMillis());
+	}
+
+	private void write(String name, int size, long mtime) throws IOException {
+		Path file = directory.resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, new byte[size]);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(mtime));
+	}
+
+	private Set<String> found(String cursor) throws Throwable {
+		Set<String> found = new TreeSet<>();
+		HadoopStatBatch page;
+		while ((page = listingService.next(cursor, 0)).getCount() > 0) {
+			found.addAll(names(page));
+		}
+		return found;
+	}
+
+	private static List<String> names(HadoopStatBatch batch) {
+		if (batch.getCount() == 0) {
+			return List.of();
+		}
+		return Arrays.asList(new String(batch.getNames(), StandardCharsets.UTF_8).split("\0"));
+	}
+
+	@Test
+	void pagesResumeWhereThePreviousOneStopped() throws Throwable {
+		for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+			write(name, 1);
+		}
+		String cursor = listingService.open(directory.toString(), false);
+
+		List<Integer> sizes = new ArrayList<>();
+		Set<String> listed = new TreeSet<>();
+		HadoopStatBatch page;
+		while ((page = listingService.next(cursor, 0)).getCount() > 0) {
+			sizes.add(page.getCount());
+			listed.addAll(names(page));
+		}
+
+		assertEquals(List.of(2, 2, 1), sizes);
+		assertEquals(Set.of("a", "b", "c", "d", "e"), listed);
+		// A página vazia libera o cursor
+		assertThrows(HadoopException.class, () -> listingService.next(cursor, 0));
+	}
+
+	@Test
+	void pagesAreCappedByTheMaximumSize() throws Throwable {
+		for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+			write(name, 1);
+		}
+		String cursor = listingService.open(directory.toString(), false);
+
+		assertEquals(3, listingService.next(cursor, 100).getCount());
+		assertEquals(1, listingService.next(cursor, 1).getCount());
+		assertEquals(1, listingService.next(cursor, 100).getCount());
+	}
+
+	@Test
+	void recursiveListingsNameFilesRelativeToTheRoot() throws Throwable {
+		write("a", 1);
+		write("sub/deeper/b", 1);
+		String cursor = listingService.open(directory.toString(), true);
+
+		assertEquals(Set.of("a", "sub/deeper/b"), new TreeSet<>(names(listingService.next(cursor, 10))));
+	}
+
+	@Test
+	void idleCursorsExpire() throws Throwable {
+		write("a", 1);
+		String idle = listingService.open(directory.toString(), false);
+		String closed = listingService.open(directory.toString(), false);
+
+		assertTrue(listingService.close(closed));
+		Thread.sleep(100);
+		listingService.expireIdleCursors();
+
+		assertThrows(HadoopException.class, () -> listingService.next(idle, 0));
+		assertFalse(listingService.close(idle));
+	}
+
+	@Test
+	void findCombinesTheNamePatternWithTheSizeAndTimeFilters() throws Throwable {
+		write("small.csv", 10, 2_000_000);
+		write("large.csv", 1000, 2_000_000);
+		write("old.csv", 100, 1_000_000);
+		write("sub/match.csv", 100, 2_000_000);
+		write("sub/match.txt", 100, 2_000_000);
+
+		String cursor = listingService.find(directory.toString(), "*.csv", 50, 500, 1_500_000, 0);
+
+		assertEquals(Set.of("sub/match.csv"), found(cursor));
+	}
+
+	@Test
+	void findWithAPathPatternOnlyMatchesBelowTheRoot() throws Throwable {
+		write("a/1.bin", 1);
+		write("a/2.txt", 1);
+		write("b/3.bin", 1);
+		write("4.bin", 1);
+
+		assertEquals(Set.of("a/1.bin", "b/3.bin"), found(listingService.find(directory.toString(), "/*/*.bin", -1, -1, 0, 0)));
+		assertEquals(Set.of("a/1.bin", "b/3.bin", "4.bin"), found(listingService.find(directory.toString(), "{*,*/*}.bin", -1, -1, 0, 0)));
+	}
+
+	@Test
+	void findStopsAtTheLimitAndSkipsDirectories() throws Throwable {
+		for (String name : new String[]{"a", "b", "c", "d"}) {
+			write(name + "/file", 1);
+		}
+
+		assertEquals(2, found(listingService.find(directory.toString(), "*", -1, -1, 0, 2)).size());
+		assertEquals(4, found(listingService.find(directory.toString(), null, -1, -1, 0, 0)).size());
+	}
+
+	@Test
+	void findRejectsAnInvalidPattern() {
+		assertThrows(IOException.class, () -> listingService.find(directory.toString(), "[", -1, -1, 0, 0));
+	}
+}
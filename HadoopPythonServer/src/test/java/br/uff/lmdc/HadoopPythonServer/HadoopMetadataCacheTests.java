@@ -0,0 +1,143 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HadoopMetadataCacheTests {
+
+	private static FileStatus status(String path, long length) {
+		return new FileStatus(length, false, 1, 128, 0, new Path(path));
+	}
+
+	@Test
+	void loadsOnceUntilInvalidated() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 100);
+		AtomicInteger loads = new AtomicInteger();
+		HadoopMetadataCache.StatusLoader loader = () -> {
+			loads.incrementAndGet();
+			return status("/a", 1);
+		};
+
+		cache.get("/a", loader);
+		cache.get("/a", loader);
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHits());
+
+		cache.invalidate("/a");
+		cache.get("/a", loader);
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void cachesMissingPaths() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 100);
+		AtomicInteger loads = new AtomicInteger();
+		HadoopMetadataCache.StatusLoader loader = () -> {
+			loads.incrementAndGet();
+			throw new FileNotFoundException("/missing");
+		};
+
+		assertThrows(FileNotFoundException.class, () -> cache.get("/missing", loader));
+		assertThrows(FileNotFoundException.class, () -> cache.get("/missing", loader));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void expiredEntriesAreReloaded() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, -1, 100);
+		AtomicInteger loads = new AtomicInteger();
+		HadoopMetadataCache.StatusLoader loader = () -> {
+			loads.incrementAndGet();
+			return status("/a", 1);
+		};
+
+		cache.get("/a", loader);
+		cache.get("/a", loader);
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void invalidationDuringLoadDiscardsTheLoadedStatus() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 100);
+		FileStatus old = status("/a", 1);
+		FileStatus current = status("/a", 2);
+
+		// A escrita invalida a entrada enquanto a leitura antiga ainda está no NameNode
+		cache.get("/a", () -> {
+			cache.invalidate("/a");
+			return old;
+		});
+
+		assertSame(current, cache.get("/a", () -> current));
+	}
+
+	@Test
+	void refreshBypassesTheCachedStatus() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 100);
+		FileStatus current = status("/a", 2);
+		cache.get("/a", () -> status("/a", 1));
+
+		assertSame(current, cache.refresh("/a", () -> current));
+		assertSame(current, cache.get("/a", () -> status("/a", 3)));
+	}
+
+	@Test
+	void invalidateTreeRemovesDescendants() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 100);
+		cache.get("/dir", () -> status("/dir", 0));
+		cache.get("/dir/a", () -> status("/dir/a", 1));
+		cache.get("/directory", () -> status("/directory", 0));
+
+		cache.invalidateTree("/dir");
+
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void listingsAreSkippedWhenLargeOrOlderThanAnInvalidation() {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 100);
+		Map<String, FileStatus> listed = new LinkedHashMap<>();
+		listed.put("/dir/a", status("/dir/a", 1));
+		listed.put("/dir/b", status("/dir/b", 2));
+
+		cache.putListed(listed, cache.invalidationCount(), 1);
+		assertEquals(0, cache.size());
+
+		long since = cache.invalidationCount();
+		cache.invalidate("/dir/a");
+		cache.putListed(listed, since, 10);
+		assertEquals(0, cache.size());
+
+		cache.putListed(listed, cache.invalidationCount(), 10);
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedEntry() throws IOException {
+		HadoopMetadataCache cache = new HadoopMetadataCache(true, 60_000, 2);
+		cache.get("/a", () -> status("/a", 1));
+		cache.get("/b", () -> status("/b", 1));
+		cache.get("/a", () -> status("/a", 1));
+		cache.get("/c", () -> status("/c", 1));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("/a", () -> {
+			loads.incrementAndGet();
+			return status("/a", 1);
+		});
+		assertEquals(0, loads.get());
+	}
+}
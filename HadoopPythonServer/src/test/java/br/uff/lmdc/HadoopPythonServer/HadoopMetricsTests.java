@@ -0,0 +1,58 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopMetricsTests {
+
+	private final HadoopMetrics metrics = new HadoopMetrics(new HadoopConfigurationProperties());
+
+	@Test
+	void countsCallsErrorsAndFalseResults() {
+		try (HadoopMetrics.Operation op = metrics.start("hdfs.deleteFile")) {
+			op.ok(true);
+		}
+		try (HadoopMetrics.Operation op = metrics.start("hdfs.deleteFile")) {
+			op.ok(false);
+		}
+		try (HadoopMetrics.Operation ignored = metrics.start("hdfs.deleteFile")) {
+			// Sem ok(): conta como erro, como quando uma exceção escapa
+		}
+
+		Map<String, Number> values = metrics.snapshot().get("hdfs.deleteFile");
+		assertEquals(3L, values.get("calls"));
+		assertEquals(1L, values.get("errors"));
+		assertEquals(1L, values.get("false_results"));
+		assertEquals(0L, values.get("in_flight"));
+	}
+
+	@Test
+	void countsBytesAndOperationsInFlight() {
+		try (HadoopMetrics.Operation op = metrics.start("gateway.readAllBytes")) {
+			op.bytesOut(10);
+			op.bytesIn(3);
+			assertEquals(1L, metrics.snapshot().get("gateway.readAllBytes").get("in_flight"));
+			op.ok();
+		}
+
+		Map<String, Number> values = metrics.snapshot().get("gateway.readAllBytes");
+		assertEquals(10L, values.get("bytes_out"));
+		assertEquals(3L, values.get("bytes_in"));
+		assertTrue(metrics.prometheus().contains("hdfs_lmdc_calls{op=\"gateway.readAllBytes\"} 1\n"));
+	}
+
+	@Test
+	void resetClearsEveryOperation() {
+		try (HadoopMetrics.Operation op = metrics.start("hdfs.open")) {
+			op.ok();
+		}
+
+		metrics.reset();
+
+		assertTrue(metrics.snapshot().isEmpty());
+	}
+}
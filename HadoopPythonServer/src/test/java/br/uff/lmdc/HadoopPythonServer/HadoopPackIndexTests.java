@@ -0,0 +1,73 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HadoopPackIndexTests {
+
+	private static HadoopPackIndex roundTrip(HadoopPackIndex index) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		index.write(output);
+		return HadoopPackIndex.read(new ByteArrayInputStream(output.toByteArray()));
+	}
+
+	@Test
+	void readsBackWhatWasWritten() throws IOException {
+		HadoopPackIndex index = new HadoopPackIndex("c.pack.data");
+		index.add("a", 0, 3, 11);
+		index.add("dir/ção", 3, 5, -7);
+
+		HadoopPackIndex read = roundTrip(index);
+
+		assertEquals("c.pack.data", read.getDataName());
+		assertArrayEquals(new String[]{"a", "dir/ção"}, read.getNames());
+		HadoopPackIndex.Member member = read.get("dir/ção");
+		assertEquals(3, member.offset);
+		assertEquals(5, member.length);
+		assertEquals(-7, member.crc);
+		assertNull(read.get("missing"));
+	}
+
+	@Test
+	void aRepeatedNameReplacesTheMemberInPlace() throws IOException {
+		HadoopPackIndex index = new HadoopPackIndex("c.pack.data");
+		index.add("a", 0, 1, 1);
+		index.add("b", 1, 1, 2);
+		index.add("a", 2, 4, 3);
+
+		HadoopPackIndex read = roundTrip(index);
+
+		assertArrayEquals(new String[]{"a", "b"}, read.getNames());
+		assertEquals(2, read.get("a").offset);
+	}
+
+	@Test
+	void anEmptyIndexHasNoMembers() throws IOException {
+		assertEquals(0, roundTrip(new HadoopPackIndex("c.pack.data")).size());
+	}
+
+	@Test
+	void rejectsAnotherFormat() {
+		assertThrows(IOException.class, () -> HadoopPackIndex.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4})));
+	}
+
+	@Test
+	void rejectsATruncatedRecord() throws IOException {
+		HadoopPackIndex index = new HadoopPackIndex("c.pack.data");
+		index.add("a", 0, 1, 1);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		index.write(output);
+		byte[] truncated = Arrays.copyOf(output.toByteArray(), output.size() - 2);
+
+		assertThrows(IOException.class, () -> HadoopPackIndex.read(new ByteArrayInputStream(truncated)));
+	}
+}
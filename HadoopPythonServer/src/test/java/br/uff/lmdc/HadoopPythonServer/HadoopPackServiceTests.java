@@ -0,0 +1,157 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopPackServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopConfigurationProperties configuration;
+	private HadoopPackService packService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		configuration = new HadoopConfigurationProperties();
+		configuration.getMetadataCache().setEnabled(true);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		packService = new HadoopPackService(hdfs, configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		packService.onDestroy();
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void pack(String container, String... names) throws Throwable {
+		String session = packService.open(container);
+		for (String name : names) {
+			packService.add(session, name, bytes(name + "-content"));
+		}
+		packService.close(session);
+	}
+
+	private long filesIn(Path path) throws IOException {
+		try (Stream<Path> files = Files.list(path)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	void readsTheMembersOfAContainer() throws Throwable {
+		String container = directory.resolve("c.pack").toString();
+		pack(container, "a", "b");
+
+		assertArrayEquals(new String[]{"a", "b"}, packService.list(container));
+		assertArrayEquals(bytes("b-content"), packService.read(container, "b"));
+		HadoopPackedBuffer batch = packService.readMany(container, new String[]{"a", "missing"});
+		assertArrayEquals(new byte[]{HadoopPackedBuffer.OK, HadoopPackedBuffer.MISSING}, batch.getStatus());
+		assertEquals(2, filesIn(directory));
+	}
+
+	@Test
+	void reservesTheIndexSizesBeforeReading() throws Throwable {
+		String container = directory.resolve("c.pack").toString();
+		pack(container, "a", "bb");
+		List<Long> reserved = new ArrayList<>();
+
+		packService.read(container, "bb", reserved::add);
+		packService.readMany(container, new String[]{"a", "bb", "missing"}, reserved::add);
+
+		assertEquals(Arrays.asList(10L, 19L), reserved);
+	}
+
+	@Test
+	void theOldContainerStaysReadableUntilTheNewOneIsClosed() throws Throwable {
+		String container = directory.resolve("c.pack").toString();
+		pack(container, "a");
+		assertArrayEquals(bytes("a-content"), packService.read(container, "a"));
+
+		String session = packService.open(container);
+		packService.add(session, "new-member", bytes("new"));
+		assertArrayEquals(new String[]{"a"}, packService.list(container));
+
+		packService.close(session);
+		assertArrayEquals(new String[]{"new-member"}, packService.list(container));
+		assertArrayEquals(bytes("new"), packService.read(container, "new-member"));
+		assertEquals(2, filesIn(directory));
+	}
+
+	@Test
+	void anUnfinishedWriterLeavesThePreviousContainer() throws Throwable {
+		String container = directory.resolve("c.pack").toString();
+		pack(container, "a");
+
+		String session = packService.open(container);
+		packService.add(session, "b", bytes("b"));
+		packService.onDestroy();
+
+		assertArrayEquals(new String[]{"a"}, packService.list(container));
+		assertEquals(2, filesIn(directory));
+	}
+
+	@Test
+	void evictedContainersCanStillBeReadAgain() throws Throwable {
+		configuration.getPack().setMaxCachedContainers(1);
+		String first = directory.resolve("1.pack").toString();
+		String second = directory.resolve("2.pack").toString();
+		pack(first, "a");
+		pack(second, "b");
+
+		assertArrayEquals(bytes("a-content"), packService.read(first, "a"));
+		assertArrayEquals(bytes("b-content"), packService.read(second, "b"));
+		assertArrayEquals(bytes("a-content"), packService.read(first, "a"));
+	}
+
+	@Test
+	void anotherServerReopensAContainerReplacedUnderIt() throws Throwable {
+		String container = directory.resolve("c.pack").toString();
+		pack(container, "a");
+		HadoopHDFSService otherHdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		otherHdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		HadoopPackService other = new HadoopPackService(otherHdfs, configuration);
+		try {
+			assertArrayEquals(bytes("a-content"), other.read(container, "a"));
+
+			pack(container, "b");
+
+			assertArrayEquals(bytes("b-content"), other.read(container, "b"));
+			assertEquals(2, filesIn(directory));
+		} finally {
+			other.onDestroy();
+		}
+	}
+
+	@Test
+	void theIndexIsTheOnlyFileAtTheContainerPath() throws Throwable {
+		String container = directory.resolve("c.pack").toString();
+		pack(container, "a");
+
+		assertFalse(Files.exists(directory.resolve("c.pack")));
+		assertTrue(Files.exists(directory.resolve("c.pack" + HadoopPackIndex.SUFFIX)));
+	}
+}
@@ -0,0 +1,41 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HadoopPathsTests {
+
+	@Test
+	void joinsWithASingleSlash() {
+		assertEquals("/a/b", HadoopPaths.join("/a", "b"));
+		assertEquals("/a/b", HadoopPaths.join("/a/", "b"));
+		assertEquals("/b", HadoopPaths.join("/", "b"));
+	}
+
+	@Test
+	void theParentOfATopLevelPathIsTheRoot() {
+		assertEquals("/a/b", HadoopPaths.parent("/a/b/c"));
+		assertEquals("/", HadoopPaths.parent("/a"));
+		assertEquals("/", HadoopPaths.parent("a"));
+	}
+
+	@Test
+	void relativizesOnlyPathsBelowTheRoot() {
+		assertEquals("b/c", HadoopPaths.relativize("/a", "/a/b/c"));
+		assertEquals("b", HadoopPaths.relativize("/a/", "/a/b"));
+		assertNull(HadoopPaths.relativize("/a", "/ab/c"));
+		assertNull(HadoopPaths.relativize("/a", "/a"));
+	}
+
+	@Test
+	void leavesDropTheAncestorsOfOtherPaths() {
+		assertEquals(Arrays.asList("/a/b/c", "/d", "/a/e"),
+				new ArrayList<>(HadoopPaths.leaves(Arrays.asList("/a", "/a/b/", "/a/b/c", "/d", "/a/e"))));
+		assertEquals(Arrays.asList("/"), new ArrayList<>(HadoopPaths.leaves(Arrays.asList("/"))));
+	}
+}
@@ -0,0 +1,142 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HadoopReadCacheServiceTests {
+
+	@TempDir
+	java.nio.file.Path directory;
+
+	private HadoopHDFSService hdfs;
+	private HadoopTransferService transfer;
+	private HadoopZeroCopyService zeroCopy;
+	private HadoopConfigurationProperties configuration;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		hdfs = mock(HadoopHDFSService.class);
+		transfer = mock(HadoopTransferService.class);
+		zeroCopy = mock(HadoopZeroCopyService.class);
+		when(zeroCopy.isEnabled()).thenReturn(true);
+		when(zeroCopy.readAllBytes(anyString(), any())).thenAnswer(invocation -> content(invocation.getArgument(0)));
+		doAnswer(invocation -> {
+			Files.write(Paths.get((String) invocation.getArgument(1)), content(invocation.getArgument(0)));
+			return null;
+		}).when(transfer).download(anyString(), anyString());
+		configuration = new HadoopConfigurationProperties();
+		configuration.getCache().setEnabled(true);
+		configuration.getCache().setDiskDirectory(directory.toString());
+	}
+
+	private static byte[] content(String path) {
+		return (path + "-content").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void file(String path, long modificationTime) throws IOException {
+		when(hdfs.fileInfoUncached(path)).thenReturn(new FileStatus(content(path).length, false, 1, 128, modificationTime, new Path(path)));
+	}
+
+	private HadoopReadCacheService service() throws IOException {
+		HadoopReadCacheService service = new HadoopReadCacheService(hdfs, transfer, mock(HadoopHedgedReadService.class), zeroCopy, configuration);
+		service.onInit();
+		return service;
+	}
+
+	@Test
+	void startupOnlyRemovesItsOwnEntries() throws IOException {
+		java.nio.file.Path unrelated = Files.write(directory.resolve("notes.txt"), new byte[]{1});
+		java.nio.file.Path cacheDirectory = Files.createDirectories(directory.resolve(HadoopReadCacheService.DISK_SUBDIRECTORY));
+		java.nio.file.Path entry = Files.write(cacheDirectory.resolve("0123456789abcdef0123456789abcdef01234567"), new byte[]{1});
+		java.nio.file.Path partial = Files.write(cacheDirectory.resolve("0123456789abcdef0123456789abcdef01234567.part"), new byte[]{1});
+		java.nio.file.Path foreign = Files.write(cacheDirectory.resolve("keep.me"), new byte[]{1});
+
+		service();
+
+		assertTrue(Files.exists(unrelated));
+		assertTrue(Files.exists(foreign));
+		assertFalse(Files.exists(entry));
+		assertFalse(Files.exists(partial));
+	}
+
+	@Test
+	void servesRepeatedReadsFromMemoryUntilTheFileChanges() throws IOException {
+		HadoopReadCacheService service = service();
+		file("/a", 1);
+
+		assertArrayEquals(content("/a"), service.readAllBytes("/a"));
+		assertArrayEquals(content("/a"), service.readAllBytes("/a"));
+		verify(zeroCopy, times(1)).readAllBytes(eq("/a"), any());
+		assertEquals(1L, service.stats().get("memoryHits"));
+
+		file("/a", 2);
+		service.readAllBytes("/a");
+		verify(zeroCopy, times(2)).readAllBytes(eq("/a"), any());
+	}
+
+	@Test
+	void filesLargerThanTheMemoryBudgetAreNotCached() throws IOException {
+		configuration.getCache().setMemoryMaxBytes(4);
+		HadoopReadCacheService service = service();
+		file("/a", 1);
+
+		service.readAllBytes("/a");
+		service.readAllBytes("/a");
+
+		verify(zeroCopy, times(2)).readAllBytes(eq("/a"), any());
+		assertEquals(0L, service.stats().get("memoryEntries"));
+	}
+
+	@Test
+	void diskEvictionRemovesTheLeastRecentlyUsedFile() throws IOException {
+		configuration.getCache().setMemoryMaxFileSize(0);
+		configuration.getCache().setDiskMaxBytes(content("/a").length + 1);
+		HadoopReadCacheService service = service();
+		file("/a", 1);
+		file("/b", 1);
+
+		assertArrayEquals(content("/a"), service.readAllBytes("/a"));
+		assertArrayEquals(content("/b"), service.readAllBytes("/b"));
+
+		assertEquals(1L, service.stats().get("diskEntries"));
+		try (Stream<java.nio.file.Path> files = Files.list(service.diskDirectory())) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	void filesLargerThanTheDiskBudgetAreDownloadedDirectly() throws IOException {
+		configuration.getCache().setMemoryMaxFileSize(0);
+		configuration.getCache().setDiskMaxBytes(4);
+		HadoopReadCacheService service = service();
+		file("/a", 1);
+		String local = directory.resolve("a.local").toString();
+
+		service.download("/a", local);
+
+		verify(transfer).download("/a", local);
+		assertEquals(0L, service.stats().get("diskEntries"));
+	}
+}
@@ -0,0 +1,101 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopReadHandleServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopConfigurationProperties configuration;
+	private HadoopReadHandleService readHandleService;
+	private byte[] content;
+	private String file;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		configuration = new HadoopConfigurationProperties();
+		configuration.getRead().setChunkSize(1000);
+		configuration.getRead().setMaxChunkSize(4000);
+		configuration.getRead().setHandleIdleTimeoutMillis(50);
+		configuration.getRead().setMaxOpenHandles(2);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		readHandleService = new HadoopReadHandleService(hdfs, new HadoopCompressionService(configuration), configuration);
+		content = new byte[2500];
+		new Random(1).nextBytes(content);
+		file = Files.write(directory.resolve("a"), content).toString();
+	}
+
+	@AfterEach
+	void tearDown() {
+		readHandleService.onDestroy();
+	}
+
+	@Test
+	void readsAFileInChunksUntilAnEmptyOne() throws Throwable {
+		String handle = readHandleService.open(file);
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		byte[] chunk;
+		int chunks = 0;
+		while ((chunk = readHandleService.readChunk(handle, 0)).length > 0) {
+			assertTrue(chunk.length <= 1000);
+			read.write(chunk);
+			chunks++;
+		}
+
+		assertEquals(3, chunks);
+		assertArrayEquals(content, read.toByteArray());
+		assertTrue(readHandleService.close(handle));
+		assertFalse(readHandleService.close(handle));
+	}
+
+	@Test
+	void rejectsChunksOverTheLimit() throws Throwable {
+		String handle = readHandleService.open(file);
+
+		assertThrows(HadoopException.class, () -> readHandleService.readChunk(handle, 4001));
+		assertEquals(2500, readHandleService.readChunk(handle, 4000).length);
+		assertEquals(1000, readHandleService.chunkSize(0));
+		assertEquals(4000, readHandleService.chunkSize(10_000));
+	}
+
+	@Test
+	void readsARangeShortenedAtTheEndOfTheFile() throws Throwable {
+		assertArrayEquals(Arrays.copyOfRange(content, 100, 600), readHandleService.readRange(file, 100, 500));
+		assertArrayEquals(Arrays.copyOfRange(content, 2000, 2500), readHandleService.readRange(file, 2000, 1000));
+		assertEquals(0, readHandleService.readRange(file, 3000, 10).length);
+	}
+
+	@Test
+	void idleHandlesExpireAndFreeTheirSlots() throws Throwable {
+		String idle = readHandleService.open(file);
+		readHandleService.open(file);
+		assertThrows(HadoopException.class, () -> readHandleService.open(file));
+
+		Thread.sleep(100);
+		readHandleService.expireIdleHandles();
+
+		assertEquals(0, readHandleService.openHandles());
+		assertThrows(HadoopException.class, () -> readHandleService.readChunk(idle, 0));
+		readHandleService.open(file);
+	}
+}
@@ -0,0 +1,77 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HadoopSharedMemoryServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private Path segments;
+	private HadoopConfigurationProperties configuration;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		segments = Files.createDirectory(directory.resolve("shm"));
+		configuration = new HadoopConfigurationProperties();
+		configuration.getSharedMemory().setEnabled(true);
+		configuration.getSharedMemory().setDirectory(segments.toString());
+	}
+
+	private long segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(segments)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	void copiesTheFileIntoASegmentRemovedOnRelease() throws Throwable {
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		HadoopSharedMemoryService service = new HadoopSharedMemoryService(hdfs, configuration);
+		byte[] content = new byte[200_000];
+		new Random(1).nextBytes(content);
+		Path file = Files.write(directory.resolve("a"), content);
+		long[] reserved = new long[1];
+
+		HadoopSharedSegment segment = service.readToSegment(file.toString(), size -> reserved[0] = size);
+
+		assertEquals(200_000, reserved[0]);
+		assertEquals(200_000, segment.getLength());
+		assertArrayEquals(content, Files.readAllBytes(Path.of(segment.getPath())));
+		assertTrue(service.release(segment.getName()));
+		assertFalse(service.release(segment.getName()));
+		assertEquals(0, segmentFiles());
+	}
+
+	@Test
+	void aFailureOtherThanIoLeavesNoSegmentBehind() throws Throwable {
+		HadoopHDFSService hdfs = mock(HadoopHDFSService.class);
+		when(hdfs.fileInfoUncached(any())).thenReturn(new FileStatus(10, false, 1, 1, 0, new org.apache.hadoop.fs.Path("/a")));
+		when(hdfs.readFile(any())).thenThrow(new IllegalStateException("falha"));
+		HadoopSharedMemoryService service = new HadoopSharedMemoryService(hdfs, configuration);
+
+		assertThrows(IllegalStateException.class, () -> service.readToSegment("/a", HadoopAdmissionControl.NO_RESERVATION));
+		assertEquals(0, segmentFiles());
+	}
+}
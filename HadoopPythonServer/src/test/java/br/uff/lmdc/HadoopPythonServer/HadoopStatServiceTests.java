@@ -0,0 +1,80 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HadoopStatServiceTests {
+
+	private HadoopHDFSService hdfs;
+	private HadoopStatService statService;
+
+	@BeforeEach
+	void setUp() {
+		hdfs = mock(HadoopHDFSService.class);
+		statService = new HadoopStatService(hdfs, new HadoopConfigurationProperties());
+	}
+
+	@AfterEach
+	void tearDown() {
+		statService.onDestroy();
+	}
+
+	private static RemoteIterator<FileStatus> iterator(FileStatus... statuses) {
+		Iterator<FileStatus> entries = Arrays.asList(statuses).iterator();
+		return new RemoteIterator<FileStatus>() {
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public FileStatus next() {
+				return entries.next();
+			}
+		};
+	}
+
+	@Test
+	void lsDetailedIteratesTheDirectory() throws IOException {
+		when(hdfs.listStatusIterator("/d")).thenReturn(iterator(
+				new FileStatus(5, false, 3, 128, 10, new Path("/d/a")),
+				new FileStatus(0, true, 0, 0, 20, new Path("/d/b"))));
+
+		HadoopStatBatch batch = statService.lsDetailed("/d");
+
+		assertEquals(2, batch.getCount());
+		assertArrayEquals("a\0b".getBytes(StandardCharsets.UTF_8), batch.getNames());
+		assertArrayEquals(new long[]{5, 0}, batch.getLengths());
+		assertArrayEquals(new byte[]{HadoopStatBatch.FILE, HadoopStatBatch.DIRECTORY}, batch.getKinds());
+		verify(hdfs, never()).showDirectory(anyString());
+	}
+
+	@Test
+	void statManyFlagsMissingPaths() throws IOException {
+		when(hdfs.fileInfo("/a")).thenReturn(new FileStatus(7, false, 1, 128, 1, new Path("/a")));
+		when(hdfs.fileInfo("/missing")).thenThrow(new FileNotFoundException("/missing"));
+
+		HadoopStatBatch batch = statService.statMany(new String[]{"/a", "/missing"});
+
+		assertArrayEquals(new byte[]{HadoopStatBatch.FILE, HadoopStatBatch.MISSING}, batch.getKinds());
+		assertEquals(7, batch.getLengths()[0]);
+	}
+}
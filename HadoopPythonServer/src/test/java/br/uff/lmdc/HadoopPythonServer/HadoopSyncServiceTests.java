@@ -0,0 +1,187 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.CompositeCrcFileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.util.DataChecksum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HadoopSyncServiceTests {
+
+	private static final long LOCAL_TIME = 1_000_000;
+	private static final long REMOTE_TIME = 2_000_000;
+
+	@TempDir
+	Path directory;
+
+	private HadoopHDFSService hdfs;
+	private HadoopBulkTransferService bulk;
+	private HadoopSyncService syncService;
+	private Consumer<String[]> duringTransfer = sources -> {
+	};
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getSync().setParallelism(2);
+		hdfs = mock(HadoopHDFSService.class);
+		bulk = mock(HadoopBulkTransferService.class);
+		when(bulk.uploadMany(any(), any())).thenAnswer(invocation -> transferred(invocation.getArgument(0), invocation.getArgument(1)));
+		when(bulk.downloadMany(any(), any())).thenAnswer(invocation -> transferred(invocation.getArgument(0), invocation.getArgument(1)));
+		syncService = new HadoopSyncService(hdfs, bulk, configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		syncService.onDestroy();
+	}
+
+	private HadoopTransferReport transferred(String[] sources, String[] targets) {
+		duringTransfer.accept(sources);
+		HadoopTransferReport report = new HadoopTransferReport(sources, targets);
+		for (int i = 0; i < sources.length; i++) {
+			report.succeeded(i, 1);
+		}
+		return report;
+	}
+
+	private Path local(String name, String content) throws IOException {
+		Path file = directory.resolve("local").resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(LOCAL_TIME));
+		return file;
+	}
+
+	private static FileStatus status(String path, long length) {
+		return new FileStatus(length, false, 1, 0, REMOTE_TIME, new org.apache.hadoop.fs.Path(path));
+	}
+
+	private static CompositeCrcFileChecksum checksum(String content) {
+		CRC32C crc = new CRC32C();
+		crc.update(content.getBytes(StandardCharsets.UTF_8));
+		return new CompositeCrcFileChecksum((int) crc.getValue(), DataChecksum.Type.CRC32C, 512);
+	}
+
+	private static String manifest(long length, long localTime) {
+		return length + "," + localTime + "," + REMOTE_TIME;
+	}
+
+	@Test
+	void uploadsOnlyTheFilesThatChanged() throws Throwable {
+		local("new", "new");
+		local("grown", "grown");
+		local("same", "same");
+		local("crc", "crc");
+		local("edited", "edited");
+		when(hdfs.fileInfoUncached("/remote/new")).thenThrow(new FileNotFoundException()).thenReturn(status("/remote/new", 3));
+		when(hdfs.fileInfoUncached("/remote/grown")).thenReturn(status("/remote/grown", 2), status("/remote/grown", 5));
+		when(hdfs.fileInfoUncached("/remote/same")).thenReturn(status("/remote/same", 4));
+		when(hdfs.fileInfoUncached("/remote/crc")).thenReturn(status("/remote/crc", 3));
+		when(hdfs.fileInfoUncached("/remote/edited")).thenReturn(status("/remote/edited", 6));
+		when(hdfs.getExtendedAttribute("/remote/same", HadoopSyncService.MANIFEST_ATTRIBUTE)).thenReturn(manifest(4, LOCAL_TIME).getBytes(StandardCharsets.UTF_8));
+		when(hdfs.getFileChecksum("/remote/crc")).thenReturn(checksum("crc"));
+		when(hdfs.getFileChecksum("/remote/edited")).thenReturn(checksum("other!"));
+
+		HadoopSyncReport report = syncService.syncToHdfs(directory.resolve("local").toString(), "/remote");
+
+		assertEquals(5, report.getScanned());
+		assertEquals(1, report.getUnchangedByManifest());
+		assertEquals(1, report.getUnchangedByChecksum());
+		assertEquals(2, report.getChecksummed());
+		Set<String> uploaded = new TreeSet<>(Arrays.asList(report.getTransfers().getTargets()));
+		assertEquals(Set.of("/remote/edited", "/remote/grown", "/remote/new"), uploaded);
+		verify(hdfs).setExtendedAttributes("/remote/crc", HadoopSyncService.MANIFEST_ATTRIBUTE, manifest(3, LOCAL_TIME));
+		verify(hdfs).setExtendedAttributes("/remote/new", HadoopSyncService.MANIFEST_ATTRIBUTE, manifest(3, LOCAL_TIME));
+		verify(hdfs, never()).setExtendedAttributes(eq("/remote/same"), anyString(), anyString());
+		verify(hdfs, never()).fileInfo(anyString());
+	}
+
+	@Test
+	void theManifestHoldsTheSourceStateSeenBeforeTheCopy() throws Throwable {
+		Path touched = local("touched", "abc");
+		Path appended = local("appended", "abc");
+		when(hdfs.fileInfoUncached("/remote/touched")).thenThrow(new FileNotFoundException()).thenReturn(status("/remote/touched", 3));
+		when(hdfs.fileInfoUncached("/remote/appended")).thenThrow(new FileNotFoundException()).thenReturn(status("/remote/appended", 6));
+		duringTransfer = sources -> {
+			try {
+				Files.setLastModifiedTime(touched, FileTime.fromMillis(LOCAL_TIME + 5000));
+				Files.write(appended, "def".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+
+		syncService.syncToHdfs(directory.resolve("local").toString(), "/remote");
+
+		// A data anterior à cópia faz o próximo sync conferir de novo o arquivo alterado no meio dela
+		verify(hdfs).setExtendedAttributes("/remote/touched", HadoopSyncService.MANIFEST_ATTRIBUTE, manifest(3, LOCAL_TIME));
+		verify(hdfs, never()).setExtendedAttributes(eq("/remote/appended"), anyString(), anyString());
+	}
+
+	@Test
+	void downloadsTheMissingFilesAndSkipsTheRecordedOnes() throws Throwable {
+		Path same = local("same", "same");
+		List<LocatedFileStatus> listing = List.of(
+				new LocatedFileStatus(status("/remote/missing", 7), null),
+				new LocatedFileStatus(status("/remote/same", 4), null));
+		Iterator<LocatedFileStatus> iterator = listing.iterator();
+		when(hdfs.qualifiedPath("/remote")).thenReturn("/remote");
+		when(hdfs.listFilesRecursive("/remote")).thenReturn(new RemoteIterator<LocatedFileStatus>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public LocatedFileStatus next() {
+				return iterator.next();
+			}
+		});
+		when(hdfs.getExtendedAttribute("/remote/same", HadoopSyncService.MANIFEST_ATTRIBUTE)).thenReturn(manifest(4, LOCAL_TIME).getBytes(StandardCharsets.UTF_8));
+		Path downloaded = same.resolveSibling("missing");
+		duringTransfer = sources -> {
+			try {
+				Files.write(downloaded, "missing".getBytes(StandardCharsets.UTF_8));
+				Files.setLastModifiedTime(downloaded, FileTime.fromMillis(LOCAL_TIME + 1));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+
+		HadoopSyncReport report = syncService.syncFromHdfs("/remote", same.getParent().toString());
+
+		assertEquals(List.of("/remote/missing"), Arrays.asList(report.getTransfers().getSources()));
+		assertEquals(1, report.getUnchangedByManifest());
+		verify(hdfs).setExtendedAttributes("/remote/missing", HadoopSyncService.MANIFEST_ATTRIBUTE, manifest(7, LOCAL_TIME + 1));
+		verify(hdfs, never()).fileInfoUncached(anyString());
+	}
+}
@@ -0,0 +1,87 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HadoopTableFilterTests {
+
+	private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+			"message row { required int32 year; optional binary country (UTF8); optional double score; optional boolean active; }");
+
+	private static boolean matches(String filter, String... cells) throws IOException {
+		Map<String, String> row = new HashMap<>();
+		for (int i = 0; i < cells.length; i += 2) {
+			row.put(cells[i], cells[i + 1]);
+		}
+		return HadoopTableFilter.parse(filter).matches(row::get);
+	}
+
+	@Test
+	void anEmptyFilterMatchesEverything() throws IOException {
+		assertTrue(HadoopTableFilter.parse(null).isEmpty());
+		assertTrue(HadoopTableFilter.parse("  ").isEmpty());
+		assertNull(HadoopTableFilter.parse("").toPredicate(SCHEMA));
+		assertTrue(matches(null));
+	}
+
+	@Test
+	void parsesConditionsJoinedByAnd() throws IOException {
+		HadoopTableFilter filter = HadoopTableFilter.parse("year >= 2019 AND country = 'it''s' and score != null");
+
+		assertEquals(new LinkedHashSet<>(Arrays.asList("year", "country", "score")), filter.columns());
+		assertEquals(FilterApi.and(FilterApi.and(
+				FilterApi.gtEq(FilterApi.intColumn("year"), 2019),
+				FilterApi.eq(FilterApi.binaryColumn("country"), Binary.fromString("it's"))),
+				FilterApi.notEq(FilterApi.doubleColumn("score"), null)),
+				filter.toPredicate(SCHEMA));
+	}
+
+	@Test
+	void rejectsMalformedFilters() {
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("year"));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("year >"));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("year > 1 or year < 0"));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("country == 'BR"));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("year < null"));
+	}
+
+	@Test
+	void rejectsLiteralsAndColumnsThatDoNotFitTheSchema() {
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("year == abc").toPredicate(SCHEMA));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("missing == 1").toPredicate(SCHEMA));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("active > true").toPredicate(SCHEMA));
+		assertThrows(IOException.class, () -> HadoopTableFilter.parse("active == yes").toPredicate(SCHEMA));
+	}
+
+	@Test
+	void comparesCsvCellsNumericallyOrAsText() throws IOException {
+		assertTrue(matches("year > 9", "year", "10"));
+		assertFalse(matches("year > 9", "year", "abc"));
+		assertTrue(matches("year > '9'", "year", "a"));
+		assertFalse(matches("year > '9'", "year", "10"));
+		assertTrue(matches("country == 'BR' and year <= 2020", "country", "BR", "year", "2020.0"));
+	}
+
+	@Test
+	void nullMatchesEmptyCells() throws IOException {
+		assertTrue(matches("score == null"));
+		assertFalse(matches("score != null"));
+		assertTrue(matches("score != null", "score", "1"));
+		assertFalse(matches("score > 0"));
+	}
+}
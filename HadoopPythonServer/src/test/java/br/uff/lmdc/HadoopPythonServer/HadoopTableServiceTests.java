@@ -0,0 +1,107 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HadoopTableServiceTests {
+
+	private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+			"message row { required int32 id; optional binary name (UTF8); }");
+
+	@TempDir
+	Path directory;
+
+	private HadoopTableService tableService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getMetadataCache().setEnabled(true);
+		HadoopHDFSService hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		tableService = new HadoopTableService(hdfs, configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		tableService.onDestroy();
+	}
+
+	private String parquet(String name, int rows) throws IOException {
+		String file = directory.resolve(name).toString();
+		SimpleGroupFactory groups = new SimpleGroupFactory(SCHEMA);
+		// Row groups pequenos: o arquivo fica com vários, para o filtro poder descartar os primeiros
+		try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new org.apache.hadoop.fs.Path(file))
+				.withConf(new Configuration()).withType(SCHEMA).withRowGroupSize(1024).withPageSize(512)
+				.withWriteMode(ParquetFileWriter.Mode.OVERWRITE).build()) {
+			for (int i = 0; i < rows; i++) {
+				writer.write(groups.newGroup().append("id", i).append("name", "row-" + i));
+			}
+		}
+		return file;
+	}
+
+	private List<Integer> readIds(String file, String filter) throws Throwable {
+		String cursor = tableService.open(file, new String[]{"id"}, filter, 64);
+		List<Integer> ids = new ArrayList<>();
+		HadoopTableBatch batch;
+		while ((batch = tableService.next(cursor)).getRows() > 0) {
+			ByteBuffer values = ByteBuffer.wrap(batch.getData(), batch.getValuesOffsets()[0], batch.getValuesLengths()[0]).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < batch.getRows(); i++) {
+				ids.add(values.getInt());
+			}
+		}
+		return ids;
+	}
+
+	@Test
+	void readsEveryRowWithoutAFilter() throws Throwable {
+		String file = parquet("a.parquet", 1000);
+
+		List<Integer> ids = readIds(file, null);
+
+		assertEquals(1000, ids.size());
+		assertEquals(0, ids.get(0));
+		assertEquals(999, ids.get(999));
+	}
+
+	@Test
+	void filtersRowsAcrossRowGroups() throws Throwable {
+		String file = parquet("b.parquet", 1000);
+
+		List<Integer> ids = readIds(file, "id >= 990");
+
+		assertArrayEquals(new Integer[]{990, 991, 992, 993, 994, 995, 996, 997, 998, 999}, ids.toArray(new Integer[0]));
+	}
+
+	@Test
+	void readsAFileRewrittenAfterItsSizeWasCached() throws Throwable {
+		String file = parquet("c.parquet", 10);
+		assertEquals(10, readIds(file, null).size());
+
+		parquet("c.parquet", 1000);
+
+		assertEquals(1000, readIds(file, null).size());
+	}
+}
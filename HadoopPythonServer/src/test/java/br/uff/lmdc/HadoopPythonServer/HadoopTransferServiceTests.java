@@ -0,0 +1,108 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class HadoopTransferServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopConfigurationProperties configuration;
+	private HadoopHDFSService hdfs;
+	private HadoopTransferService transferService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		configuration = new HadoopConfigurationProperties();
+		configuration.getTransfer().setParallelThreshold(1);
+		configuration.getTransfer().setPartSize(1000);
+		configuration.getTransfer().setBufferSize(300);
+		configuration.getTransfer().setConcurrency(3);
+		hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		transferService = new HadoopTransferService(hdfs, mock(HadoopHedgedReadService.class), mock(HadoopZeroCopyService.class), configuration);
+	}
+
+	@AfterEach
+	void tearDown() {
+		transferService.onDestroy();
+	}
+
+	private Path file(String name, int length) throws IOException {
+		byte[] content = new byte[length];
+		new Random(length).nextBytes(content);
+		return Files.write(directory.resolve(name), content);
+	}
+
+	@Test
+	void splitsTheFileIntoPartsCoveringEveryByte() throws IOException {
+		Path source = file("a", 10_500);
+		FileStatus status = hdfs.fileInfoUncached(source.toString());
+
+		List<long[]> parts = transferService.splitParts(status);
+
+		assertEquals(11, parts.size());
+		long next = 0;
+		for (long[] part : parts) {
+			assertEquals(next, part[0]);
+			next += part[1];
+		}
+		assertEquals(10_500, next);
+		assertEquals(500, parts.get(10)[1]);
+	}
+
+	@Test
+	void reassemblesThePartsReadConcurrently() throws IOException {
+		Path source = file("a", 10_500);
+		Path target = directory.resolve("b");
+		Files.write(target, new byte[20_000]);
+		AtomicLong progress = new AtomicLong();
+
+		assertEquals(10_500, transferService.download(source.toString(), target.toString(), progress::addAndGet));
+
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+		assertEquals(10_500, progress.get());
+	}
+
+	@Test
+	void smallFilesAreCopiedSequentially() throws IOException {
+		configuration.getTransfer().setParallelThreshold(1_000_000);
+		Path source = file("a", 2_000);
+		Path target = directory.resolve("b");
+
+		assertEquals(2_000, transferService.download(source.toString(), target.toString()));
+
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+	}
+
+	@Test
+	void aFailedPartRemovesThePartialFile() throws IOException {
+		Path source = file("a", 10_500);
+		FileStatus status = hdfs.fileInfoUncached(source.toString());
+		Files.delete(source);
+		Path target = directory.resolve("b");
+
+		assertThrows(IOException.class, () -> transferService.downloadParallel(status, target.toString(), HadoopTransferService.NO_PROGRESS));
+
+		assertFalse(Files.exists(target));
+	}
+}
@@ -0,0 +1,117 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HadoopWalkServiceTests {
+
+	private HadoopHDFSService hdfs;
+	private HadoopConfigurationProperties configuration;
+	private HadoopWalkService walkService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		hdfs = mock(HadoopHDFSService.class);
+		configuration = new HadoopConfigurationProperties();
+		// /r: a/ b/ f; /r/a: c/
+		when(hdfs.showDirectory("/r")).thenReturn(new FileStatus[]{dir("/r/a"), dir("/r/b"), file("/r/f")});
+		when(hdfs.showDirectory("/r/a")).thenReturn(new FileStatus[]{dir("/r/a/c")});
+		when(hdfs.showDirectory("/r/a/c")).thenReturn(new FileStatus[0]);
+		when(hdfs.showDirectory("/r/b")).thenReturn(new FileStatus[0]);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (walkService != null) {
+			walkService.onDestroy();
+		}
+	}
+
+	private static FileStatus dir(String path) {
+		return new FileStatus(0, true, 0, 0, 0, new Path(path));
+	}
+
+	private static FileStatus file(String path) {
+		return new FileStatus(1, false, 1, 128, 0, new Path(path));
+	}
+
+	private HadoopWalkService service(int pageSize) {
+		configuration.getWalk().setPageSize(pageSize);
+		walkService = new HadoopWalkService(hdfs, configuration);
+		return walkService;
+	}
+
+	private static List<String> paths(HadoopDirInfo[] page) {
+		List<String> paths = new ArrayList<>();
+		for (HadoopDirInfo info : page) {
+			paths.add(info.getPath());
+		}
+		return paths;
+	}
+
+	@Test
+	void walksDepthFirstInPages() throws Throwable {
+		HadoopWalkService walk = service(2);
+		String cursor = walk.open("/r", -1);
+
+		HadoopDirInfo[] first = walk.next(cursor);
+		assertEquals(Arrays.asList("/r", "/r/a"), paths(first));
+		assertArrayEquals(new String[]{"a", "b"}, first[0].getFolders());
+		assertArrayEquals(new String[]{"f"}, first[0].getFiles());
+		assertEquals(Arrays.asList("/r/a/c", "/r/b"), paths(walk.next(cursor)));
+		assertEquals(0, walk.next(cursor).length);
+		assertThrows(HadoopException.class, () -> walk.next(cursor));
+	}
+
+	@Test
+	void prunedSubtreesAreNotVisited() throws Throwable {
+		HadoopWalkService walk = service(1);
+		String cursor = walk.open("/r", -1);
+
+		assertEquals(Arrays.asList("/r"), paths(walk.next(cursor)));
+		assertEquals(1, walk.prune(cursor, new String[]{"/r/a"}));
+		assertEquals(Arrays.asList("/r/b"), paths(walk.next(cursor)));
+		assertEquals(0, walk.next(cursor).length);
+	}
+
+	@Test
+	void stopsAtMaxDepth() throws Throwable {
+		HadoopWalkService walk = service(10);
+		String cursor = walk.open("/r", 1);
+
+		assertEquals(Arrays.asList("/r", "/r/a", "/r/b"), paths(walk.next(cursor)));
+	}
+
+	@Test
+	void skipsDirectoriesRemovedDuringTheWalk() throws Throwable {
+		when(hdfs.showDirectory("/r/a")).thenThrow(new FileNotFoundException("/r/a"));
+		HadoopWalkService walk = service(10);
+		String cursor = walk.open("/r", -1);
+
+		assertEquals(Arrays.asList("/r", "/r/b"), paths(walk.next(cursor)));
+	}
+
+	@Test
+	void failsWhenTheRootCantBeListed() throws Throwable {
+		when(hdfs.showDirectory("/missing")).thenThrow(new FileNotFoundException("/missing"));
+		HadoopWalkService walk = service(10);
+		String cursor = walk.open("/missing", -1);
+
+		assertThrows(FileNotFoundException.class, () -> walk.next(cursor));
+	}
+}
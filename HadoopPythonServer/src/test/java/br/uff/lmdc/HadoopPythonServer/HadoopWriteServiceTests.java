@@ -0,0 +1,73 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HadoopWriteServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopHDFSService hdfs;
+	private HadoopWriteService writeService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getMetadataCache().setEnabled(true);
+		hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		writeService = new HadoopWriteService(hdfs, new HadoopCompressionService(configuration), configuration);
+	}
+
+	private String path(String name) {
+		return directory.resolve(name).toString();
+	}
+
+	@Test
+	void createWithoutOverwriteFailsEvenWhenTheCacheMissedTheFile() throws Throwable {
+		String file = path("a");
+		// O cache guarda que o arquivo não existe; outro processo o cria em seguida
+		assertFalse(hdfs.existsPath(file));
+		Files.write(directory.resolve("a"), new byte[]{1});
+
+		assertThrows(HadoopException.class, () -> writeService.writeBytes(file, new byte[]{2}, false));
+		assertArrayEquals(new byte[]{1}, Files.readAllBytes(directory.resolve("a")));
+	}
+
+	@Test
+	void appendCreatesAMissingFileAndAppendsToAnExistingOne() throws Throwable {
+		String file = path("b");
+
+		String first = writeService.open(file, false, true);
+		writeService.write(first, new byte[]{1, 2});
+		writeService.close(first);
+		String second = writeService.open(file, false, true);
+		writeService.write(second, new byte[]{3});
+		assertEquals(1L, writeService.close(second));
+
+		assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(directory.resolve("b")));
+	}
+
+	@Test
+	void overwriteReplacesTheFile() throws Throwable {
+		String file = path("c");
+		writeService.writeBytes(file, new byte[]{1, 2, 3}, true);
+
+		writeService.writeBytes(file, new byte[]{4}, true);
+
+		assertArrayEquals(new byte[]{4}, Files.readAllBytes(directory.resolve("c")));
+	}
+}
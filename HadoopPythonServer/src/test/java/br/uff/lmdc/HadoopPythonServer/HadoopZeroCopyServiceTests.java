@@ -0,0 +1,78 @@
+package br.uff.lmdc.HadoopPythonServer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HadoopZeroCopyServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private HadoopHDFSService hdfs;
+	private HadoopZeroCopyService zeroCopy;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		HadoopConfigurationProperties configuration = new HadoopConfigurationProperties();
+		configuration.getMetadataCache().setEnabled(true);
+		configuration.getZeroCopy().setBufferSize(4096);
+		hdfs = new HadoopHDFSService(configuration, new HadoopMetrics(configuration));
+		hdfs.setFs(FileSystem.getLocal(new Configuration()).getRaw());
+		zeroCopy = new HadoopZeroCopyService(hdfs, configuration);
+	}
+
+	private static byte[] random(int length) {
+		byte[] content = new byte[length];
+		new Random(length).nextBytes(content);
+		return content;
+	}
+
+	@Test
+	void readsTheWholeFileInBuffers() throws IOException {
+		byte[] content = random(10_000);
+		Path file = Files.write(directory.resolve("a"), content);
+
+		assertArrayEquals(content, zeroCopy.readAllBytes(file.toString(), HadoopTransferService.NO_PROGRESS));
+	}
+
+	@Test
+	void readsPastTheCachedSizeOfAFileThatGrew() throws IOException {
+		Path file = Files.write(directory.resolve("b"), random(100));
+		assertEquals(100, hdfs.fileInfo(file.toString()).getLen());
+		byte[] grown = random(20_000);
+		Files.write(file, grown);
+
+		assertArrayEquals(grown, zeroCopy.readAllBytes(file.toString(), HadoopTransferService.NO_PROGRESS));
+	}
+
+	@Test
+	void thePoolKeepsAtMostItsLimitOfDirectBuffers() {
+		HadoopZeroCopyService.BufferPool pool = new HadoopZeroCopyService.BufferPool(1024, 2);
+		ByteBuffer first = pool.getBuffer(true, 512);
+		ByteBuffer second = pool.getBuffer(true, 1024);
+		ByteBuffer third = pool.getBuffer(true, 1024);
+
+		pool.putBuffer(first);
+		pool.putBuffer(second);
+		pool.putBuffer(third);
+		pool.putBuffer(ByteBuffer.allocate(1024));
+
+		assertSame(first, pool.getBuffer(true, 1024));
+		assertSame(second, pool.getBuffer(true, 1024));
+		assertNotSame(third, pool.getBuffer(true, 1024));
+	}
+}
@@ -45,7 +45,7 @@ class HDFSWrapperBase(Generic[T]):
         pass
 
     @abc.abstractmethod
-    def walk(self, path):
+    def walk(self, path, max_depth: int = -1):
         pass
 
     def is_file(self, path):
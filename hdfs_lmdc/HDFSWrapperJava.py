@@ -1,13 +1,86 @@
+import atexit
 import io
+import mmap
 import os
+import struct
+import zlib
 from typing import Tuple, List
 from PIL import Image
-from py4j.java_gateway import JavaGateway
+from py4j.java_gateway import JavaGateway, GatewayParameters, JavaObject
 
 from hdfs_lmdc.HDFSWrapperBase import HDFSWrapperBase, T
 from hdfs_lmdc.hdfs import RequestResult
 
-globals()['gateway'] = None
+try:
+    import lz4.frame
+    _CODECS = ["lz4", "deflate"]
+except ImportError:
+    _CODECS = ["deflate"]
+
+# Conteúdo já comprimido, enviado sem recompressão; o servidor aplica a mesma regra (e a entropia) nas leituras
+_INCOMPRESSIBLE = {"jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "avi", "mkv", "zip", "gz", "bz2", "xz", "zst",
+                   "lz4", "snappy", "7z", "rar", "parquet", "orc", "avro"}
+_MIN_COMPRESS_SIZE = 4 * 1024
+# Pedaço passado de cada vez ao compressor, para não manter uma segunda cópia inteira do conteúdo em andamento
+_COMPRESS_CHUNK = 1024 * 1024
+# Formatos do struct das colunas de largura fixa de um HadoopTableBatch
+_TABLE_FORMATS = {"int32": "i", "int64": "q", "float32": "f", "float64": "d", "bool": "?"}
+
+
+def _encode(codec: str, data: bytes) -> Tuple[str, bytes]:
+    """Compress data with codec in chunks, falling back to "none" as soon as the output stops being smaller."""
+    view = memoryview(data)
+    if codec == "lz4":
+        compressor = lz4.frame.LZ4FrameCompressor()
+        pieces = [compressor.begin()]
+    else:
+        compressor = zlib.compressobj(1)
+        pieces = []
+    size = sum(len(piece) for piece in pieces)
+    for start in range(0, len(view), _COMPRESS_CHUNK):
+        piece = compressor.compress(view[start:start + _COMPRESS_CHUNK])
+        size += len(piece)
+        if size >= len(data):
+            return "none", data
+        pieces.append(piece)
+    pieces.append(compressor.flush())
+    size += len(pieces[-1])
+    return (codec, b"".join(pieces)) if size < len(data) else ("none", data)
+
+
+def _decode(codec: str, data: bytes) -> bytes:
+    if codec == "lz4":
+        return lz4.frame.decompress(data)
+    if codec == "deflate":
+        return zlib.decompress(data)
+    return data
+
+
+def _decoder(codec: str):
+    """Incremental decoder of a stream received in pieces; returns None for content sent as is."""
+    if codec == "lz4":
+        return lz4.frame.LZ4FrameDecompressor()
+    if codec == "deflate":
+        return zlib.decompressobj()
+    return None
+
+
+def _compressible(path: str, size: int) -> bool:
+    return size >= _MIN_COMPRESS_SIZE and path.rsplit(".", 1)[-1].lower() not in _INCOMPRESSIBLE
+
+
+# Um gateway por processo (e porta), reaproveitado por todas as chamadas; recriado após um fork
+globals()['gateway'] = {}
+
+
+@atexit.register
+def _close_gateways():
+    for gateway in globals()['gateway'].values():
+        try:
+            gateway.close()
+        except Exception:
+            pass
+    globals()['gateway'].clear()
 
 
 class HadoopPythonServiceDef:
@@ -24,30 +97,420 @@ class HadoopPythonServiceDef:
     def readAllBytes(self, path) -> bytearray:
         pass
 
+    def writeBytes(self, hdfs_path: str, data: bytes, overwrite: bool) -> int:
+        pass
+
+    def openWrite(self, hdfs_path: str, overwrite: bool, append: bool) -> str:
+        pass
+
+    def writeChunk(self, session_id: str, chunk: bytes) -> int:
+        pass
+
+    def writeBytesCompressed(self, hdfs_path: str, data: bytes, codec: str, overwrite: bool) -> int:
+        pass
+
+    def writeChunkCompressed(self, session_id: str, chunk: bytes, codec: str) -> int:
+        pass
+
+    def compressionCodecs(self):
+        pass
+
+    def readAllBytesCompressed(self, path: str, codec: str):
+        pass
+
+    def readChunkCompressed(self, handle_id: str, max_bytes: int, codec: str):
+        pass
+
+    def openReadCompressed(self, path: str, codec: str) -> str:
+        pass
+
+    def readCompressedNext(self, handle_id: str, max_bytes: int):
+        pass
+
+    def hflushWrite(self, session_id: str):
+        pass
+
+    def closeWrite(self, session_id: str) -> int:
+        pass
+
+    def packOpen(self, container_path: str) -> str:
+        pass
+
+    def packAdd(self, session_id: str, name: str, content: bytes) -> int:
+        pass
+
+    def packClose(self, session_id: str) -> int:
+        pass
+
+    def packDirectory(self, local_dir: str, container_path: str) -> int:
+        pass
+
+    def packList(self, container_path: str):
+        pass
+
+    def packRead(self, container_path: str, name: str) -> bytes:
+        pass
+
+    def packReadMany(self, container_path: str, names):
+        pass
+
+    def readImage(self, path: str, width: int, height: int, format: str) -> bytes:
+        pass
+
+    def readImages(self, paths, width: int, height: int, format: str):
+        pass
+
+    def readTable(self, path: str, columns, filter: str, batch_size: int) -> str:
+        pass
+
+    def readTableNext(self, cursor_id: str):
+        pass
+
+    def readTableClose(self, cursor_id: str) -> bool:
+        pass
+
     def mkdir(self, path) -> bool:
         pass
 
     def ls(self, path) -> List[str]:
         pass
 
+    def openRead(self, path: str) -> str:
+        pass
+
+    def readChunk(self, handle_id: str, max_bytes: int) -> bytearray:
+        pass
+
+    def closeRead(self, handle_id: str) -> bool:
+        pass
+
+    def readRange(self, path: str, offset: int, length: int) -> bytearray:
+        pass
+
+    def isSharedMemoryEnabled(self) -> bool:
+        pass
+
+    def readToSharedMemory(self, path: str):
+        pass
+
+    def releaseSharedMemory(self, name: str) -> bool:
+        pass
+
+    def metadataCacheStats(self) -> dict:
+        pass
+
+    def readCacheStats(self) -> dict:
+        pass
+
+    def readAllBytesHedged(self, path: str, deadline_millis: int) -> bytearray:
+        pass
+
+    def hedgeStats(self) -> dict:
+        pass
+
+    def zeroCopyStats(self) -> dict:
+        pass
+
+    def statMany(self, paths):
+        pass
+
+    def lsDetailed(self, path: str):
+        pass
+
+    def listOpen(self, path: str, recursive: bool) -> str:
+        pass
+
+    def listNext(self, cursor_id: str, max_items: int):
+        pass
+
+    def listClose(self, cursor_id: str) -> bool:
+        pass
+
+    def find(self, root: str, glob_pattern: str, min_size: int, max_size: int, modified_after: int, limit: int) -> str:
+        pass
+
+    def metrics(self) -> dict:
+        pass
+
+    def admissionStats(self) -> dict:
+        pass
+
+    def walk(self, path: str, max_depth: int) -> str:
+        pass
+
+    def walkNext(self, cursor_id: str) -> list:
+        pass
+
+    def walkPrune(self, cursor_id: str, paths) -> int:
+        pass
+
+    def walkClose(self, cursor_id: str) -> bool:
+        pass
+
+    def uploadMany(self, local_paths, hdfs_paths):
+        pass
+
+    def readMany(self, paths):
+        pass
+
+    def datasetOpen(self, paths, shuffle: bool, seed: int, prefetch: int) -> str:
+        pass
+
+    def datasetNext(self, session_id: str, max_items: int):
+        pass
+
+    def datasetStats(self, session_id: str) -> dict:
+        pass
+
+    def datasetClose(self, session_id: str) -> bool:
+        pass
+
+    def downloadMany(self, hdfs_paths, local_paths):
+        pass
+
+    def uploadDirectory(self, local_dir: str, hdfs_dir: str):
+        pass
+
+    def downloadDirectory(self, hdfs_dir: str, local_dir: str):
+        pass
+
+    def syncToHdfs(self, local_dir: str, hdfs_dir: str):
+        pass
+
+    def syncFromHdfs(self, hdfs_dir: str, local_dir: str):
+        pass
+
+    def submitUpload(self, local_path: str, hdfs_path: str) -> str:
+        pass
+
+    def submitDownload(self, hdfs_file_path: str, local_save_path: str) -> str:
+        pass
+
+    def submitRead(self, path: str) -> str:
+        pass
+
+    def submitReadMany(self, paths) -> str:
+        pass
+
+    def submitUploadDirectory(self, local_dir: str, hdfs_dir: str) -> str:
+        pass
+
+    def submitDownloadDirectory(self, hdfs_dir: str, local_dir: str) -> str:
+        pass
+
+    def jobStatus(self, job_id: str) -> str:
+        pass
+
+    def jobAwait(self, job_id: str, timeout_millis: int) -> bool:
+        pass
+
+    def jobResult(self, job_id: str):
+        pass
+
+    def jobProgress(self, job_id: str) -> dict:
+        pass
+
+    def jobCancel(self, job_id: str) -> bool:
+        pass
+
+    def jobRelease(self, job_id: str) -> bool:
+        pass
+
+    def jobStats(self) -> dict:
+        pass
+
 import time
 
 
+class HDFSJavaWriter(io.RawIOBase):
+    """File-like writer over a server side write session; the server buffers the chunks and hflushes them in
+    batches. flush() forces an hflush, close() completes the file."""
+
+    def __init__(self, client, session_id: str, codec: str = None):
+        super().__init__()
+        self._client = client
+        self._session_id = session_id
+        self._codec = codec
+        self._completed = False
+
+    def writable(self) -> bool:
+        return True
+
+    def write(self, data) -> int:
+        if self._codec is not None and len(data) >= _MIN_COMPRESS_SIZE:
+            codec, encoded = _encode(self._codec, bytes(data))
+            if codec != "none":
+                self._client.writeChunkCompressed(self._session_id, encoded, codec)
+                return len(data)
+        self._client.writeChunk(self._session_id, bytes(data))
+        return len(data)
+
+    def flush(self):
+        if not self._completed:
+            self._client.hflushWrite(self._session_id)
+
+    def close(self):
+        if not self._completed:
+            self._completed = True
+            try:
+                self._client.closeWrite(self._session_id)
+            finally:
+                super().close()
+
+
+class HDFSJavaPackWriter:
+    """Writer of a pack container; add() appends a member, close() writes the index that makes the
+    container readable."""
+
+    def __init__(self, client, session_id: str):
+        self._client = client
+        self._session_id = session_id
+        self._completed = False
+
+    def add(self, name: str, content: bytes) -> int:
+        return self._client.packAdd(self._session_id, name, bytes(content))
+
+    def close(self) -> int:
+        if not self._completed:
+            self._completed = True
+            return self._client.packClose(self._session_id)
+
+    def __enter__(self):
+        return self
+
+    def __exit__(self, *args):
+        self.close()
+
+
 class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
 
+    def __init__(self, use_shared_memory: bool = False, port: int = None, compression: str = None):
+        """use_shared_memory: receive file contents through /dev/shm instead of the gateway socket.
+        Only works when the server runs on the same host and has hadoop.shared-memory.enabled=true.
+
+        port: gateway port; defaults to HDFS_GATEWAY_PORT or 25333. When the server listens on several ports
+        (hadoop.gateway.ports) each local process can use its own.
+
+        compression: compress the contents that cross the gateway with "lz4" (needs the lz4 package), "deflate"
+        or "auto" for the best codec both sides support. Already compressed contents are sent as they are."""
+        self.use_shared_memory = use_shared_memory
+        self.port = port if port is not None else int(os.environ.get("HDFS_GATEWAY_PORT", "25333"))
+        self.compression = compression
+        self._negotiated = None
+
     def getClient(self) -> T:
-        isReady = False
-        while isReady == False:
+        """Return the gateway of this process. The gateway keeps its connections open between calls, so it
+        must not be closed by the caller."""
+        key = (os.getpid(), self.port)
+        gateways = globals()['gateway']
+        gateway = gateways.get(key)
+        while gateway is None:
             try:
-                gateway = JavaGateway()
-
-                isReady = True
+                gateway = JavaGateway(gateway_parameters=GatewayParameters(port=self.port))
                 # Debug
                 # print(gateway.help(gateway.entry_point))
-                return gateway
+                gateways[key] = gateway
             except Exception as e:
                 print(e)
                 time.sleep(1)
+        return gateway
+
+    def _codec(self, client) -> str:
+        """The codec agreed with the server, None when compression is off or there is none in common."""
+        if self.compression is None:
+            return None
+        if self._negotiated is None:
+            supported = set(client.compressionCodecs())
+            common = [codec for codec in _CODECS if codec in supported and self.compression in ("auto", codec)]
+            self._negotiated = common[0] if common else "none"
+        return None if self._negotiated == "none" else self._negotiated
+
+    def _read_all_bytes(self, client, hdfs_path: str) -> bytes:
+        codec = self._codec(client)
+        if codec is None:
+            return client.readAllBytes(hdfs_path)
+        # O arquivo vem em pedaços de um único stream comprimido, sem ser montado inteiro no servidor
+        handle_id = client.openReadCompressed(hdfs_path, codec)
+        try:
+            pieces = []
+            used = None
+            decoder = None
+            while True:
+                payload = client.readCompressedNext(handle_id, 0)
+                if used is None:
+                    used = payload.getCodec()
+                    decoder = _decoder(used)
+                data = payload.getData()
+                pieces.append(decoder.decompress(data) if decoder is not None else data)
+                if payload.isLast():
+                    break
+            return b"".join(pieces)
+        finally:
+            client.closeRead(handle_id)
+
+    def _map_shared(self, client, hdfs_path: str):
+        """Ask the server to copy the file into shared memory and map it. Returns None if unavailable."""
+        if not self.use_shared_memory:
+            return None
+        try:
+            segment = client.readToSharedMemory(hdfs_path)
+        except Exception as e:
+            print(e)
+            return None
+        try:
+            length = segment.getLength()
+            if length == 0:
+                return b""
+            with open(segment.getPath(), "rb") as f:
+                return mmap.mmap(f.fileno(), length, access=mmap.ACCESS_READ, offset=segment.getOffset())
+        finally:
+            client.releaseSharedMemory(segment.getName())
+
+    @staticmethod
+    def _to_java_strings(client, values: List[str]):
+        array = client.new_array(client.jvm.java.lang.String, len(values))
+        for i, value in enumerate(values):
+            array[i] = value
+        return array
+
+    @staticmethod
+    def _transfer_report(report) -> dict:
+        failed = list(zip(report.getFailedSources(), report.getFailedErrors()))
+        return {
+            "files": report.getFileCount(),
+            "failed": failed,
+            "bytes": report.getTotalBytes(),
+            "seconds": report.getElapsedMillis() / 1000.0,
+            "bytes_per_second": report.getThroughputBytesPerSecond(),
+        }
+
+    STAT_KINDS = ("file", "directory", "symlink", "missing", "error")
+
+    @staticmethod
+    def _stat_columns(batch) -> dict:
+        """Decode a HadoopStatBatch into columns: names, lengths, mtimes (ms), kinds, replication and permissions."""
+        count = batch.getCount()
+        columns = batch.getPackedColumns()
+        names = bytes(batch.getNames()).decode("utf-8").split("\0") if count > 0 else []
+        return {
+            "names": names,
+            "lengths": struct.unpack_from("<%dq" % count, columns, 0),
+            "mtimes": struct.unpack_from("<%dq" % count, columns, 8 * count),
+            "replication": struct.unpack_from("<%dh" % count, columns, 16 * count),
+            "permissions": struct.unpack_from("<%dH" % count, columns, 18 * count),
+            "kinds": [HDFSWrapperJava.STAT_KINDS[k] for k in columns[20 * count:]],
+        }
+
+    @staticmethod
+    def _unpack(packed, count: int) -> List[bytes]:
+        """Split a HadoopPackedBuffer into the contents of each file, None for files that failed."""
+        data = memoryview(packed.getData())
+        index = packed.getPackedIndex()
+        offsets = struct.unpack_from("<%di" % count, index, 0)
+        lengths = struct.unpack_from("<%di" % count, index, 4 * count)
+        status = index[8 * count:]
+        return [bytes(data[offsets[i]:offsets[i] + lengths[i]]) if status[i] == 0 else None
+                for i in range(count)]
 
     def exist_path(self, path: str) -> bool:
         client = self.getClient()
@@ -55,8 +518,6 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             return client.existsPath(path)
         except Exception as e:
             print(e)
-        finally:
-            client.close()
 
     def upload(self, local_path: str, hdfs_path: str) -> RequestResult:
         client = self.getClient()
@@ -68,8 +529,6 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
                 return RequestResult.ofError("Error upload file...! {}".format(local_path))
         except Exception as e:
             print(e)
-        finally:
-            client.close()
 
     def download(self, hdfs_file_path: str, local_save_path: str = None) -> Tuple[str, RequestResult]:
         try:
@@ -90,8 +549,6 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
                 client.download(hdfs_file_path, local_file_path)
             except Exception as e:
                 print(e)
-            finally:
-                client.close()
 
             return local_file_path, RequestResult.ofOk("File downloaded")
         except:
@@ -108,16 +565,22 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
                 )
             client = self.getClient()
             try:
+                mapped = self._map_shared(client, hdfs_text_path)
+                if mapped is not None:
+                    with memoryview(mapped) as view:
+                        text = str(view, "utf-8")
+                    if isinstance(mapped, mmap.mmap):
+                        mapped.close()
+                else:
+                    text = self._read_all_bytes(client, hdfs_text_path).decode("utf-8")
                 return (
-                    client.readAllBytes(hdfs_text_path).decode("utf-8"),
+                    text,
                     RequestResult.ofOk(
                         "File {} read successfully.".format(hdfs_text_path)
                     ),
                 )
             except Exception as e:
                 print(e)
-            finally:
-                client.close()
 
         except:
             pass
@@ -129,7 +592,11 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             ),
         )
 
-    def read_image(self, hdfs_image_path: str):
+    def read_image(self, hdfs_image_path: str, width: int = 0, height: int = 0, format: str = "jpeg"):
+        """Read an image as a RGB PIL image. When width or height is given the image is resized on the server
+        (0 keeps the aspect ratio) and only the resized image, encoded in format, is transferred."""
+        if width > 0 or height > 0:
+            return self._read_resized_image(hdfs_image_path, width, height, format)
         try:
             if self.exist_path(hdfs_image_path) is False:
                 return (
@@ -143,17 +610,21 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             client = self.getClient()
             content = None
             try:
-                content = client.readAllBytes(hdfs_image_path)
+                content = self._map_shared(client, hdfs_image_path)
+                if content is None:
+                    content = self._read_all_bytes(client, hdfs_image_path)
             except Exception as e:
                 print(e)
-            finally:
-                client.close()
 
             end = time.time()
             print(end - start)
-            img = Image.open(io.BytesIO(content))
+            if isinstance(content, mmap.mmap):
+                img = Image.open(content).convert('RGB')
+                content.close()
+            else:
+                img = Image.open(io.BytesIO(content)).convert('RGB')
             return (
-                img.convert('RGB'),
+                img,
                 RequestResult.ofOk(
                     "File {} readed and converted to RGB.".format(hdfs_image_path)
                 ),
@@ -169,14 +640,421 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             ),
         )
 
+    def _read_resized_image(self, hdfs_image_path: str, width: int, height: int, format: str):
+        client = self.getClient()
+        try:
+            content = client.readImage(hdfs_image_path, width, height, format)
+            return (
+                self._to_image(content, width, height, format),
+                RequestResult.ofOk(
+                    "File {} readed and resized on the server.".format(hdfs_image_path)
+                ),
+            )
+        except Exception as e:
+            print(e)
+        return (
+            None,
+            RequestResult.ofError(
+                "Could not open file {}.".format(hdfs_image_path)
+            ),
+        )
+
+    def read_images(self, hdfs_image_paths: List[str], width: int, height: int, format: str = "raw") -> List[Image.Image]:
+        """Read and resize several images on the server, in parallel. Returns RGB PIL images in the order of
+        hdfs_image_paths, None for images that are missing or could not be decoded. The raw format transfers
+        the pixels themselves and needs both width and height."""
+        client = self.getClient()
+        try:
+            packed = client.readImages(self._to_java_strings(client, hdfs_image_paths), width, height, format)
+            return [self._to_image(content, width, height, format) if content is not None else None
+                    for content in self._unpack(packed, len(hdfs_image_paths))]
+        except Exception as e:
+            print(e)
+        return None
+
+    @staticmethod
+    def _to_image(content: bytes, width: int, height: int, format: str) -> Image.Image:
+        # O servidor aceita o formato em qualquer caixa; "RAW" também chega como pixels RGB
+        if format is not None and format.lower() == "raw":
+            return Image.frombytes("RGB", (width, height), content)
+        return Image.open(io.BytesIO(content)).convert('RGB')
+
+    def read_table(self, hdfs_path: str, columns: List[str] = None, filter: str = None, batch_size: int = 0):
+        """Read a parquet or csv table on the server; yields batches as dicts column -> list of values, None for
+        nulls. Only the requested columns (default: all) and the rows matching filter cross the gateway, packed by
+        column. filter compares columns with literals joined by "and", e.g. "year >= 2019 and country == 'BR'";
+        on parquet files it also skips the row groups whose min/max statistics can't match. Csv files (.csv or
+        .tsv, optionally compressed, e.g. .csv.gz) need a header row and their values are strings."""
+        client = self.getClient()
+        cursor_id = None
+        try:
+            java_columns = None if columns is None else self._to_java_strings(client, columns)
+            cursor_id = client.readTable(hdfs_path, java_columns, filter, batch_size)
+            while True:
+                batch = client.readTableNext(cursor_id)
+                if batch.getRows() == 0:
+                    cursor_id = None
+                    break
+                yield self._table_columns(batch)
+        except Exception as e:
+            print(e)
+        finally:
+            if cursor_id is not None:
+                client.readTableClose(cursor_id)
+
+    @staticmethod
+    def _table_columns(batch) -> dict:
+        """Split a HadoopTableBatch into its columns."""
+        rows = batch.getRows()
+        data = memoryview(batch.getData())
+        index = batch.getPackedIndex()
+        columns = {}
+        for i, (name, kind) in enumerate(zip(batch.getColumns(), batch.getTypes())):
+            offset, length, validity = struct.unpack_from("<3i", index, 12 * i)
+            values = data[offset:offset + length]
+            if kind in _TABLE_FORMATS:
+                column = list(struct.unpack("<%d%s" % (rows, _TABLE_FORMATS[kind]), values))
+            else:
+                bounds = struct.unpack_from("<%di" % (rows + 1), values)
+                start = 4 * (rows + 1)
+                column = [bytes(values[start + bounds[r]:start + bounds[r + 1]]) for r in range(rows)]
+                if kind == "string":
+                    column = [value.decode("utf-8") for value in column]
+            if validity >= 0:
+                column = [value if data[validity + r] else None for r, value in enumerate(column)]
+            columns[name] = column
+        return columns
+
+    def upload_many(self, local_paths: List[str], hdfs_paths: List[str]) -> dict:
+        """Upload several files at once; hdfs_paths holds the full destination of each file."""
+        client = self.getClient()
+        try:
+            return self._transfer_report(client.uploadMany(self._to_java_strings(client, local_paths),
+                                                           self._to_java_strings(client, hdfs_paths)))
+        except Exception as e:
+            print(e)
+        return None
+
+    def download_many(self, hdfs_paths: List[str], local_paths: List[str]) -> dict:
+        """Download several files at once; local_paths holds the full destination of each file."""
+        client = self.getClient()
+        try:
+            return self._transfer_report(client.downloadMany(self._to_java_strings(client, hdfs_paths),
+                                                             self._to_java_strings(client, local_paths)))
+        except Exception as e:
+            print(e)
+        return None
+
+    def upload_directory(self, local_dir: str, hdfs_dir: str) -> dict:
+        client = self.getClient()
+        try:
+            return self._transfer_report(client.uploadDirectory(local_dir, hdfs_dir))
+        except Exception as e:
+            print(e)
+        return None
+
+    def download_directory(self, hdfs_dir: str, local_dir: str) -> dict:
+        client = self.getClient()
+        try:
+            return self._transfer_report(client.downloadDirectory(hdfs_dir, local_dir))
+        except Exception as e:
+            print(e)
+        return None
+
+    def sync_to_hdfs(self, local_dir: str, hdfs_dir: str) -> dict:
+        """Upload only the files of local_dir that are missing or changed in hdfs_dir (nothing is deleted)."""
+        report = self._call(lambda client: client.syncToHdfs(local_dir, hdfs_dir))
+        return None if report is None else self._sync_report(report)
+
+    def sync_from_hdfs(self, hdfs_dir: str, local_dir: str) -> dict:
+        """Download only the files of hdfs_dir that are missing or changed in local_dir (nothing is deleted)."""
+        report = self._call(lambda client: client.syncFromHdfs(hdfs_dir, local_dir))
+        return None if report is None else self._sync_report(report)
+
+    @classmethod
+    def _sync_report(cls, report) -> dict:
+        result = cls._transfer_report(report.getTransfers())
+        result.update({
+            "scanned": report.getScanned(),
+            "unchanged_by_manifest": report.getUnchangedByManifest(),
+            "unchanged_by_checksum": report.getUnchangedByChecksum(),
+            "checksummed": report.getChecksummed(),
+        })
+        return result
+
+    def submit_upload(self, local_path: str, hdfs_path: str) -> str:
+        """Start an upload in the server and return its job id right away; see job_wait and job_result."""
+        return self._call(lambda client: client.submitUpload(local_path, hdfs_path))
+
+    def submit_download(self, hdfs_file_path: str, local_save_path: str) -> str:
+        return self._call(lambda client: client.submitDownload(hdfs_file_path, local_save_path))
+
+    def submit_read(self, hdfs_file_path: str) -> str:
+        return self._call(lambda client: client.submitRead(hdfs_file_path))
+
+    def submit_read_many(self, hdfs_paths: List[str]) -> str:
+        """Start reading several files in the server; job_result returns the contents like read_many."""
+        return self._call(lambda client: client.submitReadMany(self._to_java_strings(client, hdfs_paths)))
+
+    def submit_upload_directory(self, local_dir: str, hdfs_dir: str) -> str:
+        return self._call(lambda client: client.submitUploadDirectory(local_dir, hdfs_dir))
+
+    def submit_download_directory(self, hdfs_dir: str, local_dir: str) -> str:
+        return self._call(lambda client: client.submitDownloadDirectory(hdfs_dir, local_dir))
+
+    def _call(self, call) -> str:
+        client = self.getClient()
+        try:
+            return call(client)
+        except Exception as e:
+            print(e)
+        return None
+
+    def job_status(self, job_id: str) -> str:
+        """PENDING, RUNNING, DONE, FAILED or CANCELLED; None if the job does not exist or expired."""
+        return self._call(lambda client: client.jobStatus(job_id))
+
+    def job_progress(self, job_id: str) -> dict:
+        """Bytes transferred so far, total bytes (-1 if unknown) and elapsed milliseconds."""
+        progress = self._call(lambda client: client.jobProgress(job_id))
+        return None if progress is None else dict(progress)
+
+    def job_wait(self, job_id: str, timeout: float = None) -> bool:
+        """Wait for a job to finish, at most timeout seconds. Returns whether it finished."""
+        timeout_millis = 0 if timeout is None else max(1, int(timeout * 1000))
+        return self._call(lambda client: client.jobAwait(job_id, timeout_millis))
+
+    def job_cancel(self, job_id: str) -> bool:
+        return self._call(lambda client: client.jobCancel(job_id))
+
+    def job_result(self, job_id: str, release: bool = True):
+        """Result of a finished job: bytes for reads, the list of contents (as read_many) for submit_read_many,
+        the number of bytes for uploads and downloads and the transfer report for directories. None if the job
+        failed, was cancelled or has not finished."""
+        client = self.getClient()
+        try:
+            result = client.jobResult(job_id)
+            # O py4j cria um JavaMember para qualquer nome de atributo: o tipo do resultado vem da classe Java
+            if isinstance(result, JavaObject):
+                kind = result.getClass().getSimpleName()
+                if kind == "HadoopTransferReport":
+                    result = self._transfer_report(result)
+                elif kind == "HadoopPackedBuffer":
+                    result = self._unpack(result, len(result.getPaths()))
+            return result
+        except Exception as e:
+            print(e)
+        finally:
+            if release:
+                try:
+                    client.jobRelease(job_id)
+                except Exception as e:
+                    print(e)
+        return None
+
+    def stat_many(self, hdfs_paths: List[str]) -> dict:
+        """Metadata of several paths in one call, as columns in the order of hdfs_paths. The kind of a path that
+        does not exist is "missing"."""
+        client = self.getClient()
+        try:
+            return self._stat_columns(client.statMany(self._to_java_strings(client, hdfs_paths)))
+        except Exception as e:
+            print(e)
+        return None
+
+    def ls_detailed(self, path: str) -> dict:
+        """List a directory with the metadata of every entry, as columns; names are relative to path."""
+        client = self.getClient()
+        try:
+            return self._stat_columns(client.lsDetailed(path))
+        except Exception as e:
+            print(e)
+        return None
+
+    def ls_pages(self, path: str, recursive: bool = False, page_size: int = 0):
+        """List a directory of any size page by page. Yields the pages as columns (see ls_detailed); with
+        recursive every file below path is listed, named relative to path. page_size 0 uses the server default."""
+        return self._pages(lambda client: client.listOpen(path, recursive), page_size)
+
+    def find(self, root: str, glob_pattern: str = None, min_size: int = -1, max_size: int = -1,
+             modified_after: float = None, limit: int = 0, page_size: int = 0):
+        """Find the files below root on the server; yields pages of columns (see ls_detailed) with the matches only,
+        named relative to root.
+
+        glob_pattern: hadoop glob (*, ?, [abc], {a,b}) matched against the file name, or against the path relative
+        to root when it contains a '/'. modified_after: epoch seconds. limit 0 returns every match.
+        """
+        modified_after_millis = 0 if modified_after is None else int(modified_after * 1000)
+        return self._pages(lambda client: client.find(root, glob_pattern, min_size, max_size, modified_after_millis,
+                                                      limit), page_size)
+
+    def _pages(self, open_cursor, page_size: int):
+        client = self.getClient()
+        cursor_id = None
+        try:
+            cursor_id = open_cursor(client)
+            while True:
+                page = client.listNext(cursor_id, page_size)
+                if page.getCount() == 0:
+                    cursor_id = None
+                    break
+                yield self._stat_columns(page)
+        except Exception as e:
+            print(e)
+        finally:
+            if cursor_id is not None:
+                client.listClose(cursor_id)
+
+    def write_bytes(self, hdfs_path: str, data: bytes, overwrite: bool = True) -> bool:
+        """Write data from memory straight to a hdfs file, without a local temporary file."""
+        client = self.getClient()
+        try:
+            codec = self._codec(client)
+            if codec is not None and _compressible(hdfs_path, len(data)):
+                codec, encoded = _encode(codec, bytes(data))
+                if codec != "none":
+                    client.writeBytesCompressed(hdfs_path, encoded, codec, overwrite)
+                    return True
+            client.writeBytes(hdfs_path, bytes(data), overwrite)
+            return True
+        except Exception as e:
+            print(e)
+        return False
+
+    def open_write(self, hdfs_path: str, overwrite: bool = True, append: bool = False) -> HDFSJavaWriter:
+        """Open a hdfs file for streaming writes; use as a context manager or call close() to complete the file."""
+        client = self.getClient()
+        codec = self._codec(client) if _compressible(hdfs_path, _MIN_COMPRESS_SIZE) else None
+        return HDFSJavaWriter(client, client.openWrite(hdfs_path, overwrite, append), codec)
+
+    def pack_open(self, container_path: str) -> HDFSJavaPackWriter:
+        """Start a pack container, many small files stored as one hdfs file plus an index; use as a context
+        manager or call close() to write the index."""
+        client = self.getClient()
+        return HDFSJavaPackWriter(client, client.packOpen(container_path))
+
+    def pack_directory(self, local_dir: str, container_path: str) -> int:
+        """Pack every file below a local directory, named by their relative paths. Returns the number of files."""
+        return self._call(lambda client: client.packDirectory(local_dir, container_path))
+
+    def pack_list(self, container_path: str) -> List[str]:
+        client = self.getClient()
+        try:
+            return list(client.packList(container_path))
+        except Exception as e:
+            print(e)
+        return None
+
+    def pack_read(self, container_path: str, name: str) -> bytes:
+        return self._call(lambda client: client.packRead(container_path, name))
+
+    def pack_read_many(self, container_path: str, names: List[str]) -> List[bytes]:
+        """Read several members of a pack container in one call, None for members that are missing or corrupt."""
+        client = self.getClient()
+        try:
+            packed = client.packReadMany(container_path, self._to_java_strings(client, names))
+            return self._unpack(packed, len(names))
+        except Exception as e:
+            print(e)
+        return None
+
+    def read_bytes(self, hdfs_path: str, deadline: float = 0) -> bytes:
+        """Read a whole file with hedged reads: ranges slower than the server's threshold are read again from
+        another stream and the first answer wins. deadline is the time limit in seconds (0 uses the server's);
+        returns None if the file can't be read in time."""
+        return self._call(lambda client: client.readAllBytesHedged(hdfs_path, int(deadline * 1000)))
+
+    def hedge_stats(self) -> dict:
+        """Counters of the hedged reads (hedges started and won, deadlines exceeded), to tune the threshold."""
+        stats = self._call(lambda client: client.hedgeStats())
+        return None if stats is None else dict(stats)
+
+    def zero_copy_stats(self) -> dict:
+        """Bytes read by the byte buffer read path and how many came from a local datanode, by short-circuit
+        reads and memory mapped without copies."""
+        stats = self._call(lambda client: client.zeroCopyStats())
+        return None if stats is None else dict(stats)
+
+    def admission_stats(self) -> dict:
+        """Per lane (metadata, data, bulk): calls running and queued, rejections, timeouts and queue wait
+        times in microseconds; plus the bytes reserved in the in-flight budget. Calls refused by the server
+        because of overload fail with a "Servidor sobrecarregado" error and can be retried later."""
+        stats = self._call(lambda client: client.admissionStats())
+        return None if stats is None else {lane: dict(values) for lane, values in stats.items()}
+
+    def read_many(self, hdfs_paths: List[str]) -> List[bytes]:
+        """Read several files in one call. Returns the contents in the order of hdfs_paths, None for files
+        that are missing or could not be read."""
+        client = self.getClient()
+        try:
+            packed = client.readMany(self._to_java_strings(client, hdfs_paths))
+            return self._unpack(packed, len(hdfs_paths))
+        except Exception as e:
+            print(e)
+        return None
+
+    def dataset(self, hdfs_paths: List[str], shuffle: bool = False, seed: int = 0, prefetch: int = 0,
+                batch_size: int = 16):
+        """Iterate over the files of an epoch while the server reads the next ones ahead.
+
+        Yields (path, content) in the (optionally shuffled) order, content None for files that failed.
+        prefetch 0 uses the server's default read-ahead.
+        """
+        client = self.getClient()
+        session_id = None
+        try:
+            session_id = client.datasetOpen(self._to_java_strings(client, hdfs_paths), shuffle, seed, prefetch)
+            while True:
+                packed = client.datasetNext(session_id, batch_size)
+                paths = list(packed.getPaths())
+                if len(paths) == 0:
+                    break
+                yield from zip(paths, self._unpack(packed, len(paths)))
+        except Exception as e:
+            print(e)
+        finally:
+            if session_id is not None:
+                client.datasetClose(session_id)
+
+    def read_chunks(self, hdfs_file_path: str, chunk_size: int = 0):
+        """Read a file from HDFS in chunks, without loading the whole file in the server memory.
+
+        chunk_size 0 uses the server's default chunk size.
+        """
+        client = self.getClient()
+        handle_id = None
+        try:
+            codec = self._codec(client)
+            handle_id = client.openRead(hdfs_file_path)
+            while True:
+                if codec is None:
+                    chunk = client.readChunk(handle_id, chunk_size)
+                else:
+                    payload = client.readChunkCompressed(handle_id, chunk_size, codec)
+                    chunk = _decode(payload.getCodec(), payload.getData())
+                if len(chunk) == 0:
+                    break
+                yield chunk
+        except Exception as e:
+            print(e)
+        finally:
+            if handle_id is not None:
+                client.closeRead(handle_id)
+
+    def read_range(self, hdfs_file_path: str, offset: int, length: int):
+        client = self.getClient()
+        try:
+            return client.readRange(hdfs_file_path, offset, length)
+        except Exception as e:
+            print(e)
+        return None
+
     def mkdir(self, path: str) -> bool:
         client = self.getClient()
         try:
             return client.mkdir(path)
         except Exception as e:
             print(e)
-        finally:
-            client.close()
 
     def ls(self, path) -> List[str]:
         client = self.getClient()
@@ -186,8 +1064,6 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             return result
         except Exception as e:
             print(e)
-        finally:
-            client.close()
 
     def is_file(self, path):
         client = self.getClient()
@@ -196,8 +1072,6 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             return result
         except Exception as e:
             print(e)
-        finally:
-            client.close()
         return None
 
     def is_dir(self, path):
@@ -207,20 +1081,40 @@ class HDFSWrapperJava(HDFSWrapperBase[HadoopPythonServiceDef]):
             return result
         except Exception as e:
             print(e)
-        finally:
-            client.close()
         return None
 
-    def walk(self, path):
+    def walk(self, path, max_depth: int = -1):
+        """Walk the tree top-down and depth first like os.walk. The tree is walked on the server, page by page.
+
+        max_depth limits how many levels below path are visited; negative means no limit. As in os.walk,
+        removing names from dirs skips those subtrees; reordering dirs doesn't change the order of the walk.
+        """
         client = self.getClient()
+        cursor_id = None
         try:
-            resultQuery = client.pathInfo(path)
-            files = [path for path in resultQuery.getFiles()]
-            dirs = [path for path in resultQuery.getFolders()]
-            yield path, dirs, files
-            for dir in dirs:
-                yield from self.walk(os.path.join(path, dir))
+            cursor_id = client.walk(path, max_depth)
+            while True:
+                page = client.walkNext(cursor_id)
+                if len(page) == 0:
+                    cursor_id = None
+                    break
+                # Filhos de diretórios podados podem já ter vindo nesta página
+                pruned = []
+                for info in page:
+                    top = info.getPath()
+                    if any(top == p or top.startswith(p + "/") for p in pruned):
+                        continue
+                    files = [name for name in info.getFiles()]
+                    dirs = [name for name in info.getFolders()]
+                    listed = list(dirs)
+                    yield top, dirs, files
+                    kept = set(dirs)
+                    removed = [top.rstrip("/") + "/" + name for name in listed if name not in kept]
+                    if removed:
+                        pruned.extend(removed)
+                        client.walkPrune(cursor_id, self._to_java_strings(client, removed))
         except Exception as e:
             print(e)
         finally:
-            client.close()
+            if cursor_id is not None:
+                client.walkClose(cursor_id)
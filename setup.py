@@ -25,6 +25,7 @@ setup(
     packages=["hdfs_lmdc"],
     include_package_data=True,
     install_requires=["hdfs3", "pillow==6.2.2"],
+    extras_require={"lz4": ["lz4"]},
     entry_points={
         "console_scripts": [
             "hdfs-lmdc=hdfs_lmdc.demo:main",